@@ -36,7 +36,11 @@ public class CustomRuntimeEnvironmentPostProcessor implements EnvironmentPostPro
 	@Override
 	public void postProcessEnvironment(ConfigurableEnvironment environment,
 			SpringApplication application) {
-		if (!environment.containsProperty(CUSTOM_RUNTIME)) {
+		if (environment.getProperty(CustomRuntimeEventLoop.ENABLED_PROPERTY, Boolean.class, false)) {
+			// the event loop talks to the Runtime API directly, so nothing should be exported
+			getDefaultProperties(environment).putIfAbsent("spring.cloud.function.web.export.enabled", false);
+		}
+		else if (!environment.containsProperty(CUSTOM_RUNTIME)) {
 			Map<String, Object> defaults = getDefaultProperties(environment);
 			defaults.putIfAbsent("spring.cloud.function.web.export.source.url",
 					"http://${AWS_LAMBDA_RUNTIME_API:localhost}/2018-06-01/runtime/invocation/next");
@@ -0,0 +1,266 @@
+/*
+ * Copyright 2020-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.function.adapter.aws;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Mono;
+
+import org.springframework.cloud.function.context.FunctionCatalog;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.RequestEntity;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.Assert;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Event loop for AWS Lambda custom runtime (e.g., 'provided' runtime) which interacts
+ * directly with the Lambda Runtime API. It long-polls the 'next' invocation endpoint,
+ * hands the raw event bytes to the function as {@code Message<byte[]>} and posts the
+ * result (or error) back to the 'response' (or 'error') endpoint.
+ * <br>
+ * All requests are made from a single (non-daemon) thread through the same
+ * {@link RestTemplate}, hence the underlying keep-alive connection to the Runtime API
+ * is reused across invocations. Stopping the loop disconnects the connection in use, so
+ * a pending long-poll does not hold up the shutdown until the next event arrives.
+ *
+ * @author agent
+ * @since 3.0.4
+ */
+public class CustomRuntimeEventLoop implements SmartLifecycle {
+
+	/**
+	 * Name of the property which enables the event loop.
+	 */
+	public static final String ENABLED_PROPERTY = "spring.cloud.function.aws.event-loop.enabled";
+
+	static final String LAMBDA_VERSION_DATE = "2018-06-01";
+
+	private static final long FAILURE_PAUSE_MILLIS = 100;
+
+	private static final String LAMBDA_RUNTIME_HEADER_PREFIX = "lambda-runtime-";
+
+	private static final String LAMBDA_REQUEST_ID_HEADER = LAMBDA_RUNTIME_HEADER_PREFIX + "aws-request-id";
+
+	private static Log logger = LogFactory.getLog(CustomRuntimeEventLoop.class);
+
+	private final ConfigurableApplicationContext applicationContext;
+
+	private final DisconnectableRequestFactory requestFactory = new DisconnectableRequestFactory();
+
+	private final RestTemplate restTemplate = new RestTemplate(this.requestFactory);
+
+	private volatile boolean running;
+
+	private volatile Thread eventLoopThread;
+
+	public CustomRuntimeEventLoop(ConfigurableApplicationContext applicationContext) {
+		this.applicationContext = applicationContext;
+	}
+
+	@Override
+	public void start() {
+		if (this.running) {
+			return;
+		}
+		Environment environment = this.applicationContext.getEnvironment();
+		String runtimeApi = environment.getProperty("AWS_LAMBDA_RUNTIME_API", "localhost:9001");
+		String definition = environment.getProperty("spring.cloud.function.definition");
+
+		Function<Message<byte[]>, Object> function = this.applicationContext.getBean(FunctionCatalog.class)
+				.lookup(definition, MediaType.APPLICATION_JSON_VALUE);
+		Assert.notNull(function, "Failed to lookup function " + definition);
+
+		this.running = true;
+		this.eventLoopThread = new Thread(() -> this.eventLoop(runtimeApi, function), "aws-lambda-event-loop");
+		// non-daemon, since this thread is what keeps the runtime alive
+		this.eventLoopThread.setDaemon(false);
+		this.eventLoopThread.start();
+		logger.info("Started AWS Lambda custom runtime event loop against " + runtimeApi);
+	}
+
+	@Override
+	public void stop() {
+		logger.info("Stopping AWS Lambda custom runtime event loop");
+		this.running = false;
+		Thread thread = this.eventLoopThread;
+		if (thread != null) {
+			thread.interrupt();
+		}
+		// interrupting does not unblock a read in progress
+		this.requestFactory.disconnect();
+	}
+
+	@Override
+	public boolean isRunning() {
+		return this.running;
+	}
+
+	@Override
+	public int getPhase() {
+		return Integer.MAX_VALUE;
+	}
+
+	private void eventLoop(String runtimeApi, Function<Message<byte[]>, Object> function) {
+		String invocationUrl = "http://" + runtimeApi + "/" + LAMBDA_VERSION_DATE + "/runtime/invocation/";
+		URI nextUri = URI.create(invocationUrl + "next");
+		while (this.running) {
+			ResponseEntity<byte[]> event;
+			try {
+				event = this.restTemplate.exchange(RequestEntity.get(nextUri).build(), byte[].class);
+			}
+			catch (Exception e) {
+				if (this.running) {
+					logger.warn("Failed to retrieve next invocation from " + nextUri, e);
+					this.pauseAfterFailure();
+				}
+				continue;
+			}
+			String requestId = event.getHeaders().getFirst(LAMBDA_REQUEST_ID_HEADER);
+			if (requestId == null) {
+				logger.warn("Received invocation without '" + LAMBDA_REQUEST_ID_HEADER + "' header. Skipping.");
+				continue;
+			}
+			this.invoke(invocationUrl + requestId, event, function);
+		}
+	}
+
+	/*
+	 * Avoids spinning against Runtime API which is not (yet) reachable.
+	 */
+	private void pauseAfterFailure() {
+		try {
+			Thread.sleep(FAILURE_PAUSE_MILLIS);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			this.running = false;
+		}
+	}
+
+	private void invoke(String requestUrl, ResponseEntity<byte[]> event, Function<Message<byte[]>, Object> function) {
+		byte[] payload = event.getBody() == null ? new byte[0] : event.getBody();
+		Message<byte[]> request = MessageBuilder.withPayload(payload)
+				.copyHeaders(this.toMessageHeaders(event.getHeaders()))
+				.setHeader(MessageHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+				.build();
+		Object result;
+		try {
+			result = function.apply(request);
+			if (result instanceof Publisher) {
+				result = Mono.from((Publisher<?>) result).block();
+			}
+		}
+		catch (Exception e) {
+			logger.error("Failed to invoke function", e);
+			this.postError(requestUrl, e);
+			return;
+		}
+		try {
+			this.restTemplate.exchange(RequestEntity.post(URI.create(requestUrl + "/response"))
+					.contentType(this.toContentType(result)).body(this.toPayload(result)), Void.class);
+		}
+		catch (Exception e) {
+			logger.error("Failed to post response to " + requestUrl, e);
+		}
+	}
+
+	private void postError(String requestUrl, Exception error) {
+		Map<String, String> body = new HashMap<>();
+		body.put("errorMessage", String.valueOf(error.getMessage()));
+		body.put("errorType", error.getClass().getName());
+		try {
+			this.restTemplate.exchange(RequestEntity.post(URI.create(requestUrl + "/error"))
+					.contentType(MediaType.APPLICATION_JSON)
+					.header("Lambda-Runtime-Function-Error-Type", "Unhandled")
+					.body(body), Void.class);
+		}
+		catch (Exception e) {
+			logger.error("Failed to post error to " + requestUrl, e);
+		}
+	}
+
+	/*
+	 * Content type of the function output (JSON, unless the output message says otherwise).
+	 */
+	private MediaType toContentType(Object result) {
+		Object contentType = result instanceof Message
+				? ((Message<?>) result).getHeaders().get(MessageHeaders.CONTENT_TYPE)
+				: null;
+		return contentType != null ? MediaType.parseMediaType(contentType.toString()) : MediaType.APPLICATION_JSON;
+	}
+
+	private Object toPayload(Object result) {
+		if (result instanceof Message) {
+			return ((Message<?>) result).getPayload();
+		}
+		return result == null ? new byte[0] : result;
+	}
+
+	private Map<String, Object> toMessageHeaders(HttpHeaders httpHeaders) {
+		Map<String, Object> headers = new HashMap<>();
+		for (Map.Entry<String, List<String>> header : httpHeaders.entrySet()) {
+			String name = header.getKey().toLowerCase(Locale.ROOT);
+			if (name.startsWith(LAMBDA_RUNTIME_HEADER_PREFIX) && !header.getValue().isEmpty()) {
+				headers.put(name, header.getValue().get(0));
+			}
+		}
+		return headers;
+	}
+
+	/*
+	 * Keeps track of the connection of the request in progress (requests are made from a
+	 * single thread), so it can be disconnected from another thread.
+	 */
+	private static final class DisconnectableRequestFactory extends SimpleClientHttpRequestFactory {
+
+		private volatile HttpURLConnection connection;
+
+		@Override
+		protected void prepareConnection(HttpURLConnection connection, String httpMethod) throws IOException {
+			super.prepareConnection(connection, httpMethod);
+			this.connection = connection;
+		}
+
+		void disconnect() {
+			HttpURLConnection connection = this.connection;
+			if (connection != null) {
+				connection.disconnect();
+			}
+		}
+
+	}
+
+}
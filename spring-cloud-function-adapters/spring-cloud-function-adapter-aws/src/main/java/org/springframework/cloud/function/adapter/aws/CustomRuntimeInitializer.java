@@ -31,6 +31,10 @@ public class CustomRuntimeInitializer implements ApplicationContextInitializer<G
 
 	@Override
 	public void initialize(GenericApplicationContext context) {
+		if (context.getEnvironment().getProperty(CustomRuntimeEventLoop.ENABLED_PROPERTY, Boolean.class, false)) {
+			context.registerBean(CustomRuntimeEventLoop.class, () -> new CustomRuntimeEventLoop(context));
+			return;
+		}
 		Boolean enabled = context.getEnvironment().getProperty("spring.cloud.function.web.export.enabled",
 				Boolean.class);
 		if (enabled == null || !enabled) {
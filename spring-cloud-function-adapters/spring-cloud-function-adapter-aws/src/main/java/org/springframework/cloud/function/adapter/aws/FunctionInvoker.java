@@ -19,16 +19,18 @@ package org.springframework.cloud.function.adapter.aws;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.Calendar;
 import java.util.Date;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.function.Function;
 
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestStreamHandler;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonDeserializer;
 import com.fasterxml.jackson.databind.MapperFeature;
@@ -45,8 +47,11 @@ import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.core.env.Environment;
 import org.springframework.http.HttpStatus;
 import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
 import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.util.Assert;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
 import org.springframework.util.StreamUtils;
 import org.springframework.util.StringUtils;
 
@@ -60,6 +65,14 @@ import org.springframework.util.StringUtils;
  */
 public class FunctionInvoker implements RequestStreamHandler {
 
+	/**
+	 * Name of the message header set to 'true' when the request was identified as
+	 * API Gateway (or ALB) proxy request.
+	 */
+	public static final String AWS_API_GATEWAY = "aws-api-gateway";
+
+	private static final String API_GATEWAY_MARKER = "httpMethod";
+
 	private static Log logger = LogFactory.getLog(FunctionInvoker.class);
 
 	private ObjectMapper mapper;
@@ -73,31 +86,111 @@ public class FunctionInvoker implements RequestStreamHandler {
 	@Override
 	public void handleRequest(InputStream input, OutputStream output, Context context) throws IOException {
 
-		Message<byte[]> requestMessage = this.generateMessage(input, context);
+		byte[] payload = StreamUtils.copyToByteArray(input);
+		boolean apiGatewayRequest = isApiGatewayRequest(this.mapper.getFactory(), payload);
 
-		Message<byte[]> responseMessage = this.function.apply(requestMessage);
+		Message<byte[]> requestMessage = this.generateMessage(payload, context, apiGatewayRequest);
 
-		byte[] responseBytes = responseMessage.getPayload();
-		Map<String, Object> requestPayloadMap = this.getRequestPayloadAsMap(requestMessage);
-		if (requestPayloadMap != null && requestPayloadMap.containsKey("httpMethod")) {
-			Map<String, Object> response = new HashMap<String, Object>();
-			response.put("isBase64Encoded", false);
+		Message<byte[]> responseMessage = this.function.apply(requestMessage);
 
-			int statusCode = responseMessage.getHeaders().containsKey("statusCode")
-					? (int) responseMessage.getHeaders().get("statusCode")
-					: 200;
+		if (apiGatewayRequest) {
+			this.writeApiGatewayResponse(responseMessage, output);
+		}
+		else {
+			output.write(responseMessage.getPayload());
+		}
+	}
 
-			HttpStatus httpStatus = HttpStatus.valueOf(statusCode);
+	/**
+	 * Determines if the payload is an API Gateway (or ALB) proxy request by looking for the
+	 * 'httpMethod' field among the top-level fields of the JSON object. Values of other
+	 * top-level fields are skipped rather than deserialized and scanning stops as soon as
+	 * the field is found. Payloads that are not JSON objects are rejected without parsing.
+	 * @param jsonFactory factory used to create the streaming parser
+	 * @param payload request payload
+	 * @return true if the payload represents API Gateway request
+	 */
+	static boolean isApiGatewayRequest(JsonFactory jsonFactory, byte[] payload) {
+		if (!startsWithObject(payload)) {
+			return false;
+		}
+		try (JsonParser parser = jsonFactory.createParser(payload)) {
+			try {
+				if (parser.nextToken() != JsonToken.START_OBJECT) {
+					return false;
+				}
+				while (parser.nextToken() == JsonToken.FIELD_NAME) {
+					if (API_GATEWAY_MARKER.equals(parser.getCurrentName())) {
+						return true;
+					}
+					parser.nextToken();
+					parser.skipChildren();
+				}
+			}
+			catch (IOException e) {
+				// the parser looks past the colon of a field name, hence it may fail (e.g., at
+				// the end of the input) once the marker name has already been read
+				return parser.currentToken() == JsonToken.FIELD_NAME
+						&& API_GATEWAY_MARKER.equals(parser.getCurrentName());
+			}
+		}
+		catch (IOException e) {
+			// not a valid JSON object, hence not API Gateway request
+		}
+		return false;
+	}
 
-			response.put("statusCode", statusCode);
-			response.put("statusDescription", httpStatus.toString());
-			response.put("body", new String(responseMessage.getPayload(), StandardCharsets.UTF_8));
-			response.put("headers", responseMessage.getHeaders());
+	private static boolean startsWithObject(byte[] payload) {
+		for (byte b : payload) {
+			if (b == '{') {
+				return true;
+			}
+			else if (!Character.isWhitespace(b)) {
+				return false;
+			}
+		}
+		return false;
+	}
 
-			responseBytes = mapper.writeValueAsBytes(response);
+	/*
+	 * Streams API Gateway response directly to the output, writing the response payload
+	 * as the (escaped) 'body' field without intermediate String/byte[] copies.
+	 */
+	private void writeApiGatewayResponse(Message<byte[]> responseMessage, OutputStream output) throws IOException {
+		int statusCode = responseMessage.getHeaders().containsKey("statusCode")
+				? (int) responseMessage.getHeaders().get("statusCode")
+				: 200;
+
+		HttpStatus httpStatus = HttpStatus.valueOf(statusCode);
+
+		JsonGenerator generator = this.mapper.getFactory().createGenerator(output);
+		generator.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+		generator.writeStartObject();
+		generator.writeBooleanField("isBase64Encoded", false);
+		generator.writeNumberField("statusCode", statusCode);
+		generator.writeStringField("statusDescription", httpStatus.toString());
+		byte[] body = responseMessage.getPayload();
+		generator.writeFieldName("body");
+		Charset charset = charsetOf(responseMessage);
+		if (StandardCharsets.UTF_8.equals(charset)) {
+			generator.writeUTF8String(body, 0, body.length);
+		}
+		else {
+			generator.writeString(new String(body, charset));
 		}
+		generator.writeObjectField("headers", responseMessage.getHeaders());
+		generator.writeEndObject();
+		generator.close();
+	}
 
-		StreamUtils.copy(responseBytes, output);
+	/*
+	 * Charset of the response payload as declared by its content type (UTF-8 if none).
+	 */
+	private static Charset charsetOf(Message<byte[]> message) {
+		Object contentType = message.getHeaders().get(MessageHeaders.CONTENT_TYPE);
+		MimeType mimeType = contentType instanceof MimeType ? (MimeType) contentType
+				: contentType instanceof String ? MimeTypeUtils.parseMimeType((String) contentType) : null;
+		return mimeType != null && mimeType.getCharset() != null ? mimeType.getCharset() : StandardCharsets.UTF_8;
 	}
 
 	private void start() {
@@ -140,22 +233,11 @@ public class FunctionInvoker implements RequestStreamHandler {
 		mapper.configure(MapperFeature.ACCEPT_CASE_INSENSITIVE_PROPERTIES, true);
 	}
 
-	private Message<byte[]> generateMessage(InputStream input, Context context) throws IOException {
-		byte[] payload = StreamUtils.copyToByteArray(input);
-
-		Message<byte[]> message = MessageBuilder.withPayload(payload).setHeader("aws-context", context).build();
-
-		return message;
-	}
-
-	@SuppressWarnings("unchecked")
-	private Map<String, Object> getRequestPayloadAsMap(Message<byte[]> message) {
-		try {
-			return this.mapper.readValue(message.getPayload(), Map.class);
-		}
-		catch (Exception e) {
-			// ignore
+	private Message<byte[]> generateMessage(byte[] payload, Context context, boolean apiGatewayRequest) {
+		MessageBuilder<byte[]> builder = MessageBuilder.withPayload(payload).setHeader("aws-context", context);
+		if (apiGatewayRequest) {
+			builder.setHeader(AWS_API_GATEWAY, true);
 		}
-		return null;
+		return builder.build();
 	}
 }
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2020-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.function.adapter.aws;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.util.StreamUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs {@link CustomRuntimeEventLoop} against a stub of the AWS Lambda Runtime API.
+ *
+ * @author agent
+ *
+ */
+public class CustomRuntimeEventLoopTests {
+
+	private static final String INVOCATION_PATH = "/" + CustomRuntimeEventLoop.LAMBDA_VERSION_DATE + "/runtime/invocation/";
+
+	private final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+
+	private final BlockingQueue<String> responses = new LinkedBlockingQueue<>();
+
+	private final BlockingQueue<String> errors = new LinkedBlockingQueue<>();
+
+	private final BlockingQueue<String> responseContentTypes = new LinkedBlockingQueue<>();
+
+	private final AtomicInteger requestCount = new AtomicInteger();
+
+	private final ExecutorService runtimeApiExecutor = Executors.newCachedThreadPool();
+
+	private HttpServer runtimeApi;
+
+	private ConfigurableApplicationContext context;
+
+	@BeforeEach
+	public void before() throws Exception {
+		this.runtimeApi = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		this.runtimeApi.createContext(INVOCATION_PATH, this::handle);
+		this.runtimeApi.setExecutor(this.runtimeApiExecutor);
+		this.runtimeApi.start();
+	}
+
+	@AfterEach
+	public void after() {
+		if (this.context != null) {
+			this.context.close();
+		}
+		this.runtimeApiExecutor.shutdownNow();
+		this.runtimeApi.stop(0);
+	}
+
+	@Test
+	public void testInvocationsAreDispatchedToFunction() throws Exception {
+		this.start("uppercase");
+		this.events.add("\"hello\"");
+		this.events.add("\"bye\"");
+		assertThat(this.responses.poll(10, TimeUnit.SECONDS)).isEqualTo("0:\"HELLO\"");
+		assertThat(this.responses.poll(10, TimeUnit.SECONDS)).isEqualTo("1:\"BYE\"");
+	}
+
+	@Test
+	public void testFunctionErrorIsPostedToErrorEndpoint() throws Exception {
+		this.start("fail");
+		this.events.add("\"hello\"");
+		assertThat(this.errors.poll(10, TimeUnit.SECONDS)).startsWith("0:").contains("IllegalStateException");
+		this.events.add("\"again\"");
+		assertThat(this.errors.poll(10, TimeUnit.SECONDS)).startsWith("1:");
+	}
+
+	@Test
+	public void testContentTypeOfFunctionIsKept() throws Exception {
+		this.start("plain");
+		this.events.add("\"hello\"");
+		assertThat(this.responses.poll(10, TimeUnit.SECONDS)).isEqualTo("0:hello");
+		assertThat(this.responseContentTypes.poll(10, TimeUnit.SECONDS)).startsWith("text/plain");
+	}
+
+	@Test
+	public void testStopDoesNotWaitForNextInvocation() throws Exception {
+		this.start("uppercase");
+		Thread eventLoopThread = Thread.getAllStackTraces().keySet().stream()
+				.filter(thread -> thread.getName().equals("aws-lambda-event-loop")).findFirst().get();
+		// the loop is waiting for the next invocation (which the stub holds for 10 seconds)
+		Thread.sleep(500);
+		this.context.close();
+		this.context = null;
+		eventLoopThread.join(5000);
+		assertThat(eventLoopThread.isAlive()).isFalse();
+	}
+
+	private void start(String definition) {
+		this.context = new SpringApplicationBuilder(EventLoopConfiguration.class)
+				.web(WebApplicationType.NONE)
+				.run("--spring.cloud.function.definition=" + definition,
+						"--" + CustomRuntimeEventLoop.ENABLED_PROPERTY + "=true",
+						"--AWS_LAMBDA_RUNTIME_API=localhost:" + this.runtimeApi.getAddress().getPort());
+	}
+
+	private void handle(HttpExchange exchange) {
+		try {
+			String path = exchange.getRequestURI().getPath().substring(INVOCATION_PATH.length());
+			if (path.equals("next")) {
+				String event = this.events.poll(10, TimeUnit.SECONDS);
+				if (event == null) {
+					exchange.sendResponseHeaders(500, -1);
+					return;
+				}
+				byte[] body = event.getBytes(StandardCharsets.UTF_8);
+				exchange.getResponseHeaders().add("Lambda-Runtime-Aws-Request-Id", String.valueOf(this.requestCount.getAndIncrement()));
+				exchange.getResponseHeaders().add("Content-Type", "application/json");
+				exchange.sendResponseHeaders(200, body.length);
+				try (OutputStream out = exchange.getResponseBody()) {
+					out.write(body);
+				}
+			}
+			else {
+				String[] segments = path.split("/");
+				String body = StreamUtils.copyToString(exchange.getRequestBody(), StandardCharsets.UTF_8);
+				(segments[1].equals("response") ? this.responses : this.errors).add(segments[0] + ":" + body);
+				if (segments[1].equals("response")) {
+					this.responseContentTypes.add(exchange.getRequestHeaders().getFirst("Content-Type"));
+				}
+				exchange.sendResponseHeaders(202, -1);
+			}
+		}
+		catch (Exception e) {
+			// the runtime is shutting down
+		}
+		finally {
+			exchange.close();
+		}
+	}
+
+	@EnableAutoConfiguration
+	@Configuration
+	protected static class EventLoopConfiguration {
+
+		@Bean
+		public Function<String, String> uppercase() {
+			return value -> value.toUpperCase();
+		}
+
+		@Bean
+		public Function<String, Message<String>> plain() {
+			return value -> MessageBuilder.withPayload(value)
+					.setHeader(MessageHeaders.CONTENT_TYPE, MimeTypeUtils.TEXT_PLAIN).build();
+		}
+
+		@Bean
+		public Function<String, String> fail() {
+			return value -> {
+				throw new IllegalStateException("Intentional failure for " + value);
+			};
+		}
+
+	}
+
+}
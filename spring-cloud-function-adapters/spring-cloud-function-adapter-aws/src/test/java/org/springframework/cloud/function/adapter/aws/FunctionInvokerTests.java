@@ -24,6 +24,7 @@ import java.util.Map;
 import java.util.function.Function;
 
 import com.amazonaws.services.lambda.runtime.events.KinesisEvent;
+import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 
@@ -31,6 +32,8 @@ import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.MessageBuilder;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -151,6 +154,37 @@ public class FunctionInvokerTests {
 	}
 
 
+	@Test
+	public void testApiGatewayRequestDetection() throws Exception {
+		JsonFactory jsonFactory = new ObjectMapper().getFactory();
+		assertThat(FunctionInvoker.isApiGatewayRequest(jsonFactory,
+				this.sampleLBEvent.getBytes(StandardCharsets.UTF_8))).isTrue();
+		assertThat(FunctionInvoker.isApiGatewayRequest(jsonFactory,
+				this.sampleKinesisEvent.getBytes(StandardCharsets.UTF_8))).isFalse();
+		assertThat(FunctionInvoker.isApiGatewayRequest(jsonFactory,
+				"{\"body\": {\"httpMethod\": \"GET\"}}".getBytes(StandardCharsets.UTF_8))).isFalse();
+		assertThat(FunctionInvoker.isApiGatewayRequest(jsonFactory,
+				"hello".getBytes(StandardCharsets.UTF_8))).isFalse();
+		assertThat(FunctionInvoker.isApiGatewayRequest(jsonFactory,
+				"{\"httpMethod\": ".getBytes(StandardCharsets.UTF_8))).isTrue();
+		assertThat(FunctionInvoker.isApiGatewayRequest(jsonFactory,
+				"{\"path\": ".getBytes(StandardCharsets.UTF_8))).isFalse();
+	}
+
+	@Test
+	public void testApiGatewayResponseBodyOfOtherCharset() throws Exception {
+		System.setProperty("MAIN_CLASS", GenericConfiguration.class.getName());
+		System.setProperty("spring.cloud.function.definition", "latin1Message");
+		FunctionInvoker invoker = new FunctionInvoker();
+
+		InputStream targetStream = new ByteArrayInputStream(this.sampleLBEvent.getBytes());
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		invoker.handleRequest(targetStream, output, null);
+
+		Map<?, ?> result = new ObjectMapper().readValue(output.toByteArray(), Map.class);
+		assertThat(result.get("body")).isEqualTo("caf\u00e9");
+	}
+
 	@Test
 	public void testKinesisEvent() throws Exception {
 		System.setProperty("MAIN_CLASS", KinesisConfiguration.class.getName());
@@ -178,6 +212,12 @@ public class FunctionInvokerTests {
 			};
 		}
 
+		@Bean
+		public Function<Map<String, Object>, Message<byte[]>> latin1Message() {
+			return v -> MessageBuilder.withPayload("caf\u00e9".getBytes(StandardCharsets.ISO_8859_1))
+					.setHeader(MessageHeaders.CONTENT_TYPE, "text/plain;charset=ISO-8859-1").build();
+		}
+
 		@Bean
 		public Function<String, String> echoString() {
 			return v -> {
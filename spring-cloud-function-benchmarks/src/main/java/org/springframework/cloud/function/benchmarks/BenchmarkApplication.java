@@ -0,0 +1,119 @@
+/*
+ * Copyright 2020-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.function.benchmarks;
+
+import java.util.function.Function;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+
+/**
+ * Application shared by all benchmarks. Functions are trivial on purpose, so the
+ * benchmarks measure the overhead of the framework rather than the functions.
+ *
+ * @author agent
+ * @since 3.0.4
+ */
+@EnableAutoConfiguration
+@Configuration
+public class BenchmarkApplication {
+
+	public static ConfigurableApplicationContext start(String... args) {
+		return new SpringApplicationBuilder(BenchmarkApplication.class)
+				.web(WebApplicationType.NONE)
+				.properties("spring.main.banner-mode=off", "logging.level.root=WARN")
+				.run(args);
+	}
+
+	@Bean
+	public Function<String, String> uppercase() {
+		return value -> value.toUpperCase();
+	}
+
+	@Bean
+	public Function<Person, Person> person() {
+		return person -> new Person(person.getName().toUpperCase());
+	}
+
+	@Bean
+	public Function<Message<String>, Message<String>> message() {
+		return message -> MessageBuilder.withPayload(message.getPayload().toUpperCase())
+				.copyHeaders(message.getHeaders()).build();
+	}
+
+	@Bean
+	public Function<Flux<String>, Flux<String>> flux() {
+		return flux -> flux.map(value -> value.toUpperCase());
+	}
+
+	@Bean
+	public Function<Mono<String>, Mono<String>> mono() {
+		return mono -> mono.map(value -> value.toUpperCase());
+	}
+
+	@Bean
+	public Function<String, String> a() {
+		return value -> value + "a";
+	}
+
+	@Bean
+	public Function<String, String> b() {
+		return value -> value + "b";
+	}
+
+	@Bean
+	public Function<String, String> c() {
+		return value -> value + "c";
+	}
+
+	@Bean
+	public ServerCodecConfigurer serverCodecConfigurer() {
+		return ServerCodecConfigurer.create();
+	}
+
+	public static class Person {
+
+		private String name;
+
+		public Person() {
+		}
+
+		public Person(String name) {
+			this.name = name;
+		}
+
+		public String getName() {
+			return this.name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+	}
+
+}
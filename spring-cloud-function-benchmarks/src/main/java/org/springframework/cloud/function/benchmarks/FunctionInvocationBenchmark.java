@@ -0,0 +1,139 @@
+/*
+ * Copyright 2020-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.function.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import org.springframework.cloud.function.benchmarks.BenchmarkApplication.Person;
+import org.springframework.cloud.function.context.FunctionCatalog;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.MessageBuilder;
+
+/**
+ * Benchmarks {@code FunctionInvocationWrapper.apply(..)} for POJO, {@link Message},
+ * {@link Flux} and {@link Mono} inputs as well as composed ('a|b|c') functions.
+ *
+ * @author agent
+ * @since 3.0.4
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(2)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class FunctionInvocationBenchmark {
+
+	private ConfigurableApplicationContext context;
+
+	private Function<Object, Object> uppercase;
+
+	private Function<Object, Object> person;
+
+	private Function<Object, Object> message;
+
+	private Function<Object, Object> flux;
+
+	private Function<Object, Object> mono;
+
+	private Function<Object, Object> composed;
+
+	private Message<byte[]> jsonMessage;
+
+	private Message<byte[]> personMessage;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		this.context = BenchmarkApplication.start();
+		FunctionCatalog catalog = this.context.getBean(FunctionCatalog.class);
+		this.uppercase = catalog.lookup("uppercase");
+		this.person = catalog.lookup("person");
+		this.message = catalog.lookup("message");
+		this.flux = catalog.lookup("flux");
+		this.mono = catalog.lookup("mono");
+		this.composed = catalog.lookup("a|b|c");
+		this.jsonMessage = MessageBuilder.withPayload("\"hello\"".getBytes(StandardCharsets.UTF_8))
+				.setHeader(MessageHeaders.CONTENT_TYPE, "application/json").build();
+		this.personMessage = MessageBuilder.withPayload("{\"name\":\"bill\"}".getBytes(StandardCharsets.UTF_8))
+				.setHeader(MessageHeaders.CONTENT_TYPE, "application/json").build();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		this.context.close();
+	}
+
+	@Benchmark
+	public Object applyString() {
+		return this.uppercase.apply("hello");
+	}
+
+	@Benchmark
+	public Object applyPojo() {
+		return this.person.apply(new Person("bill"));
+	}
+
+	@Benchmark
+	public Object applyPojoFromJsonMessage() {
+		return this.person.apply(this.personMessage);
+	}
+
+	@Benchmark
+	public Object applyStringFromJsonMessage() {
+		return this.uppercase.apply(this.jsonMessage);
+	}
+
+	@Benchmark
+	public Object applyMessage() {
+		return this.message.apply(this.jsonMessage);
+	}
+
+	@Benchmark
+	public Object applyFlux() {
+		return Flux.from((Flux<?>) this.flux.apply(Flux.just("hello"))).blockLast();
+	}
+
+	@Benchmark
+	public Object applyMono() {
+		return Mono.from((Mono<?>) this.mono.apply(Mono.just("hello"))).block();
+	}
+
+	@Benchmark
+	public Object applyComposed() {
+		return this.composed.apply("hello");
+	}
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2020-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.function.benchmarks;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.springframework.cloud.function.benchmarks.BenchmarkApplication.Person;
+import org.springframework.cloud.function.context.config.CachingCompositeMessageConverter;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.ByteArrayMessageConverter;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.StringMessageConverter;
+
+/**
+ * Benchmarks round trips (object to {@code Message<byte[]>} and back) of
+ * 'application/json' messages through the {@link CachingCompositeMessageConverter},
+ * composed of the same delegates the function catalog uses by default.
+ *
+ * @author agent
+ * @since 3.0.4
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(2)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class JsonMessageConverterBenchmark {
+
+	private final CachingCompositeMessageConverter converter = new CachingCompositeMessageConverter(
+			Arrays.asList(jsonConverter(), new ByteArrayMessageConverter(), new StringMessageConverter()));
+
+	private final MessageHeaders headers = new MessageHeaders(
+			Collections.singletonMap(MessageHeaders.CONTENT_TYPE, "application/json"));
+
+	private final Person person = new Person("bill");
+
+	private final List<Person> people = Arrays.asList(new Person("bill"), new Person("bob"), new Person("john"));
+
+	@Benchmark
+	public Object roundTripPojo() {
+		Message<?> message = this.converter.toMessage(this.person, this.headers);
+		return this.converter.fromMessage(message, Person.class);
+	}
+
+	@Benchmark
+	public Object roundTripList() {
+		Message<?> message = this.converter.toMessage(this.people, this.headers);
+		return this.converter.fromMessage(message, List.class);
+	}
+
+	@Benchmark
+	public Object roundTripString() {
+		Message<?> message = this.converter.toMessage("hello", this.headers);
+		return this.converter.fromMessage(message, String.class);
+	}
+
+	private static MappingJackson2MessageConverter jsonConverter() {
+		MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+		converter.setObjectMapper(new ObjectMapper());
+		return converter;
+	}
+
+}
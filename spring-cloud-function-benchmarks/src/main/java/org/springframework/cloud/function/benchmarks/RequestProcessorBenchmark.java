@@ -0,0 +1,123 @@
+/*
+ * Copyright 2020-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.function.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.reactivestreams.Publisher;
+
+import org.springframework.cloud.function.context.FunctionCatalog;
+import org.springframework.cloud.function.context.catalog.FunctionInspector;
+import org.springframework.cloud.function.json.JsonMapper;
+import org.springframework.cloud.function.web.BasicStringConverter;
+import org.springframework.cloud.function.web.RequestProcessor;
+import org.springframework.cloud.function.web.RequestProcessor.FunctionWrapper;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+
+/**
+ * Benchmarks {@link RequestProcessor#post(FunctionWrapper, String, boolean)} (used for
+ * JSON and text requests) and {@link RequestProcessor#post(FunctionWrapper,
+ * org.springframework.web.server.ServerWebExchange)} (used for octet-stream requests)
+ * over a mocked exchange.
+ *
+ * @author agent
+ * @since 3.0.4
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(2)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RequestProcessorBenchmark {
+
+	private ConfigurableApplicationContext context;
+
+	private RequestProcessor processor;
+
+	private Function<Publisher<?>, Publisher<?>> uppercase;
+
+	private Function<Publisher<?>, Publisher<?>> person;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		this.context = BenchmarkApplication.start();
+		FunctionCatalog catalog = this.context.getBean(FunctionCatalog.class);
+		FunctionInspector inspector = this.context.getBean(FunctionInspector.class);
+		this.processor = new RequestProcessor(inspector, catalog, this.context.getBeanProvider(JsonMapper.class),
+				new BasicStringConverter(inspector, this.context.getBeanFactory()),
+				this.context.getBeanProvider(ServerCodecConfigurer.class));
+		this.uppercase = catalog.lookup(Function.class, "uppercase");
+		this.person = catalog.lookup(Function.class, "person");
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		this.context.close();
+	}
+
+	@Benchmark
+	public Object postText() {
+		FunctionWrapper wrapper = this.wrapper(this.uppercase, MediaType.TEXT_PLAIN);
+		return this.processor.post(wrapper, "hello", false).block();
+	}
+
+	@Benchmark
+	public Object postJson() {
+		FunctionWrapper wrapper = this.wrapper(this.person, MediaType.APPLICATION_JSON);
+		return this.processor.post(wrapper, "{\"name\":\"bill\"}", false).block();
+	}
+
+	@Benchmark
+	public Object postJsonArray() {
+		FunctionWrapper wrapper = this.wrapper(this.person, MediaType.APPLICATION_JSON);
+		return this.processor.post(wrapper, "[{\"name\":\"bill\"},{\"name\":\"bob\"}]", false).block();
+	}
+
+	@Benchmark
+	public Object postExchange() {
+		MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post("/uppercase")
+				.contentType(MediaType.TEXT_PLAIN).body("hello"));
+		FunctionWrapper wrapper = this.wrapper(this.uppercase, MediaType.TEXT_PLAIN);
+		return this.processor.post(wrapper, exchange).block();
+	}
+
+	private FunctionWrapper wrapper(Function<Publisher<?>, Publisher<?>> function, MediaType contentType) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(contentType);
+		return RequestProcessor.wrapper(function).headers(headers);
+	}
+
+}
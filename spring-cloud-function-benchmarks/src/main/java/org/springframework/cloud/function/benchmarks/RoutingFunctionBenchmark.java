@@ -0,0 +1,90 @@
+/*
+ * Copyright 2020-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.function.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.springframework.cloud.function.context.FunctionCatalog;
+import org.springframework.cloud.function.context.config.RoutingFunction;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+
+/**
+ * Benchmarks {@link RoutingFunction} routing by 'spring.cloud.function.definition'
+ * header and by 'spring.cloud.function.routing-expression' (SpEL) header.
+ *
+ * @author agent
+ * @since 3.0.4
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(2)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RoutingFunctionBenchmark {
+
+	private ConfigurableApplicationContext context;
+
+	private Function<Object, Object> router;
+
+	private Message<String> definitionMessage;
+
+	private Message<String> expressionMessage;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		this.context = BenchmarkApplication.start();
+		this.router = this.context.getBean(FunctionCatalog.class).lookup(RoutingFunction.FUNCTION_NAME);
+		this.definitionMessage = MessageBuilder.withPayload("hello")
+				.setHeader("spring.cloud.function.definition", "uppercase").build();
+		this.expressionMessage = MessageBuilder.withPayload("hello")
+				.setHeader("spring.cloud.function.routing-expression", "headers.target")
+				.setHeader("target", "uppercase").build();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		this.context.close();
+	}
+
+	@Benchmark
+	public Object routeByDefinitionHeader() {
+		return this.router.apply(this.definitionMessage);
+	}
+
+	@Benchmark
+	public Object routeByExpressionHeader() {
+		return this.router.apply(this.expressionMessage);
+	}
+
+}
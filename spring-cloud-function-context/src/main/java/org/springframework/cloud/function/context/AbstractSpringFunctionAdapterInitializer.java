@@ -38,6 +38,7 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.WebApplicationType;
 import org.springframework.cloud.function.context.catalog.FunctionInspector;
 import org.springframework.cloud.function.context.config.FunctionContextUtils;
+import org.springframework.cloud.function.context.config.FunctionPreinitializer;
 import org.springframework.cloud.function.context.config.RoutingFunction;
 import org.springframework.cloud.function.utils.FunctionClassUtils;
 import org.springframework.context.ApplicationContextInitializer;
@@ -75,6 +76,8 @@ public abstract class AbstractSpringFunctionAdapterInitializer<C> implements Clo
 
 	private AtomicBoolean initialized = new AtomicBoolean();
 
+	private final StartupTimingReport startupTimingReport = new StartupTimingReport();
+
 	@Autowired(required = false)
 	private FunctionInspector inspector;
 
@@ -90,6 +93,8 @@ public abstract class AbstractSpringFunctionAdapterInitializer<C> implements Clo
 	public AbstractSpringFunctionAdapterInitializer(Class<?> configurationClass) {
 		Assert.notNull(configurationClass, "'configurationClass' must not be null");
 		this.configurationClass = configurationClass;
+		// adapters are typically instantiated during container init, so get a head start
+		FunctionPreinitializer.preinitialize(this.startupTimingReport, configurationClass);
 	}
 
 	public AbstractSpringFunctionAdapterInitializer() {
@@ -103,6 +108,16 @@ public abstract class AbstractSpringFunctionAdapterInitializer<C> implements Clo
 		}
 	}
 
+	/**
+	 * Returns the report of how long individual phases of the function bootstrap took
+	 * (e.g., class pre-loading, context startup, function lookup, serializer warm-up).
+	 * Background phases are added to the report as they complete.
+	 * @return startup timing report
+	 */
+	public StartupTimingReport getStartupTimingReport() {
+		return this.startupTimingReport;
+	}
+
 	protected void initialize(C targetContext) {
 		if (!this.initialized.compareAndSet(false, true)) {
 			return;
@@ -111,14 +126,33 @@ public abstract class AbstractSpringFunctionAdapterInitializer<C> implements Clo
 		SpringApplication builder = springApplication();
 
 		this.registerTargetContext(targetContext, builder);
-		ConfigurableApplicationContext context = builder.run();
+		ConfigurableApplicationContext context = this.startupTimingReport.time("context", () -> builder.run());
 		context.getAutowireCapableBeanFactory().autowireBean(this);
 		this.context = context;
-		if (this.catalog == null) {
-			initFunctionConsumerOrSupplierFromContext(targetContext);
+		this.startupTimingReport.time("function-lookup", () -> {
+			if (this.catalog == null) {
+				initFunctionConsumerOrSupplierFromContext(targetContext);
+			}
+			else {
+				initFunctionConsumerOrSupplierFromCatalog(targetContext);
+			}
+		});
+		this.warmUpSerializers();
+		if (logger.isInfoEnabled()) {
+			logger.info(this.startupTimingReport);
 		}
-		else {
-			initFunctionConsumerOrSupplierFromCatalog(targetContext);
+	}
+
+	/*
+	 * Warms up (in parallel) the JSON (de)serializers for the input and output types of
+	 * the resolved function, so the first invocation does not pay for it. Waits for the
+	 * warm-up, so it does not race the first invocation.
+	 */
+	private void warmUpSerializers() {
+		Object function = this.function();
+		if (function != null && this.inspector != null) {
+			FunctionPreinitializer.warmUpSerializers(this.context.getBeanFactory(), this.startupTimingReport,
+					this.inspector.getInputType(function), this.inspector.getOutputType(function)).join();
 		}
 	}
 
@@ -294,25 +328,21 @@ public abstract class AbstractSpringFunctionAdapterInitializer<C> implements Clo
 	}
 
 	private void initFunctionConsumerOrSupplierFromCatalog(Object targetContext) {
-		String name = resolveName(Function.class, targetContext);
-		this.function = this.catalog.lookup(Function.class, name);
+		this.function = this.catalog.lookup(Function.class, resolveName(Function.class, targetContext));
 		if (this.function != null) {
 			return;
 		}
 
-		name = resolveName(Consumer.class, targetContext);
-		this.consumer = this.catalog.lookup(Consumer.class, name);
+		this.consumer = this.catalog.lookup(Consumer.class, resolveName(Consumer.class, targetContext));
 		if (this.consumer != null) {
 			return;
 		}
 
-		name = resolveName(Supplier.class, targetContext);
-		this.supplier = this.catalog.lookup(Supplier.class, name);
+		this.supplier = this.catalog.lookup(Supplier.class, resolveName(Supplier.class, targetContext));
 		if (this.supplier != null) {
 			return;
 		}
 
-
 		if (this.catalog.size() >= 1 && this.catalog.size() <= 2) { // we may have RoutingFunction function
 			String functionName = this.catalog.getNames(Function.class).stream()
 					.filter(n -> !n.equals(RoutingFunction.FUNCTION_NAME))
@@ -335,7 +365,7 @@ public abstract class AbstractSpringFunctionAdapterInitializer<C> implements Clo
 			}
 		}
 		else {
-			name = this.doResolveName(targetContext);
+			String name = this.doResolveName(targetContext);
 			this.function = this.catalog.lookup(Function.class, name);
 			if (this.function != null) {
 				return;
@@ -352,7 +382,6 @@ public abstract class AbstractSpringFunctionAdapterInitializer<C> implements Clo
 		}
 	}
 
-
 	private SpringApplication springApplication() {
 		Class<?> sourceClass = this.configurationClass;
 		SpringApplication application = new org.springframework.cloud.function.context.FunctionalSpringApplication(
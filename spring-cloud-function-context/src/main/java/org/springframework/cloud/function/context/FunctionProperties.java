@@ -16,6 +16,9 @@
 
 package org.springframework.cloud.function.context;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
 /**
@@ -49,6 +52,22 @@ public class FunctionProperties {
 	 */
 	private String routingExpression;
 
+	/**
+	 * Declarative routing table used by the RoutingFunction before falling back to 'routing-expression'.
+	 */
+	private final Routing routing = new Routing();
+
+	/**
+	 * Execution policy of imperative (non-reactive) functions invoked with reactive input
+	 * (e.g., by WebFlux), keyed by function name (e.g., 'spring.cloud.function.execution.lookupOrder=bounded-elastic').
+	 */
+	private Map<String, ExecutionPolicy> execution = new LinkedHashMap<>();
+
+	/**
+	 * Execution policy of imperative functions which have no entry in 'execution'.
+	 */
+	private ExecutionPolicy defaultExecution = ExecutionPolicy.EVENT_LOOP;
+
 	public String getDefinition() {
 		return definition;
 	}
@@ -64,4 +83,189 @@ public class FunctionProperties {
 	public void setRoutingExpression(String routingExpression) {
 		this.routingExpression = routingExpression;
 	}
+
+	public Routing getRouting() {
+		return routing;
+	}
+
+	public Map<String, ExecutionPolicy> getExecution() {
+		return execution;
+	}
+
+	public void setExecution(Map<String, ExecutionPolicy> execution) {
+		this.execution = execution;
+	}
+
+	public ExecutionPolicy getDefaultExecution() {
+		return defaultExecution;
+	}
+
+	public void setDefaultExecution(ExecutionPolicy defaultExecution) {
+		this.defaultExecution = defaultExecution;
+	}
+
+	/**
+	 * Returns the execution policy of the function.
+	 * @param name the name of the function
+	 * @return the execution policy of the function
+	 */
+	public ExecutionPolicy getExecutionPolicy(String name) {
+		return execution.getOrDefault(name, defaultExecution);
+	}
+
+	/**
+	 * Routing table which maps the value of a message header or payload field (the routing key)
+	 * to function definition, resolved with a plain map lookup (e.g.,
+	 * 'spring.cloud.function.routing.header=type', 'spring.cloud.function.routing.routes.order=processOrder').
+	 */
+	public static class Routing {
+
+		/**
+		 * Name of the message header which contains the routing key.
+		 */
+		private String header;
+
+		/**
+		 * Name of the payload field (Map key or bean property) which contains the routing key.
+		 * Only used if 'header' is not set.
+		 */
+		private String payloadField;
+
+		/**
+		 * Function definitions keyed by routing key.
+		 */
+		private Map<String, String> routes = new LinkedHashMap<>();
+
+		/**
+		 * Function definition to route to when the routing key is missing or has no route.
+		 */
+		private String defaultRoute;
+
+		/**
+		 * What to do when the routing key is missing or has no route and there is no default route.
+		 */
+		private UnknownKeyStrategy unknownKey = UnknownKeyStrategy.FALLBACK;
+
+		/**
+		 * Whether reactive input without a static route should be grouped by the function each
+		 * value routes to, so each group is dispatched to (the reactive form of) its function.
+		 * Only applies when neither 'spring.cloud.function.definition' nor
+		 * 'spring.cloud.function.routing-expression' is set, since those route the whole input.
+		 */
+		private boolean fanOut;
+
+		/**
+		 * Maximum number of groups (distinct routes) processed concurrently when 'fan-out' is enabled.
+		 * Bounds the number of distinct routes, the stream fails with the first value routed beyond it.
+		 */
+		private int fanOutConcurrency = 256;
+
+		/**
+		 * Number of values requested from the reactive input ahead of grouping when 'fan-out' is enabled.
+		 */
+		private int fanOutPrefetch = 256;
+
+		public String getHeader() {
+			return header;
+		}
+
+		public void setHeader(String header) {
+			this.header = header;
+		}
+
+		public String getPayloadField() {
+			return payloadField;
+		}
+
+		public void setPayloadField(String payloadField) {
+			this.payloadField = payloadField;
+		}
+
+		public Map<String, String> getRoutes() {
+			return routes;
+		}
+
+		public void setRoutes(Map<String, String> routes) {
+			this.routes = routes;
+		}
+
+		public String getDefaultRoute() {
+			return defaultRoute;
+		}
+
+		public void setDefaultRoute(String defaultRoute) {
+			this.defaultRoute = defaultRoute;
+		}
+
+		public UnknownKeyStrategy getUnknownKey() {
+			return unknownKey;
+		}
+
+		public void setUnknownKey(UnknownKeyStrategy unknownKey) {
+			this.unknownKey = unknownKey;
+		}
+
+		public boolean isFanOut() {
+			return fanOut;
+		}
+
+		public void setFanOut(boolean fanOut) {
+			this.fanOut = fanOut;
+		}
+
+		public int getFanOutConcurrency() {
+			return fanOutConcurrency;
+		}
+
+		public void setFanOutConcurrency(int fanOutConcurrency) {
+			this.fanOutConcurrency = fanOutConcurrency;
+		}
+
+		public int getFanOutPrefetch() {
+			return fanOutPrefetch;
+		}
+
+		public void setFanOutPrefetch(int fanOutPrefetch) {
+			this.fanOutPrefetch = fanOutPrefetch;
+		}
+	}
+
+	/**
+	 * Strategy for routing keys which have no route in the routing table.
+	 */
+	public enum UnknownKeyStrategy {
+
+		/**
+		 * Continue with 'routing-expression' and 'definition' properties.
+		 */
+		FALLBACK,
+
+		/**
+		 * Fail the invocation.
+		 */
+		FAIL
+	}
+
+	/**
+	 * Where imperative functions are invoked when their input is reactive.
+	 */
+	public enum ExecutionPolicy {
+
+		/**
+		 * On the thread which emits the input (e.g., the event loop of the server).
+		 * Only suitable for functions which do not block.
+		 */
+		EVENT_LOOP,
+
+		/**
+		 * On the bounded elastic scheduler, one invocation at a time.
+		 */
+		BOUNDED_ELASTIC,
+
+		/**
+		 * On a new virtual thread for each invocation, one invocation at a time. Falls back
+		 * to 'BOUNDED_ELASTIC' on JVMs which do not support virtual threads.
+		 */
+		VIRTUAL_THREAD
+	}
 }
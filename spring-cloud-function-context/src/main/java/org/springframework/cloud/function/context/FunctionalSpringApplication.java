@@ -16,6 +16,10 @@
 
 package org.springframework.cloud.function.context;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -23,18 +27,31 @@ import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.support.BeanDefinitionRegistry;
 import org.springframework.boot.WebApplicationType;
+import org.springframework.cloud.function.context.catalog.BeanFactoryAwareFunctionRegistry.FunctionInvocationWrapper;
+import org.springframework.cloud.function.context.catalog.FunctionTypeIndex;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextInitializer;
 import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.env.Environment;
 import org.springframework.core.env.MapPropertySource;
 import org.springframework.core.env.MutablePropertySources;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.util.Assert;
 import org.springframework.util.ClassUtils;
+import org.springframework.util.MimeTypeUtils;
 import org.springframework.util.ObjectUtils;
+import org.springframework.util.StringUtils;
 
 import static java.util.Arrays.stream;
 
@@ -56,11 +73,32 @@ public class FunctionalSpringApplication
 	 */
 	public static final String SPRING_WEB_APPLICATION_TYPE = "spring.main.web-application-type";
 
+	/**
+	 * Flag to enable 'training run' mode where the application starts, invokes the
+	 * function identified by 'spring.cloud.function.definition' once with a sample
+	 * payload and shuts down. Primarily intended to be used with JVM flags which dump the
+	 * list of loaded classes (e.g., -XX:DumpLoadedClassList) or the AppCDS archive
+	 * (e.g., -XX:ArchiveClassesAtExit) at exit.
+	 */
+	public static final String SPRING_FUNCTION_TRAINING_ENABLED = "spring.cloud.function.training.enabled";
+
+	/**
+	 * Sample payload to invoke the function with during the training run.
+	 */
+	public static final String SPRING_FUNCTION_TRAINING_PAYLOAD = "spring.cloud.function.training.payload";
+
+	/**
+	 * Content type of the sample payload used during the training run.
+	 */
+	public static final String SPRING_FUNCTION_TRAINING_CONTENT_TYPE = "spring.cloud.function.training.content-type";
+
 	/**
 	 * Name of default property source.
 	 */
 	private static final String DEFAULT_PROPERTIES = "defaultProperties";
 
+	private static Log logger = LogFactory.getLog(FunctionalSpringApplication.class);
+
 	public FunctionalSpringApplication(Class<?>... primarySources) {
 		super(primarySources);
 		setApplicationContextClass(GenericApplicationContext.class);
@@ -87,6 +125,15 @@ public class FunctionalSpringApplication
 		return new FunctionalSpringApplication(primarySources).run(args);
 	}
 
+	@Override
+	public ConfigurableApplicationContext run(String... args) {
+		ConfigurableApplicationContext context = super.run(args);
+		if (context.getEnvironment().getProperty(SPRING_FUNCTION_TRAINING_ENABLED, Boolean.class, false)) {
+			this.train(context);
+		}
+		return context;
+	}
+
 	@SuppressWarnings("unchecked")
 	@Override
 	protected void postProcessApplicationContext(ConfigurableApplicationContext context) {
@@ -148,6 +195,65 @@ public class FunctionalSpringApplication
 		}
 	}
 
+	/*
+	 * Exercises the same path a real invocation would (lookup, input/output conversion,
+	 * invocation) and closes the context so the JVM can exit.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private void train(ConfigurableApplicationContext context) {
+		Environment environment = context.getEnvironment();
+		String definition = environment.getProperty("spring.cloud.function.definition");
+		String contentType = environment.getProperty(SPRING_FUNCTION_TRAINING_CONTENT_TYPE,
+				MimeTypeUtils.APPLICATION_JSON_VALUE);
+		String payload = environment.getProperty(SPRING_FUNCTION_TRAINING_PAYLOAD, "{}");
+		logger.info("Performing training run of function '" + definition + "'");
+		try {
+			Object function = context.getBean(FunctionCatalog.class).lookup(definition, contentType);
+			Assert.notNull(function, "Failed to lookup function '" + definition + "' for the training run");
+			Message<byte[]> input = MessageBuilder.withPayload(payload.getBytes(StandardCharsets.UTF_8))
+					.setHeader(MessageHeaders.CONTENT_TYPE, contentType).build();
+			Object result = null;
+			if (function instanceof FunctionInvocationWrapper && ((FunctionInvocationWrapper) function).isSupplier()) {
+				result = ((Supplier) function).get();
+			}
+			else if (function instanceof Function) {
+				result = ((Function) function).apply(input);
+			}
+			else if (function instanceof Consumer) {
+				((Consumer) function).accept(input);
+			}
+			else if (function instanceof Supplier) {
+				result = ((Supplier) function).get();
+			}
+			if (result instanceof Publisher) {
+				result = Flux.from((Publisher<?>) result).blockFirst(Duration.ofSeconds(30));
+			}
+			if (result instanceof Message) {
+				result = ((Message<?>) result).getPayload();
+			}
+			if (result instanceof byte[]) {
+				result = new String((byte[]) result, StandardCharsets.UTF_8);
+			}
+			logger.info("Training run of function '" + definition + "' completed with: " + result);
+			this.storeFunctionTypeIndex(context);
+		}
+		finally {
+			exit(context);
+		}
+	}
+
+	private void storeFunctionTypeIndex(ConfigurableApplicationContext context) {
+		String output = context.getEnvironment().getProperty(FunctionTypeIndex.INDEX_OUTPUT_PROPERTY);
+		if (StringUtils.hasText(output)) {
+			try {
+				FunctionTypeIndex.forClassLoader(context.getBeanFactory().getBeanClassLoader()).store(new File(output));
+			}
+			catch (IOException e) {
+				logger.warn("Failed to store function type index to " + output, e);
+			}
+		}
+	}
+
 	private void register(GenericApplicationContext context, Object function, Class<?> functionType) {
 		context.registerBean("function", FunctionRegistration.class,
 				() -> new FunctionRegistration<>(
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2020-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.function.context;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Records how long each phase of the function bootstrap took (e.g., class pre-loading,
+ * application context startup, function lookup, serializer warm-up).
+ * <br>
+ * Phases may run concurrently and complete in any order, hence the report is thread-safe
+ * and phases are kept in the order in which they completed.
+ *
+ * @author agent
+ * @since 3.0.4
+ */
+public class StartupTimingReport {
+
+	private final long startTime = System.nanoTime();
+
+	private final Map<String, Long> phases = new LinkedHashMap<>();
+
+	/**
+	 * Executes the given phase on the current thread recording how long it took.
+	 * @param phase the name of the phase
+	 * @param runnable the phase itself
+	 */
+	public void time(String phase, Runnable runnable) {
+		this.time(phase, () -> {
+			runnable.run();
+			return null;
+		});
+	}
+
+	/**
+	 * Executes the given phase on the current thread recording how long it took.
+	 * @param <T> the type of the phase result
+	 * @param phase the name of the phase
+	 * @param supplier the phase itself
+	 * @return the result of the phase
+	 */
+	public <T> T time(String phase, Supplier<T> supplier) {
+		long start = System.nanoTime();
+		try {
+			return supplier.get();
+		}
+		finally {
+			this.record(phase, System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Records the duration of a phase.
+	 * @param phase the name of the phase
+	 * @param nanos the duration of the phase in nanoseconds
+	 */
+	public void record(String phase, long nanos) {
+		synchronized (this.phases) {
+			this.phases.put(phase, TimeUnit.NANOSECONDS.toMillis(nanos));
+		}
+	}
+
+	/**
+	 * Returns the durations (in milliseconds) of all phases completed so far.
+	 * @return phase durations keyed by phase name
+	 */
+	public Map<String, Long> getPhases() {
+		synchronized (this.phases) {
+			return Collections.unmodifiableMap(new LinkedHashMap<>(this.phases));
+		}
+	}
+
+	/**
+	 * Returns the time (in milliseconds) elapsed since this report was created.
+	 * @return elapsed time
+	 */
+	public long getElapsedTime() {
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - this.startTime);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("Startup timing (ms): ");
+		this.getPhases().forEach((phase, millis) -> builder.append(phase).append('=').append(millis).append(", "));
+		return builder.append("elapsed=").append(this.getElapsedTime()).toString();
+	}
+
+}
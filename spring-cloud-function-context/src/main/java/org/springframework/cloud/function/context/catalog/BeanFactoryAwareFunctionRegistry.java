@@ -23,12 +23,17 @@ import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import java.util.function.Function;
@@ -43,6 +48,9 @@ import org.apache.commons.logging.LogFactory;
 import org.reactivestreams.Publisher;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.function.Tuple2;
 import reactor.util.function.Tuples;
 
 import org.springframework.aop.framework.ProxyFactory;
@@ -61,12 +69,11 @@ import org.springframework.cloud.function.context.config.FunctionContextUtils;
 import org.springframework.cloud.function.context.config.RoutingFunction;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
+import org.springframework.context.ApplicationListener;
 import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.core.annotation.AnnotatedElementUtils;
 import org.springframework.core.convert.ConversionService;
 import org.springframework.core.type.StandardMethodMetadata;
-import org.springframework.expression.Expression;
-import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.lang.Nullable;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageHeaders;
@@ -87,6 +94,14 @@ import org.springframework.util.StringUtils;
  * Implementation of {@link FunctionRegistry} and {@link FunctionCatalog} which is aware of the
  * underlying {@link BeanFactory} to access available functions. Functions that are registered via
  * {@link #register(FunctionRegistration)} operation are stored/cached locally.
+ * <br>
+ * Fully composed functions returned by {@link #lookup(String, String...)} are cached
+ * per function definition and accepted output types, so repeated lookups (e.g., per
+ * HTTP request or per routed message) do not pay the cost of composition again.
+ * The cache is invalidated on {@link #register(FunctionRegistration)} as well as on
+ * {@link FunctionRegistrationEvent} and {@link FunctionUnregistrationEvent}. The former
+ * also publishes {@link FunctionRegistrationEvent}, so other caches of resolved functions
+ * are invalidated as well.
  *
  * @author Oleg Zhurakousky
  * @author Eric Botard
@@ -94,10 +109,17 @@ import org.springframework.util.StringUtils;
  * @since 3.0
  */
 public class BeanFactoryAwareFunctionRegistry
-		implements FunctionRegistry, FunctionInspector, ApplicationContextAware {
+		implements FunctionRegistry, FunctionInspector, ApplicationContextAware, ApplicationListener<FunctionCatalogEvent> {
 
 	private static Log logger = LogFactory.getLog(BeanFactoryAwareFunctionRegistry.class);
 
+	private static final Field HEADERS_FIELD;
+
+	static {
+		HEADERS_FIELD = ReflectionUtils.findField(MessageHeaders.class, "headers");
+		HEADERS_FIELD.setAccessible(true);
+	}
+
 	/**
 	 * Identifies MessageConversionExceptions that happen when input can't be converted.
 	 */
@@ -108,16 +130,35 @@ public class BeanFactoryAwareFunctionRegistry
 	 */
 	public static final String COULD_NOT_CONVERT_OUTPUT = "Could Not Convert Output";
 
+	/**
+	 * Maximum number of looked up functions kept in the lookup cache.
+	 */
+	public static final int LOOKUP_CACHE_LIMIT = 256;
+
 	private ConfigurableApplicationContext applicationContext;
 
-	private final Map<Object, FunctionRegistration<Object>> registrationsByFunction = new HashMap<>();
+	/*
+	 * Both maps are read on the invocation path (e.g., getRegistration(..), compose(..)) while
+	 * registrations may happen at any time (e.g., deployer), hence the concurrent maps.
+	 */
+	private final Map<Object, FunctionRegistration<Object>> registrationsByFunction = new ConcurrentHashMap<>();
 
-	private final Map<String, FunctionRegistration<Object>> registrationsByName = new HashMap<>();
+	private final Map<String, FunctionRegistration<Object>> registrationsByName = new ConcurrentHashMap<>();
 
 	private final ConversionService conversionService;
 
 	private final CompositeMessageConverter messageConverter;
 
+	private final Map<String, Object> lookupCache = new ConcurrentHashMap<>();
+
+	private final AtomicLong lookupCacheGeneration = new AtomicLong();
+
+	private final AtomicLong lookupCacheHits = new AtomicLong();
+
+	private final AtomicLong lookupCacheMisses = new AtomicLong();
+
+	private final Map<String, List<MimeType>> parsedMimeTypes = new ConcurrentHashMap<>();
+
 	public BeanFactoryAwareFunctionRegistry(ConversionService conversionService,
 			@Nullable CompositeMessageConverter messageConverter) {
 		this.conversionService = conversionService;
@@ -142,10 +183,52 @@ public class BeanFactoryAwareFunctionRegistry
 		if (!StringUtils.hasText(definition)) {
 			definition = this.applicationContext.getEnvironment().getProperty("spring.cloud.function.definition");
 		}
-		Object function = this.proxyInvokerIfNecessary((FunctionInvocationWrapper) this.compose(null, definition, acceptedOutputTypes));
+		String cacheKey = this.toLookupCacheKey(definition, acceptedOutputTypes);
+		Object function = this.lookupCache.get(cacheKey);
+		if (function != null) {
+			this.lookupCacheHits.incrementAndGet();
+			return (T) function;
+		}
+		this.lookupCacheMisses.incrementAndGet();
+		long generation = this.lookupCacheGeneration.get();
+		function = this.proxyInvokerIfNecessary((FunctionInvocationWrapper) this.compose(null, definition, acceptedOutputTypes));
+		if (function != null) {
+			this.cacheLookup(cacheKey, function, generation);
+		}
 		return (T) function;
 	}
 
+	/**
+	 * Returns the number of lookups served from the lookup cache.
+	 * @return the number of lookup cache hits
+	 */
+	public long getLookupCacheHits() {
+		return this.lookupCacheHits.get();
+	}
+
+	/**
+	 * Returns the number of lookups which required function composition.
+	 * @return the number of lookup cache misses
+	 */
+	public long getLookupCacheMisses() {
+		return this.lookupCacheMisses.get();
+	}
+
+	/**
+	 * Returns the number of functions currently held in the lookup cache.
+	 * @return the size of the lookup cache
+	 */
+	public int getLookupCacheSize() {
+		return this.lookupCache.size();
+	}
+
+	@Override
+	public void onApplicationEvent(FunctionCatalogEvent event) {
+		if (event instanceof FunctionRegistrationEvent || event instanceof FunctionUnregistrationEvent) {
+			this.invalidateLookupCache();
+		}
+	}
+
 	@SuppressWarnings("unchecked")
 	@Override
 	public Set<String> getNames(Class<?> type) {
@@ -167,7 +250,39 @@ public class BeanFactoryAwareFunctionRegistry
 	public <T> void register(FunctionRegistration<T> registration) {
 		this.registrationsByFunction.put(registration.getTarget(), (FunctionRegistration<Object>) registration);
 		for (String name : registration.getNames()) {
-			this.registrationsByName.put(name, (FunctionRegistration<Object>) registration);
+			FunctionRegistration<Object> previous = this.registrationsByName.put(name, (FunctionRegistration<Object>) registration);
+			if (previous != null && previous != registration) {
+				this.removeReplacedRegistration(name, previous);
+			}
+		}
+		this.invalidateLookupCache();
+		// lets other caches of resolved functions (e.g., routing) know about the new registration
+		if (this.applicationContext != null && this.applicationContext.isActive()) {
+			this.applicationContext.publishEvent(new FunctionRegistrationEvent(this,
+					registration.getTarget() instanceof Supplier ? Supplier.class
+							: (registration.getTarget() instanceof Consumer ? Consumer.class : Function.class),
+					registration.getNames()));
+		}
+	}
+
+	/*
+	 * Once a registration is replaced (e.g., function archive redeployed) neither it nor the
+	 * compositions built from it may be served (or referenced) any longer.
+	 */
+	private void removeReplacedRegistration(String name, FunctionRegistration<Object> previous) {
+		if (!this.registrationsByName.containsValue(previous)) {
+			this.registrationsByFunction.remove(previous.getTarget(), previous);
+		}
+		for (Iterator<Map.Entry<String, FunctionRegistration<Object>>> iterator = this.registrationsByName.entrySet()
+				.iterator(); iterator.hasNext();) {
+			Map.Entry<String, FunctionRegistration<Object>> entry = iterator.next();
+			String definition = entry.getKey();
+			if ((definition.contains("|") || definition.contains(","))
+					&& Arrays.asList(StringUtils.delimitedListToStringArray(definition.replaceAll(",", "|"), "|"))
+						.contains(name)) {
+				iterator.remove();
+				this.registrationsByFunction.remove(entry.getValue().getTarget(), entry.getValue());
+			}
 		}
 	}
 
@@ -178,6 +293,9 @@ public class BeanFactoryAwareFunctionRegistry
 
 	@Override
 	public FunctionRegistration<?> getRegistration(Object function) {
+		if (function == null) {
+			return null;
+		}
 		FunctionRegistration<?> registration = this.registrationsByFunction.get(function);
 		// need to do this due to the deployer not wrapping the actual target into FunctionInvocationWrapper
 		// hence the lookup would need to be made by the actual target
@@ -187,6 +305,55 @@ public class BeanFactoryAwareFunctionRegistry
 		return this.registrationsByFunction.get(function);
 	}
 
+	private String toLookupCacheKey(String definition, String... acceptedOutputTypes) {
+		StringBuilder key = new StringBuilder(definition == null ? "" : definition.replace(',', '|').trim());
+		if (acceptedOutputTypes != null) {
+			for (String acceptedOutputType : acceptedOutputTypes) {
+				key.append('#').append(acceptedOutputType);
+			}
+		}
+		return key.toString();
+	}
+
+	/*
+	 * The function is only cached if no invalidation happened while it was being composed,
+	 * otherwise it may have been composed from registrations that are no longer current.
+	 */
+	private void cacheLookup(String cacheKey, Object function, long generation) {
+		if (this.lookupCache.size() >= LOOKUP_CACHE_LIMIT) {
+			Iterator<String> keys = this.lookupCache.keySet().iterator();
+			if (keys.hasNext()) {
+				keys.next();
+				keys.remove();
+			}
+		}
+		this.lookupCache.put(cacheKey, function);
+		if (this.lookupCacheGeneration.get() != generation) {
+			this.lookupCache.remove(cacheKey, function);
+		}
+	}
+
+	/*
+	 * Accepted output types are parsed for every output value, so parsed values are memoized.
+	 * The number of distinct accepted output types is small, but it is still bounded to
+	 * protect against arbitrary values (e.g., coming from HTTP 'Accept' headers).
+	 */
+	private List<MimeType> parseMimeTypes(String mimeTypes) {
+		List<MimeType> parsed = this.parsedMimeTypes.get(mimeTypes);
+		if (parsed == null) {
+			parsed = Collections.unmodifiableList(MimeTypeUtils.parseMimeTypes(mimeTypes));
+			if (this.parsedMimeTypes.size() < LOOKUP_CACHE_LIMIT) {
+				this.parsedMimeTypes.put(mimeTypes, parsed);
+			}
+		}
+		return parsed;
+	}
+
+	private void invalidateLookupCache() {
+		this.lookupCacheGeneration.incrementAndGet();
+		this.lookupCache.clear();
+	}
+
 	private Object locateFunction(String name) {
 		Object function = this.registrationsByName.get(name);
 		if (function == null && this.applicationContext.containsBean(name)) {
@@ -224,6 +391,26 @@ public class BeanFactoryAwareFunctionRegistry
 						: new FunctionType(function.getClass()).getType();
 	}
 
+	/*
+	 * Scheduler of the execution policy configured for the function (see FunctionProperties),
+	 * or null if the function should be invoked on the thread which emits its input.
+	 */
+	@Nullable
+	private Scheduler schedulerOf(String functionName) {
+		FunctionProperties functionProperties = this.applicationContext == null || !this.applicationContext.isActive()
+				? null : this.applicationContext.getBeanProvider(FunctionProperties.class).getIfAvailable();
+		FunctionProperties.ExecutionPolicy policy = functionProperties == null
+				? FunctionProperties.ExecutionPolicy.EVENT_LOOP : functionProperties.getExecutionPolicy(functionName);
+		switch (policy) {
+		case BOUNDED_ELASTIC:
+			return Schedulers.boundedElastic();
+		case VIRTUAL_THREAD:
+			return VirtualThreadScheduler.INSTANCE;
+		default:
+			return null;
+		}
+	}
+
 	private String discoverDefaultDefinitionIfNecessary(String definition) {
 		if (StringUtils.isEmpty(definition)) {
 			// the underscores are for Kotlin function registrations (see KotlinLambdaToFunctionAutoConfiguration)
@@ -280,9 +467,10 @@ public class BeanFactoryAwareFunctionRegistry
 			return null;
 		}
 		Function<?, ?> resultFunction = null;
-		if (this.registrationsByName.containsKey(definition)) {
-			Object targetFunction =  this.registrationsByName.get(definition).getTarget();
-			Type functionType = this.registrationsByName.get(definition).getType().getType();
+		FunctionRegistration<Object> definitionRegistration = this.registrationsByName.get(definition);
+		if (definitionRegistration != null) {
+			Object targetFunction =  definitionRegistration.getTarget();
+			Type functionType = definitionRegistration.getType().getType();
 			resultFunction = new FunctionInvocationWrapper(targetFunction, functionType, definition, acceptedOutputTypes);
 		}
 		else {
@@ -467,7 +655,33 @@ public class BeanFactoryAwareFunctionRegistry
 
 		private final String functionDefinition;
 
-		private final Field headersField;
+		/*
+		 * Invocation plan. Everything below is derived from the function type once, at construction,
+		 * so none of it has to be re-computed for each invocation (or each element of a Publisher).
+		 */
+		private final int outputCount;
+
+		private final boolean multipleInputArguments;
+
+		private final boolean reactiveInput;
+
+		private final boolean fluxInput;
+
+		private final boolean consumerFunction;
+
+		private final Type[] inputTypes;
+
+		private final Type[] rawInputTypes;
+
+		private final boolean[] messageInputs;
+
+		private final boolean[] collectionInputs;
+
+		/*
+		 * Where imperative function is invoked when input is a Publisher (null for the
+		 * thread which emits the input).
+		 */
+		private final Scheduler scheduler;
 
 		FunctionInvocationWrapper(Object target, Type functionType, String functionDefinition, String... acceptedOutputMimeTypes) {
 			this.target = target;
@@ -475,8 +689,31 @@ public class BeanFactoryAwareFunctionRegistry
 			this.functionType = functionType;
 			this.acceptedOutputMimeTypes = acceptedOutputMimeTypes;
 			this.functionDefinition = functionDefinition;
-			this.headersField = ReflectionUtils.findField(MessageHeaders.class, "headers");
-			this.headersField.setAccessible(true);
+
+			this.outputCount = FunctionTypeUtils.getOutputCount(functionType);
+			this.multipleInputArguments = FunctionTypeUtils.isMultipleInputArguments(functionType);
+			this.consumerFunction = FunctionTypeUtils.isConsumer(functionType);
+			int inputCount = Math.max(FunctionTypeUtils.getInputCount(functionType), 1);
+			this.inputTypes = new Type[inputCount];
+			this.rawInputTypes = new Type[inputCount];
+			this.messageInputs = new boolean[inputCount];
+			this.collectionInputs = new boolean[inputCount];
+			for (int i = 0; i < inputCount; i++) {
+				Type inputType = FunctionTypeUtils.getInputType(functionType, i);
+				// this needs revisiting as the type is not always Class (think really complex types)
+				Type rawInputType = FunctionTypeUtils.unwrapActualTypeByIndex(inputType, 0);
+				if (rawInputType instanceof ParameterizedType) {
+					rawInputType = ((ParameterizedType) rawInputType).getRawType();
+				}
+				this.inputTypes[i] = inputType;
+				this.rawInputTypes[i] = rawInputType;
+				this.messageInputs[i] = FunctionTypeUtils.isMessage(inputType);
+				this.collectionInputs[i] = FunctionTypeUtils.isTypeCollection(inputType);
+			}
+			this.reactiveInput = FunctionTypeUtils.isReactive(this.inputTypes[0]);
+			this.fluxInput = this.reactiveInput && FunctionTypeUtils.isFlux(this.inputTypes[0]);
+			this.scheduler = this.composed || this.reactiveInput || this.multipleInputArguments
+					|| FunctionTypeUtils.isSupplier(functionType) ? null : schedulerOf(functionDefinition);
 		}
 
 		@Override
@@ -568,6 +805,26 @@ public class BeanFactoryAwareFunctionRegistry
 			return invocationResult;
 		}
 
+		/*
+		 * Each invocation is a separate task on the scheduler, while invocations (and hence
+		 * the order of results) remain sequential, same as on the thread of the input.
+		 */
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		private Publisher<?> invokeFunctionOnScheduler(Publisher<?> input) {
+			if (this.consumerFunction) {
+				Function<Object, Mono<?>> invocation = value -> Mono
+						.fromRunnable(() -> ((Consumer) this.target).accept(value)).subscribeOn(this.scheduler);
+				return input instanceof Mono
+						? Mono.from(input).flatMap(invocation).then()
+								: Flux.from(input).concatMap(invocation).then();
+			}
+			Function<Object, Mono<?>> invocation = value -> Mono
+					.fromCallable(() -> this.invokeFunction(value)).subscribeOn(this.scheduler);
+			return input instanceof Mono
+					? Mono.from(input).flatMap(invocation)
+							: Flux.from(input).concatMap(invocation);
+		}
+
 		@SuppressWarnings({ "unchecked", "rawtypes" })
 		private Object doApply(Object input, boolean consumer, Function<Message, Message> enricher) {
 			if (logger.isDebugEnabled()) {
@@ -577,8 +834,8 @@ public class BeanFactoryAwareFunctionRegistry
 			Object result;
 			if (input instanceof Publisher) {
 				input = this.composed ? input :
-					this.convertInputPublisherIfNecessary((Publisher<?>) input, FunctionTypeUtils.getInputType(this.functionType, 0));
-				if (FunctionTypeUtils.isReactive(FunctionTypeUtils.getInputType(this.functionType, 0))) {
+					this.convertInputPublisherIfNecessary((Publisher<?>) input, 0);
+				if (this.reactiveInput) {
 					result = this.invokeFunction(input);
 				}
 				else {
@@ -588,7 +845,10 @@ public class BeanFactoryAwareFunctionRegistry
 										: Flux.from((Publisher<?>) input).transform((Function) this.target);
 					}
 					else {
-						if (FunctionTypeUtils.isConsumer(functionType)) {
+						if (this.scheduler != null) {
+							result = this.invokeFunctionOnScheduler((Publisher<?>) input);
+						}
+						else if (this.consumerFunction) {
 							result = input instanceof Mono
 									? Mono.from((Publisher) input).doOnNext((Consumer) this.target).then()
 											: Flux.from((Publisher) input).doOnNext((Consumer) this.target).then();
@@ -602,9 +862,8 @@ public class BeanFactoryAwareFunctionRegistry
 				}
 			}
 			else {
-				Type type = FunctionTypeUtils.getInputType(this.functionType, 0);
-				if (!this.composed && !FunctionTypeUtils.isMultipleInputArguments(this.functionType) && FunctionTypeUtils.isReactive(type)) {
-					Publisher<?> publisher = FunctionTypeUtils.isFlux(type)
+				if (!this.composed && !this.multipleInputArguments && this.reactiveInput) {
+					Publisher<?> publisher = this.fluxInput
 							? input == null ? Flux.empty() : Flux.just(input)
 									: input == null ? Mono.empty() : Mono.just(input);
 					if (logger.isDebugEnabled()) {
@@ -612,11 +871,11 @@ public class BeanFactoryAwareFunctionRegistry
 								+ "should at least assume reactive output (e.g., Function<String, Flux<String>> f3 = catalog.lookup(\"echoFlux\");), "
 								+ "otherwise invocation will result in ClassCastException.");
 					}
-					result = this.invokeFunction(this.convertInputPublisherIfNecessary(publisher, FunctionTypeUtils.getInputType(this.functionType, 0)));
+					result = this.invokeFunction(this.convertInputPublisherIfNecessary(publisher, 0));
 				}
 				else {
 					result = this.invokeFunction(this.composed ? input
-							: (input == null ? input : this.convertInputValueIfNecessary(input, FunctionTypeUtils.getInputType(this.functionType, 0))));
+							: (input == null ? input : this.convertInputValueIfNecessary(input, 0)));
 				}
 			}
 
@@ -635,11 +894,10 @@ public class BeanFactoryAwareFunctionRegistry
 			logger.debug("Applying type conversion on output value");
 			Object convertedValue = null;
 			if (FunctionTypeUtils.isMultipleArgumentsHolder(value)) {
-				int outputCount = FunctionTypeUtils.getOutputCount(this.functionType);
-				Object[] convertedInputArray = new Object[outputCount];
-				for (int i = 0; i < outputCount; i++) {
-					Expression parsed = new SpelExpressionParser().parseExpression("getT" + (i + 1) + "()");
-					Object outputArgument = parsed.getValue(value);
+				Object[] outputArguments = ((Tuple2<?, ?>) value).toArray();
+				Object[] convertedInputArray = new Object[this.outputCount];
+				for (int i = 0; i < this.outputCount; i++) {
+					Object outputArgument = outputArguments[i];
 					try {
 						convertedInputArray[i] = outputArgument instanceof Publisher
 								? this.convertOutputPublisherIfNecessary((Publisher<?>) outputArgument, enricher, acceptedOutputMimeTypes[i])
@@ -648,14 +906,14 @@ public class BeanFactoryAwareFunctionRegistry
 					catch (ArrayIndexOutOfBoundsException e) {
 						throw new IllegalStateException("The number of 'acceptedOutputMimeTypes' for function '" + this.functionDefinition
 								+ "' is (" + acceptedOutputMimeTypes.length
-								+ "), which does not match the number of actual outputs of this function which is (" +  outputCount + ").", e);
+								+ "), which does not match the number of actual outputs of this function which is (" +  this.outputCount + ").", e);
 					}
 
 				}
 				convertedValue = Tuples.fromArray(convertedInputArray);
 			}
 			else {
-				List<MimeType> acceptedContentTypes = MimeTypeUtils.parseMimeTypes(acceptedOutputMimeTypes[0].toString());
+				List<MimeType> acceptedContentTypes = parseMimeTypes(acceptedOutputMimeTypes[0]);
 				if (CollectionUtils.isEmpty(acceptedContentTypes)) {
 					convertedValue = value;
 				}
@@ -705,7 +963,7 @@ public class BeanFactoryAwareFunctionRegistry
 				MessageHeaders headers = ((Message) value).getHeaders();
 				if (!headers.containsKey(MessageHeaders.CONTENT_TYPE)) {
 					Map<String, Object> headersMap = (Map<String, Object>) ReflectionUtils
-							.getField(this.headersField, headers);
+							.getField(HEADERS_FIELD, headers);
 					headersMap.put(MessageHeaders.CONTENT_TYPE, acceptedContentType);
 				}
 			}
@@ -731,18 +989,18 @@ public class BeanFactoryAwareFunctionRegistry
 			return result;
 		}
 
-		private Publisher<?> convertInputPublisherIfNecessary(Publisher<?> publisher, Type type) {
+		private Publisher<?> convertInputPublisherIfNecessary(Publisher<?> publisher, int index) {
 			if (logger.isDebugEnabled()) {
 				logger.debug("Applying type conversion on input Publisher " + publisher);
 			}
 
 			Publisher<?> result = publisher instanceof Mono
-					? Mono.from(publisher).map(value -> this.convertInputValueIfNecessary(value, type))
-							: Flux.from(publisher).map(value -> this.convertInputValueIfNecessary(value, type));
+					? Mono.from(publisher).map(value -> this.convertInputValueIfNecessary(value, index))
+							: Flux.from(publisher).map(value -> this.convertInputValueIfNecessary(value, index));
 			return result;
 		}
 
-		private Object convertInputValueIfNecessary(Object value, Type type) {
+		private Object convertInputValueIfNecessary(Object value, int index) {
 			if (logger.isDebugEnabled()) {
 				logger.debug("Applying type conversion on input value " + value);
 				logger.debug("Function type: " + this.functionType);
@@ -750,41 +1008,37 @@ public class BeanFactoryAwareFunctionRegistry
 
 			Object convertedValue = value;
 			if (FunctionTypeUtils.isMultipleArgumentsHolder(value)) {
-				int inputCount = FunctionTypeUtils.getInputCount(functionType);
-				Object[] convertedInputArray = new Object[inputCount];
-				for (int i = 0; i < inputCount; i++) {
-					Expression parsed = new SpelExpressionParser().parseExpression("getT" + (i + 1) + "()");
-					Object inptArgument = parsed.getValue(value);
+				Object[] inputArguments = ((Tuple2<?, ?>) value).toArray();
+				Object[] convertedInputArray = new Object[this.inputTypes.length];
+				for (int i = 0; i < this.inputTypes.length; i++) {
+					Object inptArgument = inputArguments[i];
 					inptArgument = inptArgument instanceof Publisher
-							? this.convertInputPublisherIfNecessary((Publisher<?>) inptArgument, FunctionTypeUtils.getInputType(functionType, i))
-									: this.convertInputValueIfNecessary(inptArgument, FunctionTypeUtils.getInputType(functionType, i));
+							? this.convertInputPublisherIfNecessary((Publisher<?>) inptArgument, i)
+									: this.convertInputValueIfNecessary(inptArgument, i);
 					convertedInputArray[i] = inptArgument;
 				}
 				convertedValue = Tuples.fromArray(convertedInputArray);
 			}
 			else {
-				// this needs revisiting as the type is not always Class (think really complex types)
-				Type rawType =  FunctionTypeUtils.unwrapActualTypeByIndex(type, 0);
+				Type type = this.inputTypes[index];
+				Type rawType = this.rawInputTypes[index];
 				if (logger.isDebugEnabled()) {
 					logger.debug("Raw type of value: " + value + "is " + rawType);
 				}
 
-				if (rawType instanceof ParameterizedType) {
-					rawType = ((ParameterizedType) rawType).getRawType();
-				}
 				if (value instanceof Message<?>) { // see AWS adapter with Optional payload
 					if (messageNeedsConversion(rawType, (Message<?>) value)) {
-						convertedValue = FunctionTypeUtils.isTypeCollection(type)
+						convertedValue = this.collectionInputs[index]
 								? messageConverter.fromMessage((Message<?>) value, (Class<?>) rawType, type)
 										:  messageConverter.fromMessage((Message<?>) value, (Class<?>) rawType);
 						if (logger.isDebugEnabled()) {
 							logger.debug("Converted from Message: " + convertedValue);
 						}
-						if (FunctionTypeUtils.isMessage(type)) {
+						if (this.messageInputs[index]) {
 							convertedValue = MessageBuilder.withPayload(convertedValue).copyHeaders(((Message<?>) value).getHeaders()).build();
 						}
 					}
-					else if (!FunctionTypeUtils.isMessage(type)) {
+					else if (!this.messageInputs[index]) {
 						convertedValue = ((Message<?>) convertedValue).getPayload();
 					}
 				}
@@ -820,4 +1074,27 @@ public class BeanFactoryAwareFunctionRegistry
 				&& !(message.getPayload().getClass().isAssignableFrom(((Class<?>) rawType)));
 		}
 	}
+
+	/*
+	 * Created on first use. Virtual threads are only available on JDK 21 and later, hence
+	 * the reflective lookup and the fall back to the bounded elastic scheduler.
+	 */
+	private static final class VirtualThreadScheduler {
+
+		static final Scheduler INSTANCE = create();
+
+		private static Scheduler create() {
+			try {
+				Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+				return Schedulers.fromExecutorService((ExecutorService) factory.invoke(null), "virtual-thread");
+			}
+			catch (Throwable e) {
+				logger.warn("Virtual threads are not supported by this JVM, "
+						+ "functions will be invoked on bounded elastic scheduler instead");
+				return Schedulers.boundedElastic();
+			}
+		}
+
+	}
+
 }
@@ -0,0 +1,352 @@
+/*
+ * Copyright 2020-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.function.context.catalog;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.factory.support.AbstractBeanDefinition;
+import org.springframework.context.annotation.ScannedGenericBeanDefinition;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.type.MethodMetadata;
+import org.springframework.core.type.StandardMethodMetadata;
+import org.springframework.lang.Nullable;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ConcurrentReferenceHashMap;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.util.StringUtils;
+
+/**
+ * Index of function types (keyed by function bean name) and functional methods (keyed by
+ * POJO function class name) resolved in the previous run of the application (e.g., the
+ * training run of {@link org.springframework.cloud.function.context.FunctionalSpringApplication}
+ * performed during the build), allowing subsequent runs to skip reflective discovery
+ * of function types on startup.
+ * <br>
+ * The index is read from all {@value #INDEX_LOCATION} resources visible to a class loader.
+ * Every entry of the index is validated before it is used: function type entries must
+ * have been resolved from the same bean definition source (e.g., a factory method with the
+ * same generic return type),
+ * all classes must be loadable and the types must be well formed. Entries which do not
+ * pass validation are ignored and the type is discovered reflectively, as if there was no
+ * index. Types which had to be discovered reflectively are recorded, so the index can be
+ * (re)generated via {@link #store(File)}.
+ *
+ * @author agent
+ * @since 3.0.4
+ */
+public final class FunctionTypeIndex {
+
+	/**
+	 * Location of the index resource(s).
+	 */
+	public static final String INDEX_LOCATION = "META-INF/spring-cloud-function/function-types.properties";
+
+	/**
+	 * Name of the property which identifies the file to write the index to at the end
+	 * of the training run.
+	 */
+	public static final String INDEX_OUTPUT_PROPERTY = "spring.cloud.function.type-index.output";
+
+	private static final String FUNCTION_PREFIX = "function.";
+
+	private static final String TYPE_SUFFIX = ".type";
+
+	private static final String SOURCE_SUFFIX = ".source";
+
+	private static final String METHOD_PREFIX = "method.";
+
+	private static Log logger = LogFactory.getLog(FunctionTypeIndex.class);
+
+	private static final Map<ClassLoader, FunctionTypeIndex> indexes = new ConcurrentReferenceHashMap<>();
+
+	private final ClassLoader classLoader;
+
+	private final Properties entries = new Properties();
+
+	private final Map<String, Type> resolvedTypes = new ConcurrentHashMap<>();
+
+	private FunctionTypeIndex(ClassLoader classLoader) {
+		this.classLoader = classLoader;
+		try {
+			Enumeration<URL> resources = classLoader.getResources(INDEX_LOCATION);
+			while (resources.hasMoreElements()) {
+				URL resource = resources.nextElement();
+				try (InputStream stream = resource.openStream()) {
+					Properties properties = new Properties();
+					properties.load(stream);
+					properties.forEach(this.entries::putIfAbsent);
+				}
+			}
+		}
+		catch (Exception e) {
+			logger.warn("Failed to load function type index. Function types will be discovered reflectively", e);
+			this.entries.clear();
+		}
+		if (logger.isDebugEnabled() && !this.entries.isEmpty()) {
+			logger.debug("Loaded function type index with " + this.entries.size() + " entries");
+		}
+	}
+
+	/**
+	 * Returns the index for the provided class loader.
+	 * @param classLoader the class loader used to locate the index and to load the types
+	 * @return the index
+	 */
+	public static FunctionTypeIndex forClassLoader(@Nullable ClassLoader classLoader) {
+		ClassLoader loader = classLoader == null ? ClassUtils.getDefaultClassLoader() : classLoader;
+		return indexes.computeIfAbsent(loader, FunctionTypeIndex::new);
+	}
+
+	/**
+	 * Returns the identity of the bean definition source from which the function type is
+	 * resolved (factory method or scanned bean class), used to detect stale index entries.
+	 * The identity includes the generic signature of the source (the generic return type
+	 * of the factory method or the generic supertypes of the class), so an entry becomes
+	 * stale once the signature changes.
+	 * @param definition the bean definition of the function
+	 * @param classLoader the class loader to load the source class with
+	 * @return the source identity or null if the definition is not backed by a factory
+	 * method or a scanned class (e.g., functional bean registrations) or the source can not
+	 * be loaded, in which case the type can not be indexed
+	 */
+	@Nullable
+	public static String sourceOf(AbstractBeanDefinition definition, @Nullable ClassLoader classLoader) {
+		Object source = definition.getSource();
+		try {
+			if (source instanceof MethodMetadata) {
+				MethodMetadata method = (MethodMetadata) source;
+				return method.getDeclaringClassName() + "#" + method.getMethodName() + ":"
+						+ returnTypeOf(method, classLoader);
+			}
+			else if (definition instanceof ScannedGenericBeanDefinition && definition.getBeanClassName() != null) {
+				Class<?> beanClass = ClassUtils.forName(definition.getBeanClassName(), classLoader);
+				return beanClass.getName() + ":" + Stream.concat(Stream.of(beanClass.getGenericSuperclass()),
+						Stream.of(beanClass.getGenericInterfaces())).filter(Objects::nonNull)
+						.map(Type::getTypeName).collect(Collectors.joining(","));
+			}
+		}
+		catch (Throwable e) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Failed to resolve the source of bean definition " + definition, e);
+			}
+		}
+		return null;
+	}
+
+	/*
+	 * Metadata read via ASM has no generic signature, hence all factory methods of the
+	 * name (there may be overloads) are part of the identity.
+	 */
+	private static String returnTypeOf(MethodMetadata method, @Nullable ClassLoader classLoader)
+			throws ClassNotFoundException {
+		if (method instanceof StandardMethodMetadata) {
+			return ((StandardMethodMetadata) method).getIntrospectedMethod().getGenericReturnType().getTypeName();
+		}
+		Class<?> declaringClass = ClassUtils.forName(method.getDeclaringClassName(), classLoader);
+		return Stream.of(declaringClass.getDeclaredMethods()).filter(m -> m.getName().equals(method.getMethodName()))
+				.map(m -> m.getGenericReturnType().getTypeName()).sorted().collect(Collectors.joining(","));
+	}
+
+	/**
+	 * Returns the indexed type of the function.
+	 * @param name the name of the function bean
+	 * @param source the identity of the bean definition source (see {@link #sourceOf(AbstractBeanDefinition, ClassLoader)})
+	 * or null if it should not be validated
+	 * @return the function type or null if it is not indexed or the entry is stale
+	 */
+	@Nullable
+	public Type getType(String name, @Nullable String source) {
+		String typeName = this.entries.getProperty(FUNCTION_PREFIX + name + TYPE_SUFFIX);
+		if (typeName == null) {
+			return null;
+		}
+		if (source != null && !source.equals(this.entries.getProperty(FUNCTION_PREFIX + name + SOURCE_SUFFIX))) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Ignoring stale function type index entry for '" + name + "'");
+			}
+			return null;
+		}
+		return this.resolvedTypes.computeIfAbsent(typeName, this::parseType);
+	}
+
+	/**
+	 * Returns the indexed functional method of the POJO function class.
+	 * @param pojoFunctionClass the POJO function class
+	 * @return the functional method or null if it is not indexed or the entry is stale
+	 */
+	@Nullable
+	public Method getFunctionalMethod(Class<?> pojoFunctionClass) {
+		String signature = this.entries.getProperty(METHOD_PREFIX + pojoFunctionClass.getName());
+		if (signature == null || !signature.endsWith(")") || signature.indexOf('(') < 1) {
+			return null;
+		}
+		try {
+			String methodName = signature.substring(0, signature.indexOf('('));
+			String[] parameterTypeNames = StringUtils.commaDelimitedListToStringArray(
+					signature.substring(signature.indexOf('(') + 1, signature.length() - 1));
+			Class<?>[] parameterTypes = new Class<?>[parameterTypeNames.length];
+			for (int i = 0; i < parameterTypeNames.length; i++) {
+				parameterTypes[i] = ClassUtils.forName(parameterTypeNames[i].trim(), pojoFunctionClass.getClassLoader());
+			}
+			Method method = ReflectionUtils.findMethod(pojoFunctionClass, methodName, parameterTypes);
+			return method != null && method.getDeclaringClass() == pojoFunctionClass ? method : null;
+		}
+		catch (Throwable e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Records the reflectively discovered type of the function.
+	 * @param name the name of the function bean
+	 * @param source the identity of the bean definition source
+	 * @param type the function type
+	 */
+	public void recordType(String name, String source, @Nullable Type type) {
+		if (type != null) {
+			String typeName = ResolvableType.forType(type).toString();
+			if (!typeName.contains("?")) {
+				synchronized (this.entries) {
+					this.entries.setProperty(FUNCTION_PREFIX + name + TYPE_SUFFIX, typeName);
+					this.entries.setProperty(FUNCTION_PREFIX + name + SOURCE_SUFFIX, source);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Records the reflectively discovered functional method of the POJO function class.
+	 * @param pojoFunctionClass the POJO function class
+	 * @param method the functional method
+	 */
+	public void recordFunctionalMethod(Class<?> pojoFunctionClass, Method method) {
+		StringBuilder signature = new StringBuilder(method.getName()).append('(');
+		Class<?>[] parameterTypes = method.getParameterTypes();
+		for (int i = 0; i < parameterTypes.length; i++) {
+			signature.append(i > 0 ? "," : "").append(parameterTypes[i].getTypeName());
+		}
+		this.entries.setProperty(METHOD_PREFIX + pojoFunctionClass.getName(), signature.append(')').toString());
+	}
+
+	/**
+	 * Returns the number of entries in this index (loaded and recorded).
+	 * @return the size of this index
+	 */
+	public int size() {
+		return this.entries.size();
+	}
+
+	/**
+	 * Writes this index (loaded and recorded entries) to the provided file.
+	 * @param file the file to write the index to (typically {@value #INDEX_LOCATION}
+	 * in the output directory of the build)
+	 * @throws IOException if the index could not be written
+	 */
+	public void store(File file) throws IOException {
+		File directory = file.getAbsoluteFile().getParentFile();
+		if (directory != null && !directory.exists() && !directory.mkdirs()) {
+			throw new IOException("Failed to create directory " + directory);
+		}
+		try (OutputStream stream = new FileOutputStream(file)) {
+			synchronized (this.entries) {
+				this.entries.store(stream, "Function type index");
+			}
+		}
+		logger.info("Stored function type index with " + this.entries.size() + " entries to " + file);
+	}
+
+	/*
+	 * Parses type names in the form produced by ResolvableType.toString(),
+	 * e.g., 'java.util.function.Function<reactor.core.publisher.Flux<java.lang.String>, byte[]>'.
+	 */
+	@Nullable
+	private Type parseType(String typeName) {
+		try {
+			TypeNameParser parser = new TypeNameParser(typeName, this.classLoader);
+			ResolvableType type = parser.parse();
+			return parser.position == typeName.length() ? type.getType() : null;
+		}
+		catch (Throwable e) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Ignoring function type index entry '" + typeName + "' which can not be resolved", e);
+			}
+			return null;
+		}
+	}
+
+	private static final class TypeNameParser {
+
+		private final String typeName;
+
+		private final ClassLoader classLoader;
+
+		private int position;
+
+		TypeNameParser(String typeName, ClassLoader classLoader) {
+			this.typeName = typeName;
+			this.classLoader = classLoader;
+		}
+
+		ResolvableType parse() throws ClassNotFoundException {
+			int start = this.position;
+			while (this.position < this.typeName.length() && "<>,".indexOf(this.typeName.charAt(this.position)) < 0) {
+				this.position++;
+			}
+			Class<?> rawType = ClassUtils.forName(this.typeName.substring(start, this.position).trim(), this.classLoader);
+			if (this.position == this.typeName.length() || this.typeName.charAt(this.position) != '<') {
+				return ResolvableType.forClass(rawType);
+			}
+			List<ResolvableType> generics = new ArrayList<>();
+			do {
+				this.position++; // '<' or ','
+				generics.add(this.parse());
+			}
+			while (this.position < this.typeName.length() && this.typeName.charAt(this.position) == ',');
+			if (this.position == this.typeName.length() || this.typeName.charAt(this.position) != '>') {
+				throw new IllegalArgumentException("Malformed type name " + this.typeName);
+			}
+			this.position++; // '>'
+			ResolvableType type = ResolvableType.forClassWithGenerics(rawType, generics.toArray(new ResolvableType[0]));
+			while (this.typeName.startsWith("[]", this.position)) {
+				type = ResolvableType.forArrayComponent(type);
+				this.position += 2;
+			}
+			return type;
+		}
+
+	}
+
+}
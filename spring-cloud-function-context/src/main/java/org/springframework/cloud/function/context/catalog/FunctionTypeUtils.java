@@ -93,6 +93,12 @@ public final class FunctionTypeUtils {
 					&& m.getName().equals("apply")).findFirst().get();
 		}
 
+		FunctionTypeIndex index = FunctionTypeIndex.forClassLoader(pojoFunctionClass.getClassLoader());
+		Method indexedMethod = index.getFunctionalMethod(pojoFunctionClass);
+		if (indexedMethod != null) {
+			return indexedMethod;
+		}
+
 		List<Method> methods = new ArrayList<>();
 		ReflectionUtils.doWithMethods(pojoFunctionClass, method -> {
 			if (method.getDeclaringClass() == pojoFunctionClass) {
@@ -106,6 +112,7 @@ public final class FunctionTypeUtils {
 		Assert.isTrue(methods.size() == 1, "Discovered " + methods.size() + " methods that would qualify as 'functional' - "
 				+ methods + ".\n Class '" + pojoFunctionClass + "' is not a FunctionalInterface.");
 
+		index.recordFunctionalMethod(pojoFunctionClass, methods.get(0));
 		return methods.get(0);
 	}
 
@@ -170,12 +177,9 @@ public final class FunctionTypeUtils {
 
 	public static Type unwrapActualTypeByIndex(Type type, int index) {
 		if (isMessage(type) || isPublisher(type)) {
-			if (isPublisher(type)) {
-				return unwrapActualTypeByIndex(FunctionTypeUtils.getImmediateGenericType(type, index), index);
-			}
-			else if (isMessage(type)) {
-				return unwrapActualTypeByIndex(FunctionTypeUtils.getImmediateGenericType(type, index), index);
-			}
+			Type actualType = FunctionTypeUtils.getImmediateGenericType(type, index);
+			// raw Message or Publisher (e.g., Function<Message, Flux>) carry no generic information
+			return actualType == null ? Object.class : unwrapActualTypeByIndex(actualType, index);
 		}
 		return type;
 	}
@@ -261,7 +265,7 @@ public final class FunctionTypeUtils {
 		if (isPublisher(type)) {
 			type = getImmediateGenericType(type, 0);
 		}
-		return type.getTypeName().startsWith("org.springframework.messaging.Message");
+		return type != null && type.getTypeName().startsWith("org.springframework.messaging.Message");
 	}
 
 	/**
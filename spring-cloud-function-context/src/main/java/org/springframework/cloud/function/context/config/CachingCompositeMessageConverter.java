@@ -0,0 +1,313 @@
+/*
+ * Copyright 2020-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.function.context.config;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.AbstractMessageConverter;
+import org.springframework.messaging.converter.CompositeMessageConverter;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.converter.SmartMessageConverter;
+import org.springframework.util.ObjectUtils;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Variation of {@link CompositeMessageConverter} which remembers which of its delegates
+ * successfully converted a message of a given content type, payload type, target type and
+ * conversion hint, and goes straight to that delegate the next time around instead of
+ * trying each {@link MessageConverter} in order.
+ * <br>
+ * To preserve the first-match semantics of {@link CompositeMessageConverter}, a delegate
+ * is only remembered if it, as well as each of the delegates preceding it, decides whether
+ * it can convert based on the target (or payload) type and content type alone, which is
+ * the case for the converters of Spring Messaging (see {@link AbstractMessageConverter}),
+ * and each of the preceding delegates rejected the conversion. Otherwise a delegate may
+ * convert a different payload of the same type, hence delegates keep being tried in order. If the remembered delegate can not convert a particular
+ * message, all delegates are tried in order as well.
+ *
+ * @author agent
+ * @since 3.0.4
+ */
+public class CachingCompositeMessageConverter extends CompositeMessageConverter {
+
+	/**
+	 * Maximum number of conversion routes kept for each conversion direction.
+	 */
+	public static final int CACHE_LIMIT = 512;
+
+	private static final String MESSAGING_CONVERTER_PACKAGE = AbstractMessageConverter.class.getPackage().getName();
+
+	private static final Method CAN_CONVERT_FROM = ReflectionUtils.findMethod(AbstractMessageConverter.class,
+			"canConvertFrom", Message.class, Class.class);
+
+	private static final Method CAN_CONVERT_TO = ReflectionUtils.findMethod(AbstractMessageConverter.class,
+			"canConvertTo", Object.class, MessageHeaders.class);
+
+	private static final Method SUPPORTS_MIME_TYPE = ReflectionUtils.findMethod(AbstractMessageConverter.class,
+			"supportsMimeType", MessageHeaders.class);
+
+	static {
+		ReflectionUtils.makeAccessible(CAN_CONVERT_FROM);
+		ReflectionUtils.makeAccessible(CAN_CONVERT_TO);
+	}
+
+	private final Map<ConversionKey, MessageConverter> fromMessageConverters = new ConcurrentHashMap<>();
+
+	private final Map<ConversionKey, MessageConverter> toMessageConverters = new ConcurrentHashMap<>();
+
+	private final Map<Class<?>, Boolean> typeBasedFrom = new ConcurrentHashMap<>();
+
+	private final Map<Class<?>, Boolean> typeBasedTo = new ConcurrentHashMap<>();
+
+	private final AtomicLong cacheHits = new AtomicLong();
+
+	private final AtomicLong cacheMisses = new AtomicLong();
+
+	public CachingCompositeMessageConverter(Collection<MessageConverter> converters) {
+		super(converters);
+	}
+
+	@Override
+	@Nullable
+	public Object fromMessage(Message<?> message, Class<?> targetClass) {
+		return this.fromMessage(message, targetClass, null);
+	}
+
+	@Override
+	@Nullable
+	public Object fromMessage(Message<?> message, Class<?> targetClass, @Nullable Object conversionHint) {
+		ConversionKey key = new ConversionKey(message.getHeaders(), message.getPayload(), targetClass,
+				conversionHint);
+		MessageConverter converter = this.fromMessageConverters.get(key);
+		if (converter != null) {
+			Object result = this.fromMessage(converter, message, targetClass, conversionHint);
+			if (result != null) {
+				this.cacheHits.incrementAndGet();
+				return result;
+			}
+		}
+		this.cacheMisses.incrementAndGet();
+		List<MessageConverter> converters = getConverters();
+		for (int i = 0; i < converters.size(); i++) {
+			MessageConverter candidate = converters.get(i);
+			Object result = this.fromMessage(candidate, message, targetClass, conversionHint);
+			if (result != null) {
+				if (this.isCacheableFrom(converters, i, message, targetClass)) {
+					this.cache(this.fromMessageConverters, key, candidate);
+				}
+				return result;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	@Nullable
+	public Message<?> toMessage(Object payload, @Nullable MessageHeaders headers) {
+		return this.toMessage(payload, headers, null);
+	}
+
+	@Override
+	@Nullable
+	public Message<?> toMessage(Object payload, @Nullable MessageHeaders headers, @Nullable Object conversionHint) {
+		ConversionKey key = new ConversionKey(headers, payload, null, conversionHint);
+		MessageConverter converter = this.toMessageConverters.get(key);
+		if (converter != null) {
+			Message<?> result = this.toMessage(converter, payload, headers, conversionHint);
+			if (result != null) {
+				this.cacheHits.incrementAndGet();
+				return result;
+			}
+		}
+		this.cacheMisses.incrementAndGet();
+		List<MessageConverter> converters = getConverters();
+		for (int i = 0; i < converters.size(); i++) {
+			MessageConverter candidate = converters.get(i);
+			Message<?> result = this.toMessage(candidate, payload, headers, conversionHint);
+			if (result != null) {
+				if (this.isCacheableTo(converters, i, payload, headers)) {
+					this.cache(this.toMessageConverters, key, candidate);
+				}
+				return result;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the number of conversions which went straight to the remembered delegate.
+	 * @return the number of cache hits
+	 */
+	public long getCacheHits() {
+		return this.cacheHits.get();
+	}
+
+	/**
+	 * Returns the number of conversions which had to try delegates in order.
+	 * @return the number of cache misses
+	 */
+	public long getCacheMisses() {
+		return this.cacheMisses.get();
+	}
+
+	/**
+	 * Returns the number of remembered conversion routes.
+	 * @return the size of the cache
+	 */
+	public int getCacheSize() {
+		return this.fromMessageConverters.size() + this.toMessageConverters.size();
+	}
+
+	@Override
+	public String toString() {
+		return "CachingCompositeMessageConverter[converters=" + getConverters() + "]";
+	}
+
+	@Nullable
+	private Object fromMessage(MessageConverter converter, Message<?> message, Class<?> targetClass,
+			@Nullable Object conversionHint) {
+		return converter instanceof SmartMessageConverter
+				? ((SmartMessageConverter) converter).fromMessage(message, targetClass, conversionHint)
+						: converter.fromMessage(message, targetClass);
+	}
+
+	@Nullable
+	private Message<?> toMessage(MessageConverter converter, Object payload, @Nullable MessageHeaders headers,
+			@Nullable Object conversionHint) {
+		return converter instanceof SmartMessageConverter
+				? ((SmartMessageConverter) converter).toMessage(payload, headers, conversionHint)
+						: converter.toMessage(payload, headers);
+	}
+
+	/*
+	 * The converter at the index may be remembered if it (as well as each of the preceding
+	 * converters) decides whether it can convert based on type and content type alone,
+	 * and each of the preceding converters rejected the conversion.
+	 */
+	private boolean isCacheableFrom(List<MessageConverter> converters, int index, Message<?> message,
+			Class<?> targetClass) {
+		if (!this.isTypeBased(converters.get(index), CAN_CONVERT_FROM, this.typeBasedFrom)) {
+			return false;
+		}
+		for (MessageConverter converter : converters.subList(0, index)) {
+			if (!this.isTypeBased(converter, CAN_CONVERT_FROM, this.typeBasedFrom)
+					|| (Boolean) ReflectionUtils.invokeMethod(CAN_CONVERT_FROM, converter, message, targetClass)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean isCacheableTo(List<MessageConverter> converters, int index, Object payload,
+			@Nullable MessageHeaders headers) {
+		if (!this.isTypeBased(converters.get(index), CAN_CONVERT_TO, this.typeBasedTo)) {
+			return false;
+		}
+		for (MessageConverter converter : converters.subList(0, index)) {
+			if (!this.isTypeBased(converter, CAN_CONVERT_TO, this.typeBasedTo)
+					|| (Boolean) ReflectionUtils.invokeMethod(CAN_CONVERT_TO, converter, payload, headers)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * Whether the converter decides if it can convert based on type and content type alone,
+	 * i.e., it relies on the implementation of Spring Messaging to do so. Resolved once per
+	 * converter class.
+	 */
+	private boolean isTypeBased(MessageConverter converter, Method canConvert, Map<Class<?>, Boolean> typeBased) {
+		return typeBased.computeIfAbsent(converter.getClass(), converterClass -> {
+			if (!AbstractMessageConverter.class.isAssignableFrom(converterClass)) {
+				return false;
+			}
+			for (Method method : new Method[] { canConvert, SUPPORTS_MIME_TYPE }) {
+				Method implementation = ReflectionUtils.findMethod(converterClass, method.getName(),
+						method.getParameterTypes());
+				if (implementation == null || !MESSAGING_CONVERTER_PACKAGE
+						.equals(implementation.getDeclaringClass().getPackage().getName())) {
+					return false;
+				}
+			}
+			return true;
+		});
+	}
+
+	private void cache(Map<ConversionKey, MessageConverter> cache, ConversionKey key, MessageConverter converter) {
+		if (cache.size() < CACHE_LIMIT) {
+			cache.put(key, converter);
+		}
+	}
+
+	/**
+	 * Identifies the conversion route by content type (as it appears in the headers,
+	 * hence no parsing is required), payload type, target type and conversion hint.
+	 */
+	private static final class ConversionKey {
+
+		private final Object contentType;
+
+		private final Class<?> payloadType;
+
+		private final Class<?> targetType;
+
+		private final Object conversionHint;
+
+		private final int hashCode;
+
+		ConversionKey(@Nullable MessageHeaders headers, @Nullable Object payload, @Nullable Class<?> targetType,
+				@Nullable Object conversionHint) {
+			this.contentType = headers == null ? null : headers.get(MessageHeaders.CONTENT_TYPE);
+			this.payloadType = payload == null ? null : payload.getClass();
+			this.targetType = targetType;
+			this.conversionHint = conversionHint;
+			this.hashCode = ObjectUtils.nullSafeHashCode(
+					new Object[] {this.contentType, this.payloadType, this.targetType, this.conversionHint});
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (this == other) {
+				return true;
+			}
+			if (!(other instanceof ConversionKey)) {
+				return false;
+			}
+			ConversionKey otherKey = (ConversionKey) other;
+			return ObjectUtils.nullSafeEquals(this.contentType, otherKey.contentType)
+					&& this.payloadType == otherKey.payloadType
+					&& this.targetType == otherKey.targetType
+					&& ObjectUtils.nullSafeEquals(this.conversionHint, otherKey.conversionHint);
+		}
+
+		@Override
+		public int hashCode() {
+			return this.hashCode;
+		}
+
+	}
+
+}
@@ -110,7 +110,7 @@ public class ContextFunctionCatalogAutoConfiguration {
 			mcList.add(new StringMessageConverter());
 		}
 		if (!CollectionUtils.isEmpty(mcList)) {
-			messageConverter = new CompositeMessageConverter(mcList);
+			messageConverter = new CachingCompositeMessageConverter(mcList);
 		}
 
 		return new BeanFactoryAwareFunctionRegistry(conversionService, messageConverter);
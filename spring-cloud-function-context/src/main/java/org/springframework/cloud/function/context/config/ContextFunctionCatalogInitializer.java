@@ -36,6 +36,7 @@ import org.springframework.boot.context.properties.ConfigurationPropertiesBindin
 import org.springframework.cloud.function.context.FunctionCatalog;
 import org.springframework.cloud.function.context.FunctionRegistration;
 import org.springframework.cloud.function.context.FunctionRegistry;
+import org.springframework.cloud.function.context.StartupTimingReport;
 import org.springframework.cloud.function.context.catalog.InMemoryFunctionCatalog;
 import org.springframework.cloud.function.json.JsonMapper;
 import org.springframework.context.ApplicationContextInitializer;
@@ -46,7 +47,6 @@ import org.springframework.context.support.PropertySourcesPlaceholderConfigurer;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.type.classreading.MetadataReaderFactory;
 import org.springframework.core.type.filter.AssignableTypeFilter;
-import org.springframework.format.support.DefaultFormattingConversionService;
 import org.springframework.util.Assert;
 import org.springframework.util.ClassUtils;
 
@@ -169,30 +169,12 @@ public class ContextFunctionCatalogInitializer implements ApplicationContextInit
 		}
 
 		private void performPreinitialization() {
-			if (Boolean.getBoolean(IGNORE_BACKGROUNDPREINITIALIZER_PROPERTY_NAME)) {
-				return;
-			}
-			try {
-				Thread thread = new Thread(new Runnable() {
-
-					@Override
-					public void run() {
-						runSafely(() -> new DefaultFormattingConversionService());
-					}
-
-					public void runSafely(Runnable runnable) {
-						try {
-							runnable.run();
-						}
-						catch (Throwable ex) {
-							// Ignore
-						}
-					}
-
-				}, "background-preinit");
-				thread.start();
-			}
-			catch (Exception ex) {
+			StartupTimingReport report = new StartupTimingReport();
+			FunctionPreinitializer.preinitialize(report);
+			// exposed so the durations of the background tasks can be inspected once started
+			if (this.context.getBeanFactory().getBeanNamesForType(StartupTimingReport.class, false,
+					false).length == 0) {
+				this.context.registerBean(StartupTimingReport.class, () -> report);
 			}
 		}
 
@@ -28,6 +28,7 @@ import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
 import org.springframework.beans.factory.config.ConstructorArgumentValues;
 import org.springframework.beans.factory.support.AbstractBeanDefinition;
 import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.cloud.function.context.catalog.FunctionTypeIndex;
 import org.springframework.cloud.function.context.catalog.FunctionTypeUtils;
 import org.springframework.cloud.function.core.FunctionFactoryMetadata;
 import org.springframework.context.annotation.ScannedGenericBeanDefinition;
@@ -60,7 +61,24 @@ public abstract class FunctionContextUtils {
 		if (definition == null) {
 			return null;
 		}
-		else if (definition instanceof ScannedGenericBeanDefinition) {
+
+		String source = FunctionTypeIndex.sourceOf(definition, registry.getBeanClassLoader());
+		if (source == null) {
+			return doFindType(registry, definition, actualName);
+		}
+		FunctionTypeIndex index = FunctionTypeIndex.forClassLoader(registry.getBeanClassLoader());
+		Type indexedType = index.getType(actualName, source);
+		if (indexedType != null) {
+			return indexedType;
+		}
+		Type type = doFindType(registry, definition, actualName);
+		index.recordType(actualName, source, type);
+		return type;
+	}
+
+	private static Type doFindType(ConfigurableListableBeanFactory registry, AbstractBeanDefinition definition,
+			String actualName) {
+		if (definition instanceof ScannedGenericBeanDefinition) {
 			try {
 				return FunctionTypeUtils.discoverFunctionTypeFromClass(definition.getBeanClass());
 			}
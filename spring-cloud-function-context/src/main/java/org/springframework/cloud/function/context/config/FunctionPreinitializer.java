@@ -0,0 +1,258 @@
+/*
+ * Copyright 2020-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.function.context.config;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.cloud.function.context.StartupTimingReport;
+import org.springframework.core.ResolvableType;
+import org.springframework.format.support.DefaultFormattingConversionService;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Performs the parts of function bootstrap which do not depend on the application
+ * context (or only depend on its result) on background threads, so they overlap with
+ * the rest of the (single threaded) startup. Primarily intended to reduce cold start
+ * latency of serverless adapters (AWS, Azure, GCP etc.).
+ * <br>
+ * Each task is independent, runs on its own daemon thread and records its duration in
+ * the provided {@link StartupTimingReport}. Failures are ignored since all of it is
+ * strictly an optimization. JSON (de)serializers are only warmed up in the mappers of
+ * the application context (i.e., those used to invoke the function), never in throwaway
+ * instances.
+ *
+ * @author agent
+ * @since 3.0.4
+ */
+public final class FunctionPreinitializer {
+
+	private static Log logger = LogFactory.getLog(FunctionPreinitializer.class);
+
+	/**
+	 * Classes used on the invocation path of pretty much every function.
+	 */
+	static final String[] PRELOAD_CLASSES = new String[] {
+		"reactor.core.publisher.Flux",
+		"reactor.core.publisher.Mono",
+		"reactor.core.publisher.FluxMap",
+		"reactor.core.publisher.MonoJust",
+		"reactor.core.publisher.FluxJust",
+		"org.springframework.messaging.Message",
+		"org.springframework.messaging.MessageHeaders",
+		"org.springframework.messaging.support.GenericMessage",
+		"org.springframework.messaging.support.MessageBuilder",
+		"org.springframework.messaging.support.MessageHeaderAccessor",
+		"org.springframework.util.MimeType",
+		"org.springframework.util.MimeTypeUtils",
+		"org.springframework.core.ResolvableType",
+		"org.springframework.cloud.function.context.catalog.BeanFactoryAwareFunctionRegistry",
+		"org.springframework.cloud.function.context.catalog.BeanFactoryAwareFunctionRegistry$FunctionInvocationWrapper",
+		"org.springframework.cloud.function.context.catalog.FunctionTypeUtils",
+		"org.springframework.cloud.function.context.config.CachingCompositeMessageConverter",
+		"org.springframework.cloud.function.context.config.ApplicationJsonMessageMarshallingConverter",
+		"org.springframework.cloud.function.context.config.RoutingFunction",
+		"com.fasterxml.jackson.databind.ObjectMapper",
+		"com.fasterxml.jackson.databind.ser.BeanSerializerFactory",
+		"com.fasterxml.jackson.databind.deser.BeanDeserializerFactory",
+		"com.google.gson.Gson"
+	};
+
+	private static final AtomicBoolean preinitialized = new AtomicBoolean();
+
+	private FunctionPreinitializer() {
+	}
+
+	/**
+	 * Starts pre-loading of the classes used on the function invocation path (including
+	 * those of the JSON mappers, as well as the provided application classes) and warming
+	 * up of the conversion service. The work which is not application specific is performed
+	 * only once per JVM.
+	 * @param report report to record durations of individual tasks
+	 * @param applicationClasses additional classes to pre-load (e.g., configuration class)
+	 */
+	public static void preinitialize(StartupTimingReport report, Class<?>... applicationClasses) {
+		if (Boolean.getBoolean(ContextFunctionCatalogInitializer.IGNORE_BACKGROUNDPREINITIALIZER_PROPERTY_NAME)) {
+			return;
+		}
+		if (preinitialized.compareAndSet(false, true)) {
+			start("preinit-classes", report, () -> preloadClasses(PRELOAD_CLASSES));
+			start("preinit-conversion-service", report, () -> new DefaultFormattingConversionService());
+		}
+		if (applicationClasses.length > 0) {
+			start("preinit-application-classes", report, () -> {
+				for (Class<?> applicationClass : applicationClasses) {
+					// forces static initialization as well as loading of declared member types
+					if (applicationClass != null) {
+						ClassUtils.forName(applicationClass.getName(), applicationClass.getClassLoader());
+						applicationClass.getDeclaredMethods();
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * Builds (and caches) serializers and deserializers for the provided types in the
+	 * JSON mappers of the bean factory (the {@link ObjectMapper} and {@link Gson} beans
+	 * which back its {@link org.springframework.cloud.function.json.JsonMapper}), in
+	 * parallel, so the first invocation of the function does not have to.
+	 * @param beanFactory bean factory which contains the JSON mappers
+	 * @param report report to record durations of individual tasks
+	 * @param types input and output types of the function
+	 * @return completes once all mappers are warmed up (never exceptionally), so the caller
+	 * can make sure the warm-up does not race the first invocation
+	 */
+	public static CompletableFuture<Void> warmUpSerializers(BeanFactory beanFactory, StartupTimingReport report,
+			Type... types) {
+		if (Boolean.getBoolean(ContextFunctionCatalogInitializer.IGNORE_BACKGROUNDPREINITIALIZER_PROPERTY_NAME)) {
+			return CompletableFuture.completedFuture(null);
+		}
+		List<Type> candidates = new ArrayList<>();
+		for (Type type : types) {
+			if (type != null) {
+				Class<?> rawType = ResolvableType.forType(type).resolve();
+				if (rawType != null && rawType != Object.class && !BeanUtils.isSimpleValueType(rawType)
+						&& rawType != byte[].class) {
+					candidates.add(type);
+				}
+			}
+		}
+		List<CompletableFuture<Void>> warmUps = new ArrayList<>();
+		if (!candidates.isEmpty()) {
+			if (ClassUtils.isPresent("com.fasterxml.jackson.databind.ObjectMapper", null)) {
+				ObjectMapper mapper = beanFactory.getBeanProvider(ObjectMapper.class).getIfUnique();
+				if (mapper != null) {
+					warmUps.add(start("warmup-jackson", report, () -> JacksonWarmer.warmUp(mapper, candidates)));
+				}
+			}
+			if (ClassUtils.isPresent("com.google.gson.Gson", null)) {
+				Gson gson = beanFactory.getBeanProvider(Gson.class).getIfUnique();
+				if (gson != null) {
+					warmUps.add(start("warmup-gson", report, () -> GsonWarmer.warmUp(gson, candidates)));
+				}
+			}
+		}
+		return CompletableFuture.allOf(warmUps.toArray(new CompletableFuture<?>[0]));
+	}
+
+	/*
+	 * Performs the task on a background thread, recording its duration. Failures are
+	 * propagated to the returned future.
+	 */
+	private static <T> CompletableFuture<T> submit(String phase, StartupTimingReport report, Callable<T> task) {
+		CompletableFuture<T> result = new CompletableFuture<>();
+		Runnable runnable = () -> {
+			long start = System.nanoTime();
+			try {
+				result.complete(task.call());
+			}
+			catch (Throwable ex) {
+				result.completeExceptionally(ex);
+			}
+			finally {
+				report.record(phase, System.nanoTime() - start);
+			}
+		};
+		try {
+			Thread thread = new Thread(runnable, "background-" + phase);
+			thread.setDaemon(true);
+			thread.start();
+		}
+		catch (Throwable ex) {
+			// e.g., threads can not be created, hence perform the task in the caller
+			if (!result.isDone()) {
+				runnable.run();
+			}
+		}
+		return result;
+	}
+
+	private static CompletableFuture<Void> start(String phase, StartupTimingReport report, ThrowingRunnable task) {
+		return submit(phase, report, () -> {
+			task.run();
+			return (Void) null;
+		}).exceptionally(ex -> {
+			// Ignore
+			if (logger.isDebugEnabled()) {
+				logger.debug("Failed to perform '" + phase + "'", ex);
+			}
+			return null;
+		});
+	}
+
+	private static void preloadClasses(String[] classNames) {
+		ClassLoader classLoader = ClassUtils.getDefaultClassLoader();
+		for (String className : classNames) {
+			try {
+				Class.forName(className, true, classLoader);
+			}
+			catch (Throwable ex) {
+				// not on the classpath
+			}
+		}
+	}
+
+	private interface ThrowingRunnable {
+
+		void run() throws Exception;
+
+	}
+
+	/*
+	 * Isolates Jackson types, since Jackson is optional.
+	 */
+	private static final class JacksonWarmer {
+
+		static void warmUp(ObjectMapper mapper, List<? extends Type> types) {
+			for (Type type : types) {
+				JavaType javaType = mapper.constructType(type);
+				// both eagerly fetch and cache root (de)serializer for the type
+				mapper.readerFor(javaType);
+				mapper.writerFor(javaType);
+			}
+		}
+
+	}
+
+	/*
+	 * Isolates Gson types, since Gson is optional.
+	 */
+	private static final class GsonWarmer {
+
+		static void warmUp(Gson gson, List<? extends Type> types) {
+			for (Type type : types) {
+				gson.getAdapter(TypeToken.get(type));
+			}
+		}
+
+	}
+
+}
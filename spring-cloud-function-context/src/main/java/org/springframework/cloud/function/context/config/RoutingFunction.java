@@ -16,7 +16,14 @@
 
 package org.springframework.cloud.function.context.config;
 
+import java.beans.PropertyDescriptor;
 import java.lang.reflect.Type;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 
 import org.apache.commons.logging.Log;
@@ -25,39 +32,72 @@ import org.reactivestreams.Publisher;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import org.springframework.beans.BeanUtils;
 import org.springframework.cloud.function.context.FunctionCatalog;
 import org.springframework.cloud.function.context.FunctionProperties;
+import org.springframework.cloud.function.context.catalog.FunctionCatalogEvent;
 import org.springframework.cloud.function.context.catalog.FunctionInspector;
+import org.springframework.cloud.function.context.catalog.FunctionRegistrationEvent;
 import org.springframework.cloud.function.context.catalog.FunctionTypeUtils;
+import org.springframework.cloud.function.context.catalog.FunctionUnregistrationEvent;
+import org.springframework.context.ApplicationListener;
 import org.springframework.context.expression.MapAccessor;
 import org.springframework.expression.Expression;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.expression.spel.support.StandardEvaluationContext;
 import org.springframework.messaging.Message;
 import org.springframework.util.Assert;
+import org.springframework.util.ReflectionUtils;
 import org.springframework.util.StringUtils;
 
 
 /**
  * An implementation of Function which acts as a gateway/router by actually
  * delegating incoming invocation to a function specified .. .
+ * <br>
+ * Routing expressions are parsed once (and compiled by SpEL once they are
+ * sufficiently exercised) and functions are looked up once per resolved
+ * definition, since routing is performed for every message.
  *
  * @author Oleg Zhurakousky
  * @since 2.1
  *
  */
-public class RoutingFunction implements Function<Object, Object> {
+// Function must remain the first interface, since function type is discovered from it
+public class RoutingFunction implements Function<Object, Object>, ApplicationListener<FunctionCatalogEvent> {
 
 	/**
 	 * The name of this function use by BeanFactory.
 	 */
 	public static final String FUNCTION_NAME = "functionRouter";
 
+	/*
+	 * Both expressions and definitions typically come from a small, fixed set of values
+	 * (e.g., a handful of message header values), however they may also be supplied
+	 * by the sender, hence both caches are bounded.
+	 */
+	private static final int CACHE_LIMIT = 256;
+
 	private static Log logger = LogFactory.getLog(RoutingFunction.class);
 
+	/*
+	 * Shared by all invocations. The root object is passed on each evaluation and the
+	 * context itself is fully initialized in the constructor, so it is effectively
+	 * read-only and safe for concurrent evaluation.
+	 */
 	private final StandardEvaluationContext evalContext = new StandardEvaluationContext();
 
-	private final SpelExpressionParser spelParser = new SpelExpressionParser();
+	private final SpelExpressionParser spelParser = new SpelExpressionParser(
+			new SpelParserConfiguration(SpelCompilerMode.MIXED, RoutingFunction.class.getClassLoader()));
+
+	private final Map<String, Expression> expressionCache = new ConcurrentHashMap<>();
+
+	@SuppressWarnings("rawtypes")
+	private final Map<String, Function> functionCache = new ConcurrentHashMap<>();
+
+	private final AtomicLong functionCacheGeneration = new AtomicLong();
 
 	private final FunctionCatalog functionCatalog;
 
@@ -65,11 +105,56 @@ public class RoutingFunction implements Function<Object, Object> {
 
 	private final FunctionInspector functionInspector;
 
+	private final String routingHeader;
+
+	private final String routingPayloadField;
+
+	private final Map<String, String> routes;
+
+	private final String defaultRoute;
+
+	private final boolean failOnUnknownRoutingKey;
+
+	private final boolean fanOut;
+
+	private final int fanOutConcurrency;
+
+	private final int fanOutPrefetch;
+
 	public RoutingFunction(FunctionCatalog functionCatalog, FunctionInspector functionInspector, FunctionProperties functionProperties) {
 		this.functionCatalog = functionCatalog;
 		this.functionProperties = functionProperties;
 		this.functionInspector = functionInspector;
 		this.evalContext.addPropertyAccessor(new MapAccessor());
+		// initializes lazily created delegates up front, so they are never created concurrently
+		this.evalContext.getConstructorResolvers();
+		this.evalContext.getMethodResolvers();
+		this.evalContext.getTypeLocator();
+		this.evalContext.getTypeConverter();
+
+		FunctionProperties.Routing routing = functionProperties.getRouting();
+		this.routingHeader = StringUtils.hasText(routing.getHeader()) ? routing.getHeader() : null;
+		this.routingPayloadField = StringUtils.hasText(routing.getPayloadField()) ? routing.getPayloadField() : null;
+		this.routes = this.routingHeader == null && this.routingPayloadField == null
+				? null
+				: new HashMap<>(routing.getRoutes());
+		this.defaultRoute = StringUtils.hasText(routing.getDefaultRoute()) ? routing.getDefaultRoute() : null;
+		this.failOnUnknownRoutingKey = routing.getUnknownKey() == FunctionProperties.UnknownKeyStrategy.FAIL;
+		this.fanOut = routing.isFanOut();
+		this.fanOutConcurrency = routing.getFanOutConcurrency();
+		this.fanOutPrefetch = routing.getFanOutPrefetch();
+	}
+
+	/**
+	 * Discards resolved functions when functions are registered or unregistered, since
+	 * the same definition may now resolve to a different function.
+	 */
+	@Override
+	public void onApplicationEvent(FunctionCatalogEvent event) {
+		if (event instanceof FunctionRegistrationEvent || event instanceof FunctionUnregistrationEvent) {
+			this.functionCacheGeneration.incrementAndGet();
+			this.functionCache.clear();
+		}
 	}
 
 	@Override
@@ -80,7 +165,11 @@ public class RoutingFunction implements Function<Object, Object> {
 	/*
 	 * - Check if spring.cloud.function.definition is set in header and if it is use it.
 	 * If NOT
-	 * - Check spring.cloud.function.routing-expression and if it is set use it
+	 * - Check spring.cloud.function.routing-expression is set in header and if it is use it
+	 * If NOT
+	 * - Check spring.cloud.function.routing.* routing table and if it has a route use it
+	 * If NOT
+	 * - Check spring.cloud.function.routing-expression is set in FunctionProperties and if it is use it
 	 * If NOT
 	 * - Check spring.cloud.function.definition is set in FunctionProperties and if it is use it
 	 * If NOT
@@ -105,16 +194,8 @@ public class RoutingFunction implements Function<Object, Object> {
 					this.assertOriginalInputIsNotPublisher(originalInputIsPublisher);
 				}
 			}
-			else if (StringUtils.hasText(functionProperties.getRoutingExpression())) {
-				function = this.functionFromExpression(functionProperties.getRoutingExpression(), message);
-			}
-			else if (StringUtils.hasText(functionProperties.getDefinition())) {
-				function = functionFromDefinition(functionProperties.getDefinition());
-			}
 			else {
-				throw new IllegalStateException("Failed to establish route, since neither were provided: "
-						+ "'spring.cloud.function.definition' as Message header or as application property or "
-						+ "'spring.cloud.function.routing-expression' as application property.");
+				function = this.functionFromProperties(message);
 			}
 		}
 		else if (input instanceof Publisher) {
@@ -125,6 +206,9 @@ public class RoutingFunction implements Function<Object, Object> {
 			if (StringUtils.hasText(functionProperties.getDefinition())) {
 				function = functionFromDefinition(functionProperties.getDefinition());
 			}
+			else if (this.fanOut && !(input instanceof Mono)) {
+				return this.fanOut(Flux.from((Publisher<?>) input));
+			}
 			else {
 				return input instanceof Mono
 						? Mono.from((Publisher<?>) input).map(v -> route(v, originalInputIsPublisher))
@@ -133,51 +217,206 @@ public class RoutingFunction implements Function<Object, Object> {
 		}
 		else {
 			this.assertOriginalInputIsNotPublisher(originalInputIsPublisher);
-			if (StringUtils.hasText(functionProperties.getRoutingExpression())) {
-				function = this.functionFromExpression(functionProperties.getRoutingExpression(), input);
+			function = this.functionFromProperties(input);
+		}
+
+		return function.apply(input);
+	}
+
+	/*
+	 * Groups values by the definition they route to and dispatches each group to its
+	 * function as a whole. Reactive functions receive the group itself, imperative
+	 * functions are invoked for each value of the group. Outputs of all groups are merged,
+	 * hence ordering is only preserved within a group. Groups are only complete once the
+	 * input is, so more distinct routes than the concurrency would stall the stream; it
+	 * fails instead.
+	 */
+	private Flux<Object> fanOut(Flux<?> input) {
+		return Flux.defer(() -> {
+			AtomicInteger groups = new AtomicInteger();
+			// one more group than the concurrency is requested, only to fail rather than stall on it
+			return input.groupBy(this::resolveDefinition, this.fanOutPrefetch).flatMap(group -> {
+				if (groups.incrementAndGet() > this.fanOutConcurrency) {
+					return Flux.error(new IllegalStateException("Failed to route to '" + group.key()
+							+ "', since fan-out is limited to " + this.fanOutConcurrency + " distinct routes "
+							+ "(see 'spring.cloud.function.routing.fan-out-concurrency')."));
+				}
+				return this.routeGroup(group.key(), group);
+			}, this.fanOutConcurrency + 1);
+		});
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private Publisher<Object> routeGroup(String definition, Flux<?> group) {
+		Function function = this.functionFromDefinition(definition);
+		Type functionType = functionInspector.getRegistration(function).getType().getType();
+		if (FunctionTypeUtils.isReactive(FunctionTypeUtils.getInputType(functionType, 0))) {
+			Object result = function.apply(group);
+			return result instanceof Publisher ? (Publisher<Object>) result : Mono.empty();
+		}
+		return group.concatMap(value -> {
+			Object result = function.apply(value);
+			if (result instanceof Publisher) {
+				return (Publisher<Object>) result;
 			}
-			else
-			if (StringUtils.hasText(functionProperties.getDefinition())) {
-				function = functionFromDefinition(functionProperties.getDefinition());
+			return result == null ? Mono.empty() : Mono.just(result);
+		});
+	}
+
+	/*
+	 * Same rules as route(..), but only resolves the definition. Only used for fan-out,
+	 * which is only performed when neither 'spring.cloud.function.routing-expression' nor
+	 * 'spring.cloud.function.definition' property is set (otherwise the whole input is
+	 * routed by the property), hence the properties are not consulted here.
+	 */
+	private String resolveDefinition(Object input) {
+		if (input instanceof Message) {
+			Message<?> message = (Message<?>) input;
+			String definition = (String) message.getHeaders().get("spring.cloud.function.definition");
+			if (StringUtils.hasText(definition)) {
+				return definition;
 			}
-			else {
-				throw new IllegalStateException("Failed to establish route, since neither were provided: "
-						+ "'spring.cloud.function.definition' as Message header or as application property or "
-						+ "'spring.cloud.function.routing-expression' as application property.");
+			String routingExpression = (String) message.getHeaders().get("spring.cloud.function.routing-expression");
+			if (StringUtils.hasText(routingExpression)) {
+				return this.definitionFromExpression(routingExpression, message);
 			}
 		}
+		String definition = this.definitionFromRoutingTable(input);
+		if (definition != null) {
+			return definition;
+		}
+		throw new IllegalStateException("Failed to establish route for " + input + ", since neither were provided: "
+				+ "'spring.cloud.function.definition' or 'spring.cloud.function.routing-expression' as Message header "
+				+ "or routing table.");
+	}
 
-		return function.apply(input);
+	@SuppressWarnings("rawtypes")
+	private Function functionFromProperties(Object input) {
+		String definition = this.definitionFromRoutingTable(input);
+		if (definition != null) {
+			return this.functionFromDefinition(definition);
+		}
+		else if (StringUtils.hasText(functionProperties.getRoutingExpression())) {
+			return this.functionFromExpression(functionProperties.getRoutingExpression(), input);
+		}
+		else if (StringUtils.hasText(functionProperties.getDefinition())) {
+			return functionFromDefinition(functionProperties.getDefinition());
+		}
+		else {
+			throw new IllegalStateException("Failed to establish route, since neither were provided: "
+					+ "'spring.cloud.function.definition' as Message header or as application property or "
+					+ "'spring.cloud.function.routing-expression' as application property.");
+		}
+	}
+
+	/*
+	 * Returns the definition routed to by the routing table, or null if the routing table
+	 * is not configured or has no route for the input and the fallback is allowed.
+	 */
+	private String definitionFromRoutingTable(Object input) {
+		if (this.routes == null) {
+			return null;
+		}
+		Object routingKey = this.routingKey(input);
+		String definition = routingKey == null ? null : this.routes.get(routingKey.toString());
+		if (definition == null) {
+			definition = this.defaultRoute;
+			if (definition == null && this.failOnUnknownRoutingKey) {
+				throw new IllegalStateException("Failed to establish route, since routing table has no route for "
+						+ "routing key '" + routingKey + "' and 'spring.cloud.function.routing.default-route' is not set.");
+			}
+		}
+		return definition;
+	}
+
+	@SuppressWarnings("rawtypes")
+	private Object routingKey(Object input) {
+		if (this.routingHeader != null) {
+			return input instanceof Message ? ((Message<?>) input).getHeaders().get(this.routingHeader) : null;
+		}
+		Object payload = input instanceof Message ? ((Message<?>) input).getPayload() : input;
+		if (payload instanceof Map) {
+			return ((Map) payload).get(this.routingPayloadField);
+		}
+		else if (payload == null || payload instanceof byte[] || BeanUtils.isSimpleValueType(payload.getClass())) {
+			return null;
+		}
+		// property descriptors are cached by BeanUtils
+		PropertyDescriptor property = BeanUtils.getPropertyDescriptor(payload.getClass(), this.routingPayloadField);
+		return property == null || property.getReadMethod() == null
+				? null
+				: ReflectionUtils.invokeMethod(property.getReadMethod(), payload);
 	}
 
 	private void assertOriginalInputIsNotPublisher(boolean originalInputIsPublisher) {
 		Assert.isTrue(!originalInputIsPublisher, "Routing input of type Publisher is not supported per individual "
 				+ "values (e.g., message header or POJO). Instead you should use 'spring.cloud.function.definition' or "
-				+ "spring.cloud.function.routing-expression' as application properties.");
+				+ "spring.cloud.function.routing-expression' as application properties or enable "
+				+ "'spring.cloud.function.routing.fan-out'.");
 	}
 
 	@SuppressWarnings("rawtypes")
 	private Function functionFromDefinition(String definition) {
-		Function function = functionCatalog.lookup(definition);
-		Assert.notNull(function, "Failed to lookup function to route based on the value of 'spring.cloud.function.definition' property '"
-				+ functionProperties.getDefinition() + "'");
-		if (logger.isInfoEnabled()) {
-			logger.info("Resolved function from provided [definition] property " + functionProperties.getDefinition());
+		Function function = this.functionCache.get(definition);
+		if (function == null) {
+			long generation = this.functionCacheGeneration.get();
+			function = functionCatalog.lookup(definition);
+			Assert.notNull(function, "Failed to lookup function to route based on the value of 'spring.cloud.function.definition' property '"
+					+ definition + "'");
+			if (logger.isInfoEnabled()) {
+				logger.info("Resolved function from provided [definition] property " + definition);
+			}
+			this.cacheFunction(definition, function, generation);
 		}
 		return function;
 	}
 
 	@SuppressWarnings("rawtypes")
 	private Function functionFromExpression(String routingExpression, Object input) {
-		Expression expression = spelParser.parseExpression(routingExpression);
-		String functionName = expression.getValue(this.evalContext, input, String.class);
-		Assert.hasText(functionName, "Failed to resolve function name based on routing expression '" + functionProperties.getRoutingExpression() + "'");
-		Function function = functionCatalog.lookup(functionName);
-		Assert.notNull(function, "Failed to lookup function to route to based on the expression '"
-				+ functionProperties.getRoutingExpression() + "' whcih resolved to '" + functionName + "' function name.");
-		if (logger.isInfoEnabled()) {
-			logger.info("Resolved function from provided [routing-expression]  " + routingExpression);
+		String functionName = this.definitionFromExpression(routingExpression, input);
+		Function function = this.functionCache.get(functionName);
+		if (function == null) {
+			long generation = this.functionCacheGeneration.get();
+			function = functionCatalog.lookup(functionName);
+			Assert.notNull(function, "Failed to lookup function to route to based on the expression '"
+					+ routingExpression + "' which resolved to '" + functionName + "' function name.");
+			if (logger.isInfoEnabled()) {
+				logger.info("Resolved function from provided [routing-expression]  " + routingExpression);
+			}
+			this.cacheFunction(functionName, function, generation);
 		}
 		return function;
 	}
+
+	private String definitionFromExpression(String routingExpression, Object input) {
+		Expression expression = this.expressionCache.get(routingExpression);
+		if (expression == null) {
+			expression = spelParser.parseExpression(routingExpression);
+			if (this.expressionCache.size() < CACHE_LIMIT) {
+				this.expressionCache.put(routingExpression, expression);
+			}
+		}
+		String functionName = expression.getValue(this.evalContext, input, String.class);
+		Assert.hasText(functionName, "Failed to resolve function name based on routing expression '" + routingExpression + "'");
+		return functionName;
+	}
+
+	/*
+	 * Evicts an arbitrary entry once the limit is reached. If the catalog changed while
+	 * the function was being looked up, the (possibly stale) entry is discarded.
+	 */
+	@SuppressWarnings("rawtypes")
+	private void cacheFunction(String definition, Function function, long generation) {
+		if (this.functionCache.size() >= CACHE_LIMIT) {
+			Iterator<String> definitions = this.functionCache.keySet().iterator();
+			if (definitions.hasNext()) {
+				definitions.next();
+				definitions.remove();
+			}
+		}
+		this.functionCache.put(definition, function);
+		if (this.functionCacheGeneration.get() != generation) {
+			this.functionCache.remove(definition, function);
+		}
+	}
 }
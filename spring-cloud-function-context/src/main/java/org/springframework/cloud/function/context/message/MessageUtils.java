@@ -16,7 +16,9 @@
 
 package org.springframework.cloud.function.context.message;
 
-import java.lang.reflect.Method;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -24,6 +26,7 @@ import java.util.Map;
 import org.springframework.cloud.function.core.FluxWrapper;
 import org.springframework.cloud.function.core.Isolated;
 import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
 import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.util.ClassUtils;
 import org.springframework.util.ReflectionUtils;
@@ -57,15 +60,7 @@ public abstract class MessageUtils {
 		if (!(handler instanceof Isolated)) {
 			return MessageBuilder.withPayload(payload).copyHeaders(headers).build();
 		}
-		ClassLoader classLoader = ((Isolated) handler).getClassLoader();
-		Class<?> builder = ClassUtils.resolveClassName(MessageBuilder.class.getName(),
-				classLoader);
-		Method withPayload = ClassUtils.getMethod(builder, "withPayload", Object.class);
-		Method copyHeaders = ClassUtils.getMethod(builder, "copyHeaders", Map.class);
-		Method build = ClassUtils.getMethod(builder, "build");
-		Object instance = ReflectionUtils.invokeMethod(withPayload, null, payload);
-		ReflectionUtils.invokeMethod(copyHeaders, instance, headers);
-		return ReflectionUtils.invokeMethod(build, instance);
+		return bridge((Isolated) handler).create(payload, headers);
 	}
 
 	/**
@@ -87,20 +82,12 @@ public abstract class MessageUtils {
 			}
 			return MessageBuilder.withPayload(message).build();
 		}
-		ClassLoader classLoader = ((Isolated) handler).getClassLoader();
-		Class<?> type = ClassUtils.isPresent(Message.class.getName(), classLoader)
-				? ClassUtils.resolveClassName(Message.class.getName(), classLoader)
-				: null;
+		MessageBridge bridge = bridge((Isolated) handler);
 		Object payload;
 		Map<String, Object> headers;
-		if (type != null && type.isAssignableFrom(message.getClass())) {
-			Method getPayload = ClassUtils.getMethod(type, "getPayload");
-			Method getHeaders = ClassUtils.getMethod(type, "getHeaders");
-			payload = ReflectionUtils.invokeMethod(getPayload, message);
-			@SuppressWarnings("unchecked")
-			Map<String, Object> map = (Map<String, Object>) ReflectionUtils
-					.invokeMethod(getHeaders, message);
-			headers = map;
+		if (bridge.isMessage(message)) {
+			payload = bridge.getPayload(message);
+			headers = bridge.getHeaders(message);
 		}
 		else {
 			payload = message;
@@ -109,4 +96,114 @@ public abstract class MessageUtils {
 		return MessageBuilder.withPayload(payload).copyHeaders(headers).build();
 	}
 
+	/*
+	 * The bridge is cached on the wrapper, which lives exactly as long as the isolated
+	 * class loader, so it is neither rebuilt per message nor retains an undeployed loader.
+	 */
+	private static MessageBridge bridge(Isolated handler) {
+		return handler.getCached(MessageBridge.class, MessageBridge::new);
+	}
+
+	/**
+	 * Creates and unpacks the messages of an isolated class loader through method handles
+	 * resolved once per class loader (rather than once per message).
+	 */
+	private static final class MessageBridge {
+
+		private final ClassLoader classLoader;
+
+		private final Class<?> messageType;
+
+		private final MethodHandle getPayload;
+
+		private final MethodHandle getHeaders;
+
+		private final MethodHandle withPayload;
+
+		private final MethodHandle copyHeaders;
+
+		private final MethodHandle build;
+
+		MessageBridge(ClassLoader classLoader) {
+			this.classLoader = classLoader;
+			MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+			try {
+				if (ClassUtils.isPresent(Message.class.getName(), classLoader)) {
+					this.messageType = ClassUtils.resolveClassName(Message.class.getName(), classLoader);
+					Class<?> headersType = ClassUtils.resolveClassName(MessageHeaders.class.getName(), classLoader);
+					this.getPayload = lookup.findVirtual(this.messageType, "getPayload",
+							MethodType.methodType(Object.class)).asType(MethodType.methodType(Object.class, Object.class));
+					this.getHeaders = lookup.findVirtual(this.messageType, "getHeaders",
+							MethodType.methodType(headersType)).asType(MethodType.methodType(Map.class, Object.class));
+				}
+				else {
+					this.messageType = null;
+					this.getPayload = null;
+					this.getHeaders = null;
+				}
+				if (ClassUtils.isPresent(MessageBuilder.class.getName(), classLoader)) {
+					Class<?> builderType = ClassUtils.resolveClassName(MessageBuilder.class.getName(), classLoader);
+					this.withPayload = lookup.findStatic(builderType, "withPayload",
+							MethodType.methodType(builderType, Object.class))
+							.asType(MethodType.methodType(Object.class, Object.class));
+					this.copyHeaders = lookup.findVirtual(builderType, "copyHeaders",
+							MethodType.methodType(builderType, Map.class))
+							.asType(MethodType.methodType(Object.class, Object.class, Map.class));
+					this.build = lookup.findVirtual(builderType, "build", MethodType.methodType(this.messageType))
+							.asType(MethodType.methodType(Object.class, Object.class));
+				}
+				else {
+					this.withPayload = null;
+					this.copyHeaders = null;
+					this.build = null;
+				}
+			}
+			catch (NoSuchMethodException | IllegalAccessException e) {
+				throw new IllegalStateException("Failed to resolve message methods of " + classLoader, e);
+			}
+		}
+
+		boolean isMessage(Object message) {
+			return this.messageType != null && this.messageType.isInstance(message);
+		}
+
+		Object create(Object payload, Map<String, Object> headers) {
+			if (this.withPayload == null) {
+				// fails the same way (the class is not present)
+				ClassUtils.resolveClassName(MessageBuilder.class.getName(), this.classLoader);
+			}
+			try {
+				Object builder = (Object) this.withPayload.invokeExact(payload);
+				builder = (Object) this.copyHeaders.invokeExact(builder, headers);
+				return (Object) this.build.invokeExact(builder);
+			}
+			catch (Throwable e) {
+				ReflectionUtils.rethrowRuntimeException(e);
+				throw new IllegalStateException("Should never get here");
+			}
+		}
+
+		Object getPayload(Object message) {
+			try {
+				return (Object) this.getPayload.invokeExact(message);
+			}
+			catch (Throwable e) {
+				ReflectionUtils.rethrowRuntimeException(e);
+				throw new IllegalStateException("Should never get here");
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		Map<String, Object> getHeaders(Object message) {
+			try {
+				return (Map<String, Object>) this.getHeaders.invokeExact(message);
+			}
+			catch (Throwable e) {
+				ReflectionUtils.rethrowRuntimeException(e);
+				throw new IllegalStateException("Should never get here");
+			}
+		}
+
+	}
+
 }
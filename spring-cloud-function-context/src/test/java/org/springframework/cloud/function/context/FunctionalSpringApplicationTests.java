@@ -0,0 +1,72 @@
+/*
+ * Copyright 2020-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.function.context;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.cloud.function.context.config.ContextFunctionCatalogAutoConfiguration;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ *
+ * @author agent
+ *
+ */
+public class FunctionalSpringApplicationTests {
+
+	private static final AtomicReference<String> invocation = new AtomicReference<>();
+
+	@Test
+	public void testTrainingRunInvokesFunctionAndClosesContext() {
+		ConfigurableApplicationContext context = FunctionalSpringApplication.run(TrainingConfiguration.class,
+				"--spring.main.web-application-type=none",
+				"--spring.cloud.function.definition=uppercase",
+				"--" + FunctionalSpringApplication.SPRING_FUNCTION_TRAINING_ENABLED + "=true",
+				"--" + FunctionalSpringApplication.SPRING_FUNCTION_TRAINING_PAYLOAD + "=hello",
+				"--" + FunctionalSpringApplication.SPRING_FUNCTION_TRAINING_CONTENT_TYPE + "=text/plain");
+
+		assertThat(invocation.get()).isEqualTo("hello");
+		assertThat(context.isActive()).isFalse();
+	}
+
+	@SpringBootConfiguration
+	@ImportAutoConfiguration({
+		ContextFunctionCatalogAutoConfiguration.class,
+		JacksonAutoConfiguration.class }
+	)
+	public static class TrainingConfiguration {
+
+		@Bean
+		public Function<String, String> uppercase() {
+			return value -> {
+				invocation.set(value);
+				return value.toUpperCase();
+			};
+		}
+
+	}
+
+}
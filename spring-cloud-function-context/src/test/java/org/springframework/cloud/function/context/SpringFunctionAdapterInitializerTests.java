@@ -104,6 +104,16 @@ public class SpringFunctionAdapterInitializerTests {
 		assertThat(result.blockFirst()).isInstanceOf(Bar.class);
 	}
 
+	@Test
+	public void startupTimingReport() {
+		this.initializer = new AbstractSpringFunctionAdapterInitializer<Object>(FunctionConfig.class) {
+
+		};
+		this.initializer.initialize(null);
+		assertThat(this.initializer.getStartupTimingReport().getPhases()).containsKeys("context", "function-lookup");
+		assertThat(this.initializer.getStartupTimingReport().toString()).contains("context=", "function-lookup=");
+	}
+
 	@Test
 	@Ignore // related to boot 2.1 no bean override change
 	public void functionRegistrar() {
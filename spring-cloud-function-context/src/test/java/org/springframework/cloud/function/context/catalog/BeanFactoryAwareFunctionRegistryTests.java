@@ -20,8 +20,14 @@ package org.springframework.cloud.function.context.catalog;
 import java.io.Serializable;
 import java.lang.reflect.Field;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
@@ -37,6 +43,8 @@ import reactor.util.function.Tuples;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.boot.builder.SpringApplicationBuilder;
 import org.springframework.cloud.function.context.FunctionCatalog;
+import org.springframework.cloud.function.context.FunctionRegistration;
+import org.springframework.cloud.function.context.FunctionType;
 import org.springframework.cloud.function.context.catalog.BeanFactoryAwareFunctionRegistry.FunctionInvocationWrapper;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
@@ -93,6 +101,96 @@ public class BeanFactoryAwareFunctionRegistryTests {
 		assertThat(((boolean) field.get(function))).isTrue();
 	}
 
+	@Test
+	public void testLookupCache() {
+		FunctionCatalog catalog = this.configureCatalog();
+		BeanFactoryAwareFunctionRegistry registry = (BeanFactoryAwareFunctionRegistry) catalog;
+		long misses = registry.getLookupCacheMisses();
+		long hits = registry.getLookupCacheHits();
+
+		Function<String, String> first = catalog.lookup("uppercase");
+		Function<String, String> second = catalog.lookup("uppercase");
+		assertThat(second).isSameAs(first);
+		assertThat(registry.getLookupCacheMisses()).isEqualTo(misses + 1);
+		assertThat(registry.getLookupCacheHits()).isEqualTo(hits + 1);
+
+		Function<String, Message<byte[]>> withOutputType = catalog.lookup("uppercase", "application/json");
+		assertThat((Object) withOutputType).isNotSameAs(first);
+
+		Function<String, String> composed = catalog.lookup("uppercase|reverse");
+		assertThat((Object) catalog.lookup("uppercase,reverse")).isSameAs(composed);
+		assertThat(composed.apply("hello")).isEqualTo("OLLEH");
+
+		registry.register(new FunctionRegistration<>(new Function<String, String>() {
+			@Override
+			public String apply(String value) {
+				return value;
+			}
+		}, "echo").type(FunctionType.from(String.class).to(String.class)));
+		assertThat(registry.getLookupCacheSize()).isZero();
+		assertThat((Object) catalog.lookup("uppercase")).isNotSameAs(first);
+	}
+
+	@Test
+	public void testReplacedRegistration() {
+		FunctionCatalog catalog = this.configureCatalog();
+		BeanFactoryAwareFunctionRegistry registry = (BeanFactoryAwareFunctionRegistry) catalog;
+		Function<String, String> echo = value -> value;
+		registry.register(new FunctionRegistration<>(echo, "echo").type(FunctionType.from(String.class).to(String.class)));
+		Function<String, String> composed = catalog.lookup("echo|reverse");
+		assertThat(composed.apply("hello")).isEqualTo("olleh");
+
+		Function<String, String> uppercase = value -> value.toUpperCase();
+		registry.register(new FunctionRegistration<>(uppercase, "echo").type(FunctionType.from(String.class).to(String.class)));
+		assertThat(registry.getRegistration(echo)).isNull();
+		Function<String, String> replaced = catalog.lookup("echo");
+		assertThat(replaced.apply("hello")).isEqualTo("HELLO");
+		composed = catalog.lookup("echo|reverse");
+		assertThat(composed.apply("hello")).isEqualTo("OLLEH");
+	}
+
+	@Test
+	public void testConcurrentLookupAndRegistration() throws Exception {
+		FunctionCatalog catalog = this.configureCatalog();
+		BeanFactoryAwareFunctionRegistry registry = (BeanFactoryAwareFunctionRegistry) catalog;
+		int threads = 8;
+		int iterations = 500;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<?>> futures = new ArrayList<>();
+		for (int t = 0; t < threads; t++) {
+			int thread = t;
+			futures.add(executor.submit(() -> {
+				start.await();
+				for (int i = 0; i < iterations; i++) {
+					if (thread % 2 == 0) {
+						registry.register(new FunctionRegistration<>(new Function<String, String>() {
+							@Override
+							public String apply(String value) {
+								return value;
+							}
+						}, "echo" + thread + "_" + i).type(FunctionType.from(String.class).to(String.class)));
+					}
+					else {
+						Function<String, String> function = catalog.lookup(i % 2 == 0 ? "uppercase" : "uppercase|reverse");
+						assertThat(function.apply("abc")).isIn("ABC", "CBA");
+						assertThat(registry.getNames(null)).contains("uppercase");
+					}
+				}
+				return null;
+			}));
+		}
+		start.countDown();
+		for (Future<?> future : futures) {
+			future.get(30, TimeUnit.SECONDS);
+		}
+		executor.shutdownNow();
+
+		assertThat(registry.getNames(null)).contains("echo0_0", "echo" + (threads - 2) + "_" + (iterations - 1));
+		Function<String, String> echo = catalog.lookup("echo0_" + (iterations - 1));
+		assertThat(echo.apply("hello")).isEqualTo("hello");
+	}
+
 	@Test
 	public void testImperativeFunction() {
 		FunctionCatalog catalog = this.configureCatalog();
@@ -319,6 +417,24 @@ public class BeanFactoryAwareFunctionRegistryTests {
 		assertThat(person.getName()).isEqualTo("BILL");
 	}
 
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testImperativeFunctionWithReactiveInputOnBoundedElasticScheduler() {
+		ApplicationContext context = new SpringApplicationBuilder(SampleFunctionConfiguration.class)
+				.run("--spring.main.lazy-initialization=true",
+						"--spring.cloud.function.execution.threadName=bounded-elastic");
+		FunctionCatalog catalog = context.getBean(FunctionCatalog.class);
+		Function<Flux<String>, Flux<String>> threadName = catalog.lookup("threadName");
+		assertThat(threadName.apply(Flux.just("a", "b")).collectList().block())
+				.allMatch(value -> value.startsWith("boundedElastic"));
+
+		Function<Flux<String>, Flux<String>> uppercase = catalog.lookup("uppercase|threadName");
+		assertThat(uppercase.apply(Flux.just("a")).blockFirst()).startsWith("boundedElastic");
+
+		Function<Flux<String>, Flux<String>> callerThreadName = catalog.lookup("callerThreadName");
+		assertThat(callerThreadName.apply(Flux.just("a")).blockFirst()).isEqualTo(Thread.currentThread().getName());
+	}
+
 	@Test
 	public void SCF_GH_429ConfigurationTests() throws Exception {
 		FunctionCatalog catalog = this.configureCatalog(MyFunction.class);
@@ -334,6 +450,16 @@ public class BeanFactoryAwareFunctionRegistryTests {
 	@Configuration
 	protected static class SampleFunctionConfiguration {
 
+		@Bean
+		public Function<String, String> threadName() {
+			return value -> Thread.currentThread().getName();
+		}
+
+		@Bean
+		public Function<String, String> callerThreadName() {
+			return value -> Thread.currentThread().getName();
+		}
+
 		@Bean
 		public Function<Person, Person> uppercasePerson() {
 			return person -> {
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2020-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.function.context.catalog;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.function.Function;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import reactor.core.publisher.Flux;
+
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.type.MethodMetadata;
+import org.springframework.core.type.classreading.SimpleMetadataReaderFactory;
+import org.springframework.messaging.Message;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ *
+ * @author agent
+ *
+ */
+public class FunctionTypeIndexTests {
+
+	/**
+	 * Directories the stored indexes are written to.
+	 */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testRecordedTypeIsValidatedAgainstSource() {
+		FunctionTypeIndex index = FunctionTypeIndex.forClassLoader(this.newClassLoader());
+		Type type = ResolvableType.forClassWithGenerics(Function.class, String.class, Integer.class).getType();
+		index.recordType("length", "com.foo.Config#length", type);
+
+		assertThat(ResolvableType.forType(index.getType("length", "com.foo.Config#length")).toString())
+			.isEqualTo("java.util.function.Function<java.lang.String, java.lang.Integer>");
+		assertThat(index.getType("length", "com.foo.OtherConfig#length")).isNull();
+		assertThat(index.getType("foo", "com.foo.Config#foo")).isNull();
+	}
+
+	@Test
+	public void testChangedSignatureIsStale() throws Exception {
+		MethodMetadata method = new SimpleMetadataReaderFactory().getMetadataReader(LengthConfiguration.class.getName())
+				.getAnnotationMetadata().getAnnotatedMethods(Bean.class.getName()).iterator().next();
+		RootBeanDefinition definition = new RootBeanDefinition();
+		definition.setSource(method);
+		String source = FunctionTypeIndex.sourceOf(definition, this.getClass().getClassLoader());
+		String name = LengthConfiguration.class.getName() + "#length";
+		assertThat(source).isEqualTo(name + ":java.util.function.Function<java.lang.String, java.lang.Integer>");
+
+		FunctionTypeIndex index = FunctionTypeIndex.forClassLoader(this.newClassLoader());
+		index.recordType("length", source, LengthConfiguration.class.getMethod("length").getGenericReturnType());
+		assertThat(index.getType("length", source)).isNotNull();
+		assertThat(index.getType("length", name + ":java.util.function.Function<java.lang.String, java.lang.Long>"))
+			.isNull();
+	}
+
+	@Test
+	public void testStoredIndexIsLoadedWithNestedGenerics() throws Exception {
+		ResolvableType messageOfList = ResolvableType.forClassWithGenerics(Message.class,
+				ResolvableType.forClassWithGenerics(List.class, String.class));
+		Type type = ResolvableType.forClassWithGenerics(Function.class,
+				ResolvableType.forClassWithGenerics(Flux.class, messageOfList),
+				ResolvableType.forClass(byte[].class)).getType();
+		FunctionTypeIndex index = FunctionTypeIndex.forClassLoader(this.newClassLoader());
+		index.recordType("echo", "com.foo.Config#echo", type);
+		index.recordFunctionalMethod(PojoFunction.class, PojoFunction.class.getMethod("uppercase", String.class));
+
+		File root = this.folder.newFolder();
+		index.store(new File(root, FunctionTypeIndex.INDEX_LOCATION));
+
+		FunctionTypeIndex loaded = FunctionTypeIndex.forClassLoader(
+				new URLClassLoader(new URL[] {root.toURI().toURL()}, this.getClass().getClassLoader()));
+		assertThat(ResolvableType.forType(loaded.getType("echo", "com.foo.Config#echo")).toString())
+			.isEqualTo(ResolvableType.forType(type).toString());
+		Method method = loaded.getFunctionalMethod(PojoFunction.class);
+		assertThat(method.getName()).isEqualTo("uppercase");
+		assertThat(loaded.size()).isEqualTo(3);
+	}
+
+	@Test
+	public void testMalformedEntryIsIgnored() throws Exception {
+		File root = this.folder.newFolder();
+		File file = new File(root, FunctionTypeIndex.INDEX_LOCATION);
+		file.getParentFile().mkdirs();
+		Files.write(file.toPath(), ("function.foo.type=java.util.function.Function<com.foo.DoesNotExist, java.lang.String>\n"
+				+ "function.foo.source=com.foo.Config#foo\n"
+				+ "method." + PojoFunction.class.getName() + "=lowercase(java.lang.String)\n").getBytes());
+
+		FunctionTypeIndex index = FunctionTypeIndex.forClassLoader(
+				new URLClassLoader(new URL[] {root.toURI().toURL()}, this.getClass().getClassLoader()));
+		assertThat(index.getType("foo", "com.foo.Config#foo")).isNull();
+		assertThat(index.getFunctionalMethod(PojoFunction.class)).isNull();
+	}
+
+	private ClassLoader newClassLoader() {
+		return new URLClassLoader(new URL[0], this.getClass().getClassLoader());
+	}
+
+	public static class LengthConfiguration {
+
+		@Bean
+		public Function<String, Integer> length() {
+			return String::length;
+		}
+
+	}
+
+	public static class PojoFunction {
+
+		public String uppercase(String value) {
+			return value.toUpperCase();
+		}
+
+	}
+
+}
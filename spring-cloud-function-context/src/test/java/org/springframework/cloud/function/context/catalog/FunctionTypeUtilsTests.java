@@ -112,6 +112,14 @@ public class FunctionTypeUtilsTests {
 		assertThat(outputCount).isEqualTo(2);
 	}
 
+	@Test
+	public void testUnwrapActualTypeOfRawWrappers() {
+		assertThat(FunctionTypeUtils.unwrapActualTypeByIndex(Message.class, 0)).isEqualTo(Object.class);
+		assertThat(FunctionTypeUtils.unwrapActualTypeByIndex(Flux.class, 0)).isEqualTo(Object.class);
+		assertThat(FunctionTypeUtils.isMessage(Flux.class)).isFalse();
+		assertThat(FunctionTypeUtils.isMessage(Message.class)).isTrue();
+	}
+
 	@Test
 	public void testFunctionTypeByClassDiscovery() {
 		FunctionType type = FunctionType.of(FunctionTypeUtils.discoverFunctionTypeFromClass(Function.class));
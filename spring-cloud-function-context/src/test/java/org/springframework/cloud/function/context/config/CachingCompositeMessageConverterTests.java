@@ -0,0 +1,166 @@
+/*
+ * Copyright 2020-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.function.context.config;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.AbstractMessageConverter;
+import org.springframework.messaging.converter.ByteArrayMessageConverter;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.converter.StringMessageConverter;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ *
+ * @author agent
+ *
+ */
+public class CachingCompositeMessageConverterTests {
+
+	private final CachingCompositeMessageConverter converter = new CachingCompositeMessageConverter(
+			Arrays.asList(new MappingJackson2MessageConverter(), new ByteArrayMessageConverter(), new StringMessageConverter()));
+
+	@Test
+	public void testFromMessageGoesStraightToRememberedConverter() {
+		Message<byte[]> message = MessageBuilder.withPayload("hello".getBytes(StandardCharsets.UTF_8))
+				.setHeader(MessageHeaders.CONTENT_TYPE, "text/plain").build();
+
+		assertThat(this.converter.fromMessage(message, String.class)).isEqualTo("hello");
+		assertThat(this.converter.getCacheMisses()).isEqualTo(1);
+		assertThat(this.converter.getCacheHits()).isZero();
+
+		assertThat(this.converter.fromMessage(message, String.class)).isEqualTo("hello");
+		assertThat(this.converter.getCacheMisses()).isEqualTo(1);
+		assertThat(this.converter.getCacheHits()).isEqualTo(1);
+		assertThat(this.converter.getCacheSize()).isEqualTo(1);
+	}
+
+	@Test
+	public void testFromMessageWithNoApplicableConverter() {
+		Message<byte[]> json = MessageBuilder.withPayload("{\"name\":\"bill\"}".getBytes(StandardCharsets.UTF_8))
+				.setHeader(MessageHeaders.CONTENT_TYPE, "application/json").build();
+		assertThat(this.converter.fromMessage(json, Person.class)).isInstanceOf(Person.class);
+
+		Message<byte[]> text = MessageBuilder.withPayload("bill".getBytes(StandardCharsets.UTF_8))
+				.setHeader(MessageHeaders.CONTENT_TYPE, "text/plain").build();
+		assertThat(this.converter.fromMessage(text, Person.class)).isNull();
+		assertThat(this.converter.getCacheMisses()).isEqualTo(2);
+	}
+
+	@Test
+	public void testToMessage() {
+		MessageHeaders headers = new MessageHeaders(Collections.singletonMap(MessageHeaders.CONTENT_TYPE, "application/json"));
+		Message<?> first = this.converter.toMessage(new Person("bill"), headers);
+		Message<?> second = this.converter.toMessage(new Person("bob"), headers);
+		assertThat(new String((byte[]) first.getPayload(), StandardCharsets.UTF_8)).isEqualTo("{\"name\":\"bill\"}");
+		assertThat(new String((byte[]) second.getPayload(), StandardCharsets.UTF_8)).isEqualTo("{\"name\":\"bob\"}");
+		assertThat(this.converter.getCacheMisses()).isEqualTo(1);
+		assertThat(this.converter.getCacheHits()).isEqualTo(1);
+	}
+
+	@Test
+	public void testPayloadDependentConverterIsNotBypassed() {
+		CachingCompositeMessageConverter converter = new CachingCompositeMessageConverter(
+				Arrays.asList(new SpecialPayloadConverter(), new StringMessageConverter()));
+		Message<byte[]> hello = MessageBuilder.withPayload("hello".getBytes(StandardCharsets.UTF_8))
+				.setHeader(MessageHeaders.CONTENT_TYPE, "text/plain").build();
+		Message<byte[]> special = MessageBuilder.withPayload("special".getBytes(StandardCharsets.UTF_8))
+				.setHeader(MessageHeaders.CONTENT_TYPE, "text/plain").build();
+
+		assertThat(converter.fromMessage(hello, String.class)).isEqualTo("hello");
+		assertThat(converter.fromMessage(special, String.class)).isEqualTo("SPECIAL");
+		assertThat(converter.getCacheSize()).isZero();
+	}
+
+	@Test
+	public void testConversionHintIsPartOfTheKey() {
+		CachingCompositeMessageConverter converter = new CachingCompositeMessageConverter(
+				Arrays.asList(new HintedConverter(), new StringMessageConverter()));
+		Message<byte[]> message = MessageBuilder.withPayload("hello".getBytes(StandardCharsets.UTF_8))
+				.setHeader(MessageHeaders.CONTENT_TYPE, "text/plain").build();
+
+		assertThat(converter.fromMessage(message, String.class, "hint")).isEqualTo("hinted");
+		assertThat(converter.fromMessage(message, String.class, null)).isEqualTo("hello");
+		assertThat(converter.fromMessage(message, String.class, "hint")).isEqualTo("hinted");
+		assertThat(converter.getCacheHits()).isEqualTo(1);
+	}
+
+	private static class SpecialPayloadConverter implements MessageConverter {
+
+		@Override
+		public Object fromMessage(Message<?> message, Class<?> targetClass) {
+			return "special".equals(new String((byte[]) message.getPayload(), StandardCharsets.UTF_8))
+					? "SPECIAL" : null;
+		}
+
+		@Override
+		public Message<?> toMessage(Object payload, MessageHeaders headers) {
+			return null;
+		}
+
+	}
+
+	private static class HintedConverter extends AbstractMessageConverter {
+
+		HintedConverter() {
+			super(MimeTypeUtils.TEXT_PLAIN);
+		}
+
+		@Override
+		protected boolean supports(Class<?> clazz) {
+			return String.class == clazz;
+		}
+
+		@Override
+		protected Object convertFromInternal(Message<?> message, Class<?> targetClass, Object conversionHint) {
+			return conversionHint == null ? null : "hinted";
+		}
+
+	}
+
+	public static class Person {
+
+		private String name;
+
+		public Person() {
+		}
+
+		public Person(String name) {
+			this.name = name;
+		}
+
+		public String getName() {
+			return this.name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+	}
+
+}
@@ -39,6 +39,7 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.cloud.function.context.FunctionCatalog;
 import org.springframework.cloud.function.context.FunctionRegistration;
 import org.springframework.cloud.function.context.FunctionType;
+import org.springframework.cloud.function.context.StartupTimingReport;
 import org.springframework.cloud.function.context.catalog.FunctionInspector;
 import org.springframework.cloud.function.context.scan.TestFunction;
 import org.springframework.context.ApplicationContextInitializer;
@@ -77,6 +78,12 @@ public class ContextFunctionCatalogInitializerTests {
 				.isInstanceOf(Function.class);
 	}
 
+	@Test
+	public void startupTimingReport() {
+		create(SimpleConfiguration.class);
+		assertThat(this.context.getBeansOfType(StartupTimingReport.class)).hasSize(1);
+	}
+
 	@Test
 	public void properties() {
 		create(PropertiesConfiguration.class, "app.greeting=hello");
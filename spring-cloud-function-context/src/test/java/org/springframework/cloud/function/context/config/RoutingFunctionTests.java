@@ -16,11 +16,19 @@
 
 package org.springframework.cloud.function.context.config;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 import org.junit.After;
 import org.junit.Test;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.boot.builder.SpringApplicationBuilder;
@@ -33,6 +41,7 @@ import org.springframework.messaging.Message;
 import org.springframework.messaging.support.MessageBuilder;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.junit.Assert.fail;
 
 /**
@@ -51,10 +60,13 @@ public class RoutingFunctionTests {
 		context.close();
 	}
 
-	private FunctionCatalog configureCatalog() {
-		context = new SpringApplicationBuilder(RoutingFunctionConfiguration.class).run(
-				"--logging.level.org.springframework.cloud.function=DEBUG",
-				"--spring.cloud.function.routing.enabled=true");
+	private FunctionCatalog configureCatalog(String... args) {
+		String[] defaultArgs = new String[] {"--logging.level.org.springframework.cloud.function=DEBUG",
+				"--spring.cloud.function.routing.enabled=true"};
+		String[] allArgs = new String[defaultArgs.length + args.length];
+		System.arraycopy(defaultArgs, 0, allArgs, 0, defaultArgs.length);
+		System.arraycopy(args, 0, allArgs, defaultArgs.length, args.length);
+		context = new SpringApplicationBuilder(RoutingFunctionConfiguration.class).run(allArgs);
 		FunctionCatalog catalog = context.getBean(FunctionCatalog.class);
 		return catalog;
 	}
@@ -105,6 +117,55 @@ public class RoutingFunctionTests {
 		resultFlux.subscribe();
 	}
 
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	@Test
+	public void testRoutingReactiveInputWithFanOut() {
+		FunctionCatalog functionCatalog = this.configureCatalog("--spring.cloud.function.routing.fan-out=true");
+		Function function = functionCatalog.lookup(RoutingFunction.FUNCTION_NAME);
+		Flux<Message<String>> input = Flux.just(
+				MessageBuilder.withPayload("hello").setHeader(FunctionProperties.PREFIX + ".definition", "uppercaseFlux").build(),
+				MessageBuilder.withPayload("hello").setHeader(FunctionProperties.PREFIX + ".definition", "reverse").build(),
+				MessageBuilder.withPayload("bye").setHeader(FunctionProperties.PREFIX + ".routing-expression", "'uppercaseFlux'").build(),
+				MessageBuilder.withPayload("bye").setHeader(FunctionProperties.PREFIX + ".definition", "reverse").build());
+		List<Object> result = ((Flux<Object>) function.apply(input)).collectList().block();
+		assertThat(result).containsExactlyInAnyOrder("HELLO", "olleh", "BYE", "eyb");
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	@Test
+	public void testFanOutFlattensPublishersOfImperativeFunctions() {
+		FunctionCatalog functionCatalog = this.configureCatalog("--spring.cloud.function.routing.fan-out=true");
+		Function function = functionCatalog.lookup(RoutingFunction.FUNCTION_NAME);
+		Flux<Message<String>> input = Flux.just(
+				MessageBuilder.withPayload("hello").setHeader(FunctionProperties.PREFIX + ".definition", "uppercaseMono").build(),
+				MessageBuilder.withPayload("bye").setHeader(FunctionProperties.PREFIX + ".definition", "uppercaseMono").build());
+		List<Object> result = ((Flux<Object>) function.apply(input)).collectList().block();
+		assertThat(result).containsExactly("HELLO", "BYE");
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	@Test
+	public void testFanOutFailsBeyondConcurrency() {
+		FunctionCatalog functionCatalog = this.configureCatalog("--spring.cloud.function.routing.fan-out=true",
+				"--spring.cloud.function.routing.fan-out-concurrency=1");
+		Function function = functionCatalog.lookup(RoutingFunction.FUNCTION_NAME);
+		Flux<Message<String>> input = Flux.just(
+				MessageBuilder.withPayload("hello").setHeader(FunctionProperties.PREFIX + ".definition", "reverse").build(),
+				MessageBuilder.withPayload("hello").setHeader(FunctionProperties.PREFIX + ".definition", "uppercase").build());
+		assertThatThrownBy(() -> ((Flux<Object>) function.apply(input)).collectList().block(Duration.ofSeconds(5)))
+				.isInstanceOf(IllegalStateException.class).hasMessageContaining("fan-out-concurrency");
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	@Test
+	public void testDefinitionPropertyTakesPrecedenceOverFanOut() {
+		FunctionCatalog functionCatalog = this.configureCatalog("--spring.cloud.function.routing.fan-out=true",
+				"--spring.cloud.function.definition=uppercaseFlux");
+		Function function = functionCatalog.lookup(RoutingFunction.FUNCTION_NAME);
+		List<Object> result = ((Flux<Object>) function.apply(Flux.just("hello", "bye"))).collectList().block();
+		assertThat(result).containsExactly("HELLO", "BYE");
+	}
+
 	@SuppressWarnings({ "unchecked", "rawtypes" })
 	@Test
 	public void testInvocationWithMessageAndDefinitionProperty() {
@@ -127,6 +188,77 @@ public class RoutingFunctionTests {
 		assertThat(function.apply(message)).isEqualTo("olleh");
 	}
 
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	@Test
+	public void testInvocationWithMessageAndRoutingExpressionConcurrently() throws Exception {
+		System.setProperty(FunctionProperties.PREFIX + ".routing-expression", "headers.function_name");
+		FunctionCatalog functionCatalog = this.configureCatalog();
+		Function function = functionCatalog.lookup(RoutingFunction.FUNCTION_NAME);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<Object>> results = new ArrayList<>();
+			// enough evaluations for the expression to be compiled half way through
+			for (int i = 0; i < 1000; i++) {
+				String functionName = i % 2 == 0 ? "reverse" : "uppercase";
+				Message<String> message = MessageBuilder.withPayload("hello").setHeader("function_name", functionName).build();
+				results.add(executor.submit(() -> function.apply(message)));
+			}
+			for (int i = 0; i < results.size(); i++) {
+				assertThat(results.get(i).get(10, TimeUnit.SECONDS)).isEqualTo(i % 2 == 0 ? "olleh" : "HELLO");
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	@Test
+	public void testInvocationWithMessageAndRoutingTable() {
+		FunctionCatalog functionCatalog = this.configureCatalog("--spring.cloud.function.routing.header=type",
+				"--spring.cloud.function.routing.routes.a=reverse",
+				"--spring.cloud.function.routing.routes.b=uppercase",
+				"--spring.cloud.function.routing-expression='reverse'");
+		Function function = functionCatalog.lookup(RoutingFunction.FUNCTION_NAME);
+		assertThat(function.apply(MessageBuilder.withPayload("hello").setHeader("type", "a").build())).isEqualTo("olleh");
+		assertThat(function.apply(MessageBuilder.withPayload("hello").setHeader("type", "b").build())).isEqualTo("HELLO");
+		// no route, so falls back to routing expression
+		assertThat(function.apply(MessageBuilder.withPayload("hello").setHeader("type", "c").build())).isEqualTo("olleh");
+		// definition header still takes precedence
+		assertThat(function.apply(MessageBuilder.withPayload("hello").setHeader("type", "a")
+				.setHeader(FunctionProperties.PREFIX + ".definition", "uppercase").build())).isEqualTo("HELLO");
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	@Test
+	public void testInvocationWithRoutingTableAndPayloadField() {
+		FunctionCatalog functionCatalog = this.configureCatalog("--spring.cloud.function.routing.payload-field=type",
+				"--spring.cloud.function.routing.routes.a=typeOf",
+				"--spring.cloud.function.routing.default-route=nameOf");
+		Function function = functionCatalog.lookup(RoutingFunction.FUNCTION_NAME);
+		assertThat(function.apply(MessageBuilder.withPayload(new Event("a", "foo")).build())).isEqualTo("a");
+		assertThat(function.apply(new Event("a", "foo"))).isEqualTo("a");
+		assertThat(function.apply(new Event("z", "foo"))).isEqualTo("foo");
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	@Test
+	public void testRoutingTableFailsOnUnknownKey() {
+		FunctionCatalog functionCatalog = this.configureCatalog("--spring.cloud.function.routing.header=type",
+				"--spring.cloud.function.routing.routes.a=reverse",
+				"--spring.cloud.function.routing.unknown-key=fail",
+				"--spring.cloud.function.definition=uppercase");
+		Function function = functionCatalog.lookup(RoutingFunction.FUNCTION_NAME);
+		assertThat(function.apply(MessageBuilder.withPayload("hello").setHeader("type", "a").build())).isEqualTo("olleh");
+		try {
+			function.apply(MessageBuilder.withPayload("hello").setHeader("type", "c").build());
+			fail();
+		}
+		catch (IllegalStateException e) {
+			assertThat(e.getMessage()).contains("'c'");
+		}
+	}
+
 	@SuppressWarnings({ "rawtypes", "unchecked" })
 	@Test
 	public void testOtherExpectedFailures() {
@@ -183,5 +315,56 @@ public class RoutingFunctionTests {
 		public Function<Flux<String>, Flux<String>> echoFlux() {
 			return f -> f;
 		}
+
+		@Bean
+		public Function<String, Mono<String>> uppercaseMono() {
+			return v -> Mono.just(v.toUpperCase());
+		}
+
+		@Bean
+		public Function<Flux<String>, Flux<String>> uppercaseFlux() {
+			return f -> f.map(v -> v.toUpperCase());
+		}
+
+		@Bean
+		public Function<Event, String> typeOf() {
+			return v -> v.getType();
+		}
+
+		@Bean
+		public Function<Event, String> nameOf() {
+			return v -> v.getName();
+		}
+	}
+
+	public static class Event {
+
+		private String type;
+
+		private String name;
+
+		public Event() {
+		}
+
+		public Event(String type, String name) {
+			this.type = type;
+			this.name = name;
+		}
+
+		public String getType() {
+			return type;
+		}
+
+		public void setType(String type) {
+			this.type = type;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
 	}
 }
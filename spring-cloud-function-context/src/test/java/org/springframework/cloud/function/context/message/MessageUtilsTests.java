@@ -0,0 +1,59 @@
+/*
+ * Copyright 2020-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.function.context.message;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Collections;
+
+import org.apache.commons.logging.LogFactory;
+import org.junit.Test;
+
+import org.springframework.cloud.function.core.Isolated;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.Assert;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author agent
+ *
+ */
+public class MessageUtilsTests {
+
+	@Test
+	public void messageIsCreatedAndUnpackedInIsolatedClassLoader() throws Exception {
+		URL[] urls = new URL[] { location(MessageBuilder.class), location(Assert.class), location(LogFactory.class) };
+		try (URLClassLoader classLoader = new URLClassLoader(urls, null)) {
+			Isolated handler = () -> classLoader;
+			Object message = MessageUtils.create(handler, "hello", Collections.singletonMap("foo", "bar"));
+			assertThat(message).isNotInstanceOf(Message.class);
+			assertThat(message.getClass().getClassLoader()).isSameAs(classLoader);
+
+			Message<?> unpacked = MessageUtils.unpack(handler, message);
+			assertThat(unpacked.getPayload()).isEqualTo("hello");
+			assertThat(unpacked.getHeaders()).containsEntry("foo", "bar");
+			assertThat(MessageUtils.unpack(handler, "bye").getPayload()).isEqualTo("bye");
+		}
+	}
+
+	private static URL location(Class<?> type) {
+		return type.getProtectionDomain().getCodeSource().getLocation();
+	}
+
+}
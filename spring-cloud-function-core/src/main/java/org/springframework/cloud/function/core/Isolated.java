@@ -16,6 +16,8 @@
 
 package org.springframework.cloud.function.core;
 
+import java.util.function.Function;
+
 /**
  * @author Dave Syer
  *
@@ -24,4 +26,18 @@ public interface Isolated {
 
 	ClassLoader getClassLoader();
 
+	/**
+	 * Return a value derived from the class loader of this wrapper. Implementations keep
+	 * the value (per type) for as long as the wrapper, and therefore the class loader,
+	 * lives; the default implementation computes it on every call.
+	 * @param <T> the type of the value
+	 * @param type the type of the value, used as its key
+	 * @param factory creates the value from the class loader
+	 * @return the (possibly cached) value
+	 * @since 3.0.4
+	 */
+	default <T> T getCached(Class<T> type, Function<ClassLoader, ? extends T> factory) {
+		return factory.apply(getClassLoader());
+	}
+
 }
@@ -16,7 +16,10 @@
 
 package org.springframework.cloud.function.core;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 import org.springframework.util.ClassUtils;
 
@@ -30,6 +33,8 @@ public class IsolatedConsumer<T> implements Consumer<T>, Isolated {
 
 	private final ClassLoader classLoader;
 
+	private final Map<Class<?>, Object> cache = new ConcurrentHashMap<>(2);
+
 	public IsolatedConsumer(Consumer<T> consumer) {
 		this.consumer = consumer;
 		this.classLoader = consumer.getClass().getClassLoader();
@@ -40,6 +45,12 @@ public class IsolatedConsumer<T> implements Consumer<T>, Isolated {
 		return this.classLoader;
 	}
 
+	@Override
+	public <V> V getCached(Class<V> type, Function<ClassLoader, ? extends V> factory) {
+		return type.cast(this.cache.computeIfAbsent(type,
+				key -> factory.apply(this.classLoader)));
+	}
+
 	@Override
 	public void accept(T item) {
 		ClassLoader context = ClassUtils
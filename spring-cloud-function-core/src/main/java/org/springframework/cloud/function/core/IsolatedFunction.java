@@ -16,6 +16,8 @@
 
 package org.springframework.cloud.function.core;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 
 import org.springframework.util.ClassUtils;
@@ -31,6 +33,8 @@ public class IsolatedFunction<S, T> implements Function<S, T>, Isolated {
 
 	private final ClassLoader classLoader;
 
+	private final Map<Class<?>, Object> cache = new ConcurrentHashMap<>(2);
+
 	public IsolatedFunction(Function<S, T> function) {
 		this.function = function;
 		this.classLoader = function.getClass().getClassLoader();
@@ -41,6 +45,12 @@ public class IsolatedFunction<S, T> implements Function<S, T>, Isolated {
 		return this.classLoader;
 	}
 
+	@Override
+	public <V> V getCached(Class<V> type, Function<ClassLoader, ? extends V> factory) {
+		return type.cast(this.cache.computeIfAbsent(type,
+				key -> factory.apply(this.classLoader)));
+	}
+
 	@Override
 	public T apply(S item) {
 		ClassLoader context = ClassUtils
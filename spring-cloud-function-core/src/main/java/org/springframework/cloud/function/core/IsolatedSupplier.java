@@ -16,6 +16,9 @@
 
 package org.springframework.cloud.function.core;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
 import org.springframework.util.ClassUtils;
@@ -30,6 +33,8 @@ public class IsolatedSupplier<T> implements Supplier<T>, Isolated {
 
 	private final ClassLoader classLoader;
 
+	private final Map<Class<?>, Object> cache = new ConcurrentHashMap<>(2);
+
 	public IsolatedSupplier(Supplier<T> supplier) {
 		this.supplier = supplier;
 		this.classLoader = supplier.getClass().getClassLoader();
@@ -40,6 +45,12 @@ public class IsolatedSupplier<T> implements Supplier<T>, Isolated {
 		return this.classLoader;
 	}
 
+	@Override
+	public <V> V getCached(Class<V> type, Function<ClassLoader, ? extends V> factory) {
+		return type.cast(this.cache.computeIfAbsent(type,
+				key -> factory.apply(this.classLoader)));
+	}
+
 	@Override
 	public T get() {
 		ClassLoader context = ClassUtils
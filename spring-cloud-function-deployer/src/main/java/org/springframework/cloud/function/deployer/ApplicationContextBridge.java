@@ -0,0 +1,148 @@
+/*
+ * Copyright 2020-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.function.deployer;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.util.Map;
+
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Bridge to the application context of a deployed archive, whose classes (Spring's
+ * included) are loaded by the class loader of the archive rather than by the class loader
+ * of the deployer.
+ * <br>
+ * The methods of the context are resolved once (as {@link MethodHandle method handles}
+ * bound to the context) when the archive is deployed, so invoking them is not more
+ * expensive than invoking them directly.
+ *
+ * @author agent
+ * @since 3.0.4
+ */
+final class ApplicationContextBridge {
+
+	private final MethodHandle getBeansOfType;
+
+	private final MethodHandle stop;
+
+	private final MethodHandle isRunning;
+
+	private final MethodHandle findType;
+
+	private final MethodHandle findSource;
+
+	private final ClassLoader classLoader;
+
+	ApplicationContextBridge(Object applicationContext, ClassLoader classLoader) {
+		this.classLoader = classLoader;
+		try {
+			Class<?> contextType = ClassUtils.resolveClassName(ConfigurableApplicationContext.class.getName(),
+					classLoader);
+			Class<?> beanFactoryType = ClassUtils
+					.resolveClassName(ConfigurableListableBeanFactory.class.getName(), classLoader);
+			MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+			this.getBeansOfType = lookup
+					.findVirtual(contextType, "getBeansOfType", MethodType.methodType(Map.class, Class.class))
+					.bindTo(applicationContext);
+			this.stop = lookup.findVirtual(contextType, "stop", MethodType.methodType(void.class))
+					.bindTo(applicationContext);
+			this.isRunning = lookup.findVirtual(contextType, "isRunning", MethodType.methodType(boolean.class))
+					.bindTo(applicationContext);
+			Object beanFactory = lookup
+					.findVirtual(contextType, "getBeanFactory", MethodType.methodType(beanFactoryType))
+					.invoke(applicationContext);
+
+			// DeployerContextUtils is package private (and defined by the archive loader)
+			Class<?> contextUtils = ClassUtils.resolveClassName(DeployerContextUtils.class.getName(), classLoader);
+			Method findType = ReflectionUtils.findMethod(contextUtils, "findType",
+					ClassUtils.resolveClassName(BeanFactory.class.getName(), classLoader), String.class);
+			ReflectionUtils.makeAccessible(findType);
+			this.findType = MethodHandles.lookup().unreflect(findType).bindTo(beanFactory);
+			Method findSource = ReflectionUtils.findMethod(contextUtils, "sourceOf",
+					ClassUtils.resolveClassName(BeanFactory.class.getName(), classLoader), String.class);
+			ReflectionUtils.makeAccessible(findSource);
+			this.findSource = MethodHandles.lookup().unreflect(findSource).bindTo(beanFactory);
+		}
+		catch (Throwable e) {
+			throw new IllegalStateException("Failed to bind to application context " + applicationContext, e);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	Map<String, Object> getBeansOfType(Class<?> type) {
+		try {
+			return (Map<String, Object>) this.getBeansOfType.invokeExact(type);
+		}
+		catch (Throwable e) {
+			throw new IllegalStateException("Failed to retrieve beans of type " + type, e);
+		}
+	}
+
+	Type findType(String name) {
+		// factory classes of the bean definitions are resolved by the context class loader
+		ClassLoader current = ClassUtils.overrideThreadContextClassLoader(this.classLoader);
+		try {
+			return (Type) this.findType.invokeExact(name);
+		}
+		catch (Throwable e) {
+			throw new IllegalStateException("Failed to discover type of function " + name, e);
+		}
+		finally {
+			ClassUtils.overrideThreadContextClassLoader(current);
+		}
+	}
+
+	String findSource(String name) {
+		ClassLoader current = ClassUtils.overrideThreadContextClassLoader(this.classLoader);
+		try {
+			return (String) this.findSource.invokeExact(name);
+		}
+		catch (Throwable e) {
+			throw new IllegalStateException("Failed to resolve source of function " + name, e);
+		}
+		finally {
+			ClassUtils.overrideThreadContextClassLoader(current);
+		}
+	}
+
+	boolean isRunning() {
+		try {
+			return (boolean) this.isRunning.invokeExact();
+		}
+		catch (Throwable e) {
+			throw new IllegalStateException("Failed to check whether application context is running", e);
+		}
+	}
+
+	void stop() {
+		try {
+			this.stop.invokeExact();
+		}
+		catch (Throwable e) {
+			throw new IllegalStateException("Failed to stop application context", e);
+		}
+	}
+
+}
@@ -41,6 +41,8 @@ import org.springframework.util.ReflectionUtils;
  */
 abstract class DeployerContextUtils {
 
+	private static final String FUNCTION_TYPE_INDEX = "org.springframework.cloud.function.context.catalog.FunctionTypeIndex";
+
 	public static Type findType(BeanFactory beanFactory, String name) {
 		ConfigurableListableBeanFactory registry = (ConfigurableListableBeanFactory) beanFactory;
 		AbstractBeanDefinition definition = (AbstractBeanDefinition) registry.getBeanDefinition(name);
@@ -63,6 +65,28 @@ abstract class DeployerContextUtils {
 		return param;
 	}
 
+	/**
+	 * Returns the identity of the bean definition source of the function (see
+	 * {@code FunctionTypeIndex.sourceOf(..)}), which validates the function type index
+	 * packaged with the archive, as resolved by the archive itself.
+	 * @param beanFactory the bean factory of the archive
+	 * @param name the name of the function bean
+	 * @return the source identity or null if it can not be resolved (e.g., the archive
+	 * does not contain the function type index)
+	 */
+	public static String sourceOf(BeanFactory beanFactory, String name) {
+		ConfigurableListableBeanFactory registry = (ConfigurableListableBeanFactory) beanFactory;
+		ClassLoader classLoader = registry.getBeanClassLoader();
+		if (!registry.containsBeanDefinition(name) || !ClassUtils.isPresent(FUNCTION_TYPE_INDEX, classLoader)) {
+			return null;
+		}
+		Method sourceOf = ReflectionUtils.findMethod(ClassUtils.resolveClassName(FUNCTION_TYPE_INDEX, classLoader),
+				"sourceOf", AbstractBeanDefinition.class, ClassLoader.class);
+		return sourceOf != null
+				? (String) ReflectionUtils.invokeMethod(sourceOf, null, registry.getBeanDefinition(name), classLoader)
+				: null;
+	}
+
 	private static Type findBeanType(AbstractBeanDefinition definition, String declaringClassName, String methodName) {
 		Class<?> factory = ClassUtils.resolveClassName(declaringClassName, null);
 		Class<?>[] params = getParamTypes(factory, definition);
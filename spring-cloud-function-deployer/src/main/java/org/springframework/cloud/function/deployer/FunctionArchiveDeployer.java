@@ -20,11 +20,19 @@ import java.io.IOException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -33,14 +41,10 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.loader.JarLauncher;
 import org.springframework.boot.loader.LaunchedURLClassLoader;
 import org.springframework.boot.loader.archive.Archive;
-import org.springframework.boot.loader.jar.JarFile;
 import org.springframework.cloud.function.context.FunctionRegistration;
-import org.springframework.cloud.function.context.FunctionRegistry;
+import org.springframework.cloud.function.context.catalog.FunctionTypeIndex;
 import org.springframework.cloud.function.context.catalog.FunctionTypeUtils;
-import org.springframework.expression.Expression;
-import org.springframework.expression.spel.standard.SpelExpressionParser;
-import org.springframework.expression.spel.support.StandardEvaluationContext;
-import org.springframework.expression.spel.support.StandardTypeLocator;
+import org.springframework.core.ResolvableType;
 import org.springframework.util.CollectionUtils;
 import org.springframework.util.ReflectionUtils;
 import org.springframework.util.ReflectionUtils.MethodCallback;
@@ -58,21 +62,40 @@ class FunctionArchiveDeployer extends JarLauncher {
 
 	private static Log logger = LogFactory.getLog(FunctionArchiveDeployer.class);
 
-	private final StandardEvaluationContext evalContext = new StandardEvaluationContext();
+	private final SharedLibraryLoaders sharedLibraries;
 
 	private LaunchedURLClassLoader archiveLoader;
 
+	private SharedLibraryLoaders.ArchiveLibraries sharedLoader;
+
+	private ApplicationContextBridge applicationContext;
+
 	FunctionArchiveDeployer(Archive archive) {
+		this(archive, null);
+	}
+
+	FunctionArchiveDeployer(Archive archive, SharedLibraryLoaders sharedLibraries) {
 		super(archive);
+		this.sharedLibraries = sharedLibraries;
 	}
 
+	/**
+	 * Deploys the archive and discovers its functions. Since several archives may be
+	 * deployed in parallel, the functions are returned rather than registered.
+	 * @param functionProperties the deployer properties
+	 * @param args the arguments of the deployed application
+	 * @param multipleArchives whether other archives are deployed as well, in which case
+	 * the function class (if provided) is only loaded from the archives which contain it
+	 * @return the registrations of the functions of the archive
+	 */
 	@SuppressWarnings({ "unchecked", "rawtypes" })
-	void deploy(FunctionRegistry functionRegistry, FunctionDeployerProperties functionProperties, String[] args) {
+	List<FunctionRegistration<?>> deploy(FunctionDeployerProperties functionProperties, String[] args,
+			boolean multipleArchives) {
 		ClassLoader currentLoader = Thread.currentThread().getContextClassLoader();
+		List<FunctionRegistration<?>> registrations = new ArrayList<>();
 
 		try {
 			Thread.currentThread().setContextClassLoader(createClassLoader(discoverClassPathAcrhives()));
-			evalContext.setTypeLocator(new StandardTypeLocator(Thread.currentThread().getContextClassLoader()));
 
 			if (this.isBootApplicationWithMain()) {
 				this.launchFunctionArchive(args);
@@ -83,23 +106,25 @@ class FunctionArchiveDeployer extends JarLauncher {
 				}
 				for (Entry<String, Object> entry : functions.entrySet()) {
 					FunctionRegistration registration = new FunctionRegistration(entry.getValue(), entry.getKey());
-					Type type = this.discoverFunctionType(entry.getKey());
+					Type type = this.discoverFunctionType(entry.getKey(), entry.getValue());
 					if (logger.isInfoEnabled()) {
 						logger.info("Registering function '" + entry.getKey() + "' of type '" + type
 								+ "' in FunctionRegistry.");
 					}
 					registration.type(type);
-					functionRegistry.register(registration);
+					registrations.add(registration);
 				}
 			}
 
 			String functionClassName = discoverFunctionClassName(functionProperties);
-			if (!StringUtils.isEmpty(functionClassName)) {
+			if (!StringUtils.isEmpty(functionClassName)
+					&& (!multipleArchives || this.containsClass(functionClassName))) {
 				FunctionRegistration registration = this.discovereAndLoadFunctionFromClassName(functionClassName);
 				if (registration != null) {
-					functionRegistry.register(registration);
+					registrations.add(registration);
 				}
 			}
+			return registrations;
 		}
 		catch (Exception e) {
 			throw new IllegalStateException("Failed to deploy archive " + this.getArchive(), e);
@@ -118,6 +143,13 @@ class FunctionArchiveDeployer extends JarLauncher {
 		catch (IOException e) {
 			logger.error("Failed to closed archive class loader", e);
 		}
+		if (this.sharedLoader != null) {
+			this.sharedLibraries.release(this.sharedLoader);
+		}
+	}
+
+	ApplicationContextBridge getApplicationContext() {
+		return this.applicationContext;
 	}
 
 	@Override
@@ -131,7 +163,23 @@ class FunctionArchiveDeployer extends JarLauncher {
 		 * are shared across two class loaders.
 		 */
 		final ClassLoader deployerClassLoader = getClass().getClassLoader();
-		this.archiveLoader = new LaunchedURLClassLoader(urls, deployerClassLoader.getParent()) {
+		ClassLoader parent = deployerClassLoader.getParent();
+		if (this.sharedLibraries != null) {
+			/*
+			 * Libraries shared with other archives are loaded by their own class loader
+			 * which becomes the parent of the archive loader.
+			 */
+			List<URL> libraries = this.sharedLibraries.filter(urls);
+			if (!libraries.isEmpty()) {
+				this.sharedLoader = this.sharedLibraries.acquire(libraries, parent);
+				parent = this.sharedLoader;
+				// compared by identity, since URL.equals() may resolve host names
+				Set<URL> shared = Collections.newSetFromMap(new IdentityHashMap<>());
+				shared.addAll(this.sharedLoader.getLibraries());
+				urls = Arrays.stream(urls).filter(url -> !shared.contains(url)).toArray(URL[]::new);
+			}
+		}
+		this.archiveLoader = new LaunchedURLClassLoader(urls, parent) {
 			@Override
 			public Class<?> loadClass(String name) throws ClassNotFoundException {
 				Class<?> clazz = null;
@@ -169,6 +217,10 @@ class FunctionArchiveDeployer extends JarLauncher {
 
 
 
+	private boolean containsClass(String className) {
+		return this.archiveLoader.findResource(className.replace('.', '/') + ".class") != null;
+	}
+
 	private String discoverFunctionClassName(FunctionDeployerProperties functionProperties) {
 		try {
 			return StringUtils.hasText(functionProperties.getFunctionClass())
@@ -233,8 +285,6 @@ class FunctionArchiveDeployer extends JarLauncher {
 	}
 
 	private void launchFunctionArchive(String[] args) throws Exception {
-		JarFile.registerUrlProtocolHandler();
-
 		String mainClassName = getMainClass();
 		Class<?> mainClass = Thread.currentThread().getContextClassLoader().loadClass(mainClassName);
 
@@ -245,42 +295,44 @@ class FunctionArchiveDeployer extends JarLauncher {
 		if (logger.isInfoEnabled()) {
 			logger.info("Application context for archive '" + this.getArchive().getUrl() + "' is created.");
 		}
-		evalContext.setVariable("context", applicationContext);
-		setBeanFactory(applicationContext);
+		this.applicationContext = new ApplicationContextBridge(applicationContext, this.archiveLoader);
 	}
 
-	private void setBeanFactory(Object applicationContext) {
-		Expression parsed = new SpelExpressionParser().parseExpression("#context.getBeanFactory()");
-		Object beanFactory = parsed.getValue(this.evalContext);
-		evalContext.setVariable("bf", beanFactory);
+	/*
+	 * Consults the function type index packaged with the archive (if any) before
+	 * resorting to reflective discovery within the deployed application context. The
+	 * indexed type is only trusted if the entry is validated against the bean definition
+	 * source (as resolved by the archive) and the function actually is an instance of its
+	 * raw type.
+	 */
+	private Type discoverFunctionType(String name, Object function) {
+		String source = this.applicationContext.findSource(name);
+		if (source != null) {
+			Type indexedType = FunctionTypeIndex.forClassLoader(this.archiveLoader).getType(name, source);
+			if (indexedType != null
+					&& ResolvableType.forType(indexedType).resolve(Object.class).isInstance(function)) {
+				return indexedType;
+			}
+		}
+		return this.discoverFunctionType(name);
 	}
 
 	private Type discoverFunctionType(String name) {
-		evalContext.setVariable("functionName", name);
-		String expr = "T(" + DeployerContextUtils.class.getName() + ").findType(#bf, #functionName)";
-		Expression parsed = new SpelExpressionParser().parseExpression(expr);
-		Object type = parsed.getValue(this.evalContext);
-		return (Type) type;
+		return this.applicationContext.findType(name);
 	}
 
 	private void stopDeployedApplicationContext() {
-		if (evalContext.lookupVariable("context") != null) { // no start-class uber jars
-			Expression parsed = new SpelExpressionParser().parseExpression("#context.stop()");
-			parsed.getValue(this.evalContext);
+		if (this.applicationContext != null && this.applicationContext.isRunning()) { // no start-class uber jars
+			this.applicationContext.stop();
 		}
 	}
 
-	@SuppressWarnings("unchecked")
 	private Map<String, Object> discoverBeanFunctions() {
 		Map<String, Object> allFunctions = new HashMap<String, Object>();
-		if (evalContext.lookupVariable("context") != null) { // no start-class uber jars
-			Expression parsed = new SpelExpressionParser()
-					.parseExpression("#context.getBeansOfType(T(java.util.function.Function))");
-			allFunctions.putAll((Map<String, Object>) parsed.getValue(this.evalContext));
-			parsed = new SpelExpressionParser().parseExpression("#context.getBeansOfType(T(java.util.function.Supplier))");
-			allFunctions.putAll((Map<String, Object>) parsed.getValue(this.evalContext));
-			parsed = new SpelExpressionParser().parseExpression("#context.getBeansOfType(T(java.util.function.Consumer))");
-			allFunctions.putAll((Map<String, Object>) parsed.getValue(this.evalContext));
+		if (this.applicationContext != null) { // no start-class uber jars
+			allFunctions.putAll(this.applicationContext.getBeansOfType(Function.class));
+			allFunctions.putAll(this.applicationContext.getBeansOfType(Supplier.class));
+			allFunctions.putAll(this.applicationContext.getBeansOfType(Consumer.class));
 		}
 		return allFunctions;
 	}
@@ -0,0 +1,594 @@
+/*
+ * Copyright 2020-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.function.deployer;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import org.springframework.boot.loader.archive.Archive;
+import org.springframework.boot.loader.archive.ExplodedArchive;
+import org.springframework.boot.loader.archive.JarFileArchive;
+import org.springframework.boot.loader.jar.JarFile;
+import org.springframework.cloud.function.context.FunctionCatalog;
+import org.springframework.cloud.function.context.FunctionRegistration;
+import org.springframework.cloud.function.context.FunctionRegistry;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.StringUtils;
+
+/**
+ * {@link SmartLifecycle} which deploys (on start) and undeploys (on stop) the archives
+ * configured via 'spring.cloud.function.location'.
+ * <br>
+ * When several archives are configured, they are deployed in parallel (bounded by
+ * {@link FunctionDeployerProperties#getDeploymentConcurrency()}) and the libraries they
+ * have in common are loaded by shared class loaders (see {@link SharedLibraryLoaders}).
+ * Functions are registered once all archives are deployed, in the order in which the
+ * archives are configured.
+ * <br>
+ * In {@link FunctionDeployerProperties#isHotDeploy() hot deploy} mode, jar archives are
+ * deployed from copies (so they can be overwritten) and watched: once an archive changes,
+ * its new version is deployed in the background and its functions replace the ones of the
+ * previous version in the {@link FunctionRegistry}. Functions of the previous version
+ * still referenced by callers forward new invocations to the new version. The previous
+ * version is undeployed in the background once the invocations of its functions which
+ * were in flight at the time of the swap (including the publishers they returned)
+ * complete, or {@link FunctionDeployerProperties#getDrainTimeout()} elapses. Its
+ * functions fail fast once it is undeployed.
+ *
+ * @author agent
+ * @since 3.0.4
+ */
+class FunctionArchiveDeployments implements SmartLifecycle {
+
+	private static Log logger = LogFactory.getLog(FunctionArchiveDeployments.class);
+
+	private final FunctionDeployerProperties functionProperties;
+
+	private final FunctionRegistry functionRegistry;
+
+	private final String[] args;
+
+	private final FunctionDeploymentReport report;
+
+	private final SharedLibraryLoaders sharedLibraries;
+
+	private final List<File> locations;
+
+	private final Map<File, Deployment> deployments = new LinkedHashMap<>();
+
+	private final List<Deployment> retired = new ArrayList<>();
+
+	private final AtomicInteger versions = new AtomicInteger();
+
+	private File snapshots;
+
+	private FunctionArchiveWatcher watcher;
+
+	private volatile ExecutorService retirements;
+
+	private volatile boolean running;
+
+	FunctionArchiveDeployments(FunctionDeployerProperties functionProperties, FunctionRegistry functionRegistry,
+			String[] args, FunctionDeploymentReport report) {
+		this.functionProperties = functionProperties;
+		this.functionRegistry = functionRegistry;
+		this.args = args;
+		this.report = report;
+		this.locations = resolveLocations(functionProperties.getLocation());
+		this.sharedLibraries = this.locations.size() > 1
+				? new SharedLibraryLoaders(functionProperties.getSharedLibraries()) : null;
+	}
+
+	@Override
+	public void start() {
+		JarFile.registerUrlProtocolHandler();
+		long metaspaceBefore = metaspaceUsed();
+		long classesBefore = ManagementFactory.getClassLoadingMXBean().getTotalLoadedClassCount();
+
+		List<FunctionRegistration<?>> registrations = new ArrayList<>();
+		if (this.locations.size() == 1) {
+			registrations.addAll(this.deploy(this.locations.get(0)).registrations);
+		}
+		else {
+			registrations.addAll(this.deployInParallel());
+		}
+		for (FunctionRegistration<?> registration : registrations) {
+			this.functionRegistry.register(registration);
+		}
+
+		if (this.sharedLibraries != null) {
+			long classes = ManagementFactory.getClassLoadingMXBean().getTotalLoadedClassCount() - classesBefore;
+			long metaspace = metaspaceUsed() - metaspaceBefore;
+			long savedClassCount = this.sharedLibraries.getSavedClassCount();
+			long metaspacePerClass = classes > 0 && metaspaceBefore >= 0 && metaspace > 0 ? metaspace / classes : 0;
+			this.report.recordSharing(this.sharedLibraries.getClassCount(), savedClassCount,
+					savedClassCount * metaspacePerClass);
+		}
+		if (logger.isInfoEnabled()) {
+			logger.info(this.report);
+		}
+		this.running = true;
+		if (this.functionProperties.isHotDeploy()) {
+			this.watch();
+		}
+	}
+
+	@Override
+	public void stop() {
+		if (this.watcher != null) {
+			this.watcher.close();
+			this.watcher = null;
+		}
+		if (this.retirements != null) {
+			// draining retired versions is interrupted, they are undeployed right away
+			this.retirements.shutdownNow();
+			try {
+				this.retirements.awaitTermination(this.functionProperties.getDrainTimeout().toMillis(),
+						TimeUnit.MILLISECONDS);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			this.retirements = null;
+		}
+		synchronized (this.deployments) {
+			this.running = false;
+			this.deployments.values().forEach(this::undeploy);
+			this.deployments.clear();
+			this.retired.forEach(this::undeploy);
+			this.retired.clear();
+		}
+		if (this.snapshots != null) {
+			FileSystemUtils.deleteRecursively(this.snapshots);
+		}
+	}
+
+	@Override
+	public boolean isRunning() {
+		return this.running;
+	}
+
+	@Override
+	public int getPhase() {
+		return Integer.MAX_VALUE - 1000;
+	}
+
+	private List<FunctionRegistration<?>> deployInParallel() {
+		int concurrency = Math.max(1, Math.min(this.functionProperties.getDeploymentConcurrency(), this.locations.size()));
+		ExecutorService executor = Executors.newFixedThreadPool(concurrency,
+				new CustomizableThreadFactory("function-deployer-"));
+		List<FunctionRegistration<?>> registrations = new ArrayList<>();
+		Throwable failure = null;
+		try {
+			List<Future<Deployment>> deployments = new ArrayList<>();
+			for (File location : this.locations) {
+				deployments.add(executor.submit(() -> this.deploy(location)));
+			}
+			for (Future<Deployment> deployment : deployments) {
+				try {
+					registrations.addAll(deployment.get().registrations);
+				}
+				catch (ExecutionException e) {
+					failure = failure == null ? e.getCause() : failure;
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					failure = failure == null ? e : failure;
+				}
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		if (failure != null) {
+			this.stop();
+			throw failure instanceof RuntimeException ? (RuntimeException) failure
+					: new IllegalStateException("Failed to deploy archives", failure);
+		}
+		return registrations;
+	}
+
+	private Deployment deploy(File location) {
+		Deployment deployment = this.createDeployment(location);
+		synchronized (this.deployments) {
+			this.deployments.put(location, deployment);
+		}
+		return deployment;
+	}
+
+	private Deployment createDeployment(File location) {
+		if (logger.isInfoEnabled()) {
+			logger.info("Deploying archive: " + location);
+		}
+		boolean hotDeploy = this.functionProperties.isHotDeploy() && location.isFile();
+		File archive = hotDeploy ? this.snapshot(location) : location;
+		FunctionArchiveDeployer deployer = new FunctionArchiveDeployer(createArchive(archive), this.sharedLibraries);
+		Deployment deployment;
+		try {
+			List<FunctionRegistration<?>> registrations = this.report.timings().time(location.getAbsolutePath(),
+					() -> deployer.deploy(this.functionProperties, this.args, this.sharedLibraries != null));
+			deployment = new Deployment(location, archive, deployer, registrations, hotDeploy);
+		}
+		catch (RuntimeException e) {
+			if (archive != location) {
+				archive.delete();
+			}
+			throw e;
+		}
+		if (logger.isInfoEnabled()) {
+			logger.info("Successfully deployed archive: " + location);
+		}
+		return deployment;
+	}
+
+	private void undeploy(Deployment deployment) {
+		if (logger.isInfoEnabled()) {
+			logger.info("Undeploying archive: " + deployment.location);
+		}
+		deployment.undeployed = true;
+		deployment.deployer.undeploy();
+		if (deployment.archive != deployment.location) {
+			deployment.archive.delete();
+		}
+		if (logger.isInfoEnabled()) {
+			logger.info("Successfully undeployed archive: " + deployment.location);
+		}
+	}
+
+	/*
+	 * Deploys the new version of the archive, swaps its functions with the ones of the
+	 * previous version (if any) and retires the previous version in the background.
+	 */
+	void redeploy(File location) {
+		Deployment deployment;
+		try {
+			deployment = this.createDeployment(location);
+		}
+		catch (RuntimeException e) {
+			logger.error("Failed to deploy new version of archive: " + location, e);
+			return;
+		}
+		Deployment previous;
+		synchronized (this.deployments) {
+			if (!this.running) {
+				this.undeploy(deployment);
+				return;
+			}
+			previous = this.deployments.put(location, deployment);
+		}
+		for (FunctionRegistration<?> registration : deployment.registrations) {
+			this.functionRegistry.register(registration);
+		}
+		// resolves the new functions (e.g., conversion, composition) before they are invoked
+		if (this.functionRegistry instanceof FunctionCatalog) {
+			for (String name : deployment.getNames()) {
+				((FunctionCatalog) this.functionRegistry).lookup(name);
+			}
+		}
+		if (previous != null) {
+			previous.successor = deployment;
+			ExecutorService retirements = this.retirements;
+			try {
+				if (retirements != null) {
+					retirements.execute(() -> this.retire(previous, deployment));
+					return;
+				}
+			}
+			catch (RejectedExecutionException e) {
+				// stopping, hence not drained
+			}
+			this.undeploy(previous);
+		}
+	}
+
+	private void retire(Deployment previous, Deployment deployment) {
+		Set<String> names = previous.getNames();
+		names.removeAll(deployment.getNames());
+		if (!names.isEmpty()) {
+			logger.warn("Functions " + names + " are not provided by the new version of archive "
+					+ previous.location + " and keep being served by its previous version");
+			synchronized (this.deployments) {
+				if (this.running) {
+					this.retired.add(previous);
+					return;
+				}
+			}
+			this.undeploy(previous);
+			return;
+		}
+		if (!previous.awaitDrained(this.functionProperties.getDrainTimeout().toMillis())) {
+			logger.warn("Invocations of the functions of the previous version of archive " + previous.location
+					+ " did not complete within " + this.functionProperties.getDrainTimeout());
+		}
+		this.undeploy(previous);
+	}
+
+	private void watch() {
+		List<File> archives = new ArrayList<>();
+		for (File location : this.locations) {
+			if (location.isFile()) {
+				archives.add(location);
+			}
+			else if (logger.isWarnEnabled()) {
+				logger.warn("Exploded archive " + location + " is not hot deployed");
+			}
+		}
+		List<File> archiveDirectories = new ArrayList<>();
+		for (String path : StringUtils.commaDelimitedListToStringArray(this.functionProperties.getLocation())) {
+			File file = new File(path.trim());
+			if (isArchiveDirectory(file)) {
+				archiveDirectories.add(file);
+			}
+		}
+		this.retirements = Executors.newCachedThreadPool(new CustomizableThreadFactory("function-archive-retirement-"));
+		try {
+			this.watcher = new FunctionArchiveWatcher(archives, archiveDirectories, this::redeploy);
+		}
+		catch (IOException e) {
+			throw new IllegalStateException("Failed to watch archives: " + archives, e);
+		}
+		this.watcher.start();
+	}
+
+	private File snapshot(File location) {
+		try {
+			synchronized (this.versions) {
+				if (this.snapshots == null) {
+					this.snapshots = Files.createTempDirectory("function-archives").toFile();
+				}
+			}
+			File snapshot = new File(this.snapshots, this.versions.incrementAndGet() + "-" + location.getName());
+			Files.copy(location.toPath(), snapshot.toPath());
+			return snapshot;
+		}
+		catch (IOException e) {
+			throw new IllegalStateException("Failed to copy archive: " + location, e);
+		}
+	}
+
+	/*
+	 * Each location is either an archive (jar or exploded) or a directory of jar archives.
+	 */
+	static List<File> resolveLocations(String location) {
+		List<File> locations = new ArrayList<>();
+		for (String path : StringUtils.commaDelimitedListToStringArray(location)) {
+			// absolute and normalized, as reported by the watcher
+			File file = new File(path.trim()).getAbsoluteFile().toPath().normalize().toFile();
+			if (!file.exists()) {
+				throw new IllegalStateException("Failed to create archive: " + path.trim() + " does not exist");
+			}
+			File[] archives = isArchiveDirectory(file) ? file.listFiles((directory, name) -> name.endsWith(".jar"))
+					: null;
+			if (archives != null && archives.length > 0) {
+				Arrays.sort(archives);
+				locations.addAll(Arrays.asList(archives));
+			}
+			else {
+				locations.add(file);
+			}
+		}
+		return locations;
+	}
+
+	private static boolean isArchiveDirectory(File file) {
+		return file.isDirectory() && !new File(file, "META-INF").exists() && !new File(file, "BOOT-INF").exists();
+	}
+
+	private static Archive createArchive(File location) {
+		try {
+			return location.isDirectory() ? new ExplodedArchive(location) : new JarFileArchive(location);
+		}
+		catch (IOException e) {
+			throw new IllegalStateException("Failed to create archive: " + location, e);
+		}
+	}
+
+	private static long metaspaceUsed() {
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if ("Metaspace".equals(pool.getName())) {
+				return pool.getUsage().getUsed();
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * A deployed version of an archive. When hot deployed, the functions of the archive
+	 * count their invocations in flight (until the publishers they return, if any,
+	 * terminate), so the version can be drained before it is undeployed. Once replaced,
+	 * they forward invocations to the functions of the same name of the new version.
+	 */
+	private static final class Deployment {
+
+		private final File location;
+
+		private final File archive;
+
+		private final FunctionArchiveDeployer deployer;
+
+		private final List<FunctionRegistration<?>> registrations = new ArrayList<>();
+
+		private final Map<String, Object> targets = new HashMap<>();
+
+		private final AtomicInteger inFlight = new AtomicInteger();
+
+		private volatile Deployment successor;
+
+		private volatile boolean undeployed;
+
+		Deployment(File location, File archive, FunctionArchiveDeployer deployer,
+				List<FunctionRegistration<?>> registrations, boolean tracked) {
+			this.location = location;
+			this.archive = archive;
+			this.deployer = deployer;
+			for (FunctionRegistration<?> registration : registrations) {
+				FunctionRegistration<?> deployed = tracked ? this.track(registration) : registration;
+				this.registrations.add(deployed);
+				deployed.getNames().forEach(name -> this.targets.put(name, deployed.getTarget()));
+			}
+		}
+
+		Set<String> getNames() {
+			Set<String> names = new LinkedHashSet<>();
+			this.registrations.forEach(registration -> names.addAll(registration.getNames()));
+			return names;
+		}
+
+		boolean awaitDrained(long timeout) {
+			long deadline = System.currentTimeMillis() + timeout;
+			while (this.inFlight.get() > 0) {
+				if (System.currentTimeMillis() >= deadline) {
+					return false;
+				}
+				try {
+					Thread.sleep(10);
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return false;
+				}
+			}
+			return true;
+		}
+
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		private FunctionRegistration<?> track(FunctionRegistration<?> registration) {
+			Object target = registration.getTarget();
+			String name = registration.getNames().iterator().next();
+			Object tracked;
+			if (target instanceof Function) {
+				tracked = (Function) input -> this.invoke(name, Function.class, target, input,
+						(function, value) -> ((Function) function).apply(value));
+			}
+			else if (target instanceof Consumer) {
+				tracked = (Consumer) input -> this.invoke(name, Consumer.class, target, input, (consumer, value) -> {
+					((Consumer) consumer).accept(value);
+					return null;
+				});
+			}
+			else if (target instanceof Supplier) {
+				tracked = (Supplier) () -> this.invoke(name, Supplier.class, target, null,
+						(supplier, value) -> ((Supplier) supplier).get());
+			}
+			else {
+				return registration;
+			}
+			return new FunctionRegistration<>(tracked, StringUtils.toStringArray(registration.getNames()))
+					.type(registration.getType()).properties(registration.getProperties());
+		}
+
+		/*
+		 * The invocation is counted before the successor is checked, so the version can
+		 * not be undeployed in between (the successor is set before draining).
+		 */
+		private Object invoke(String name, Class<?> type, Object target, Object input,
+				BiFunction<Object, Object, Object> invocation) {
+			this.inFlight.incrementAndGet();
+			boolean release = true;
+			try {
+				Object successor = this.successor(name, type);
+				if (successor != null) {
+					this.inFlight.decrementAndGet();
+					release = false;
+					return invocation.apply(successor, input);
+				}
+				Object result = invocation.apply(target, input);
+				if (result instanceof Publisher) {
+					release = false;
+					return this.track((Publisher<?>) result);
+				}
+				return result;
+			}
+			finally {
+				if (release) {
+					this.inFlight.decrementAndGet();
+				}
+			}
+		}
+
+		private Object successor(String name, Class<?> type) {
+			Deployment successor = this.successor;
+			Object target = successor != null ? successor.targets.get(name) : null;
+			if (target == null) {
+				if (this.undeployed) {
+					throw new IllegalStateException("Function '" + name + "' is no longer available, archive "
+							+ this.location + " was undeployed");
+				}
+				return null;
+			}
+			if (!type.isInstance(target)) {
+				throw new IllegalStateException("Function '" + name + "' of the new version of archive "
+						+ this.location + " is not a " + type.getSimpleName());
+			}
+			return target;
+		}
+
+		/*
+		 * The invocation stays in flight until the first subscription to the publisher
+		 * terminates; further subscriptions are counted while they last.
+		 */
+		private Publisher<?> track(Publisher<?> publisher) {
+			AtomicBoolean invocation = new AtomicBoolean(true);
+			Runnable subscribed = this.inFlight::incrementAndGet;
+			Runnable terminated = () -> {
+				this.inFlight.decrementAndGet();
+				if (invocation.compareAndSet(true, false)) {
+					this.inFlight.decrementAndGet();
+				}
+			};
+			if (publisher instanceof Mono) {
+				return ((Mono<?>) publisher).doOnSubscribe(subscription -> subscribed.run())
+						.doFinally(signal -> terminated.run());
+			}
+			return Flux.from(publisher).doOnSubscribe(subscription -> subscribed.run())
+					.doFinally(signal -> terminated.run());
+		}
+
+	}
+
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2020-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.function.deployer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Watches jar archives (and directories of jar archives) for changes, notifying the
+ * listener of each archive which was modified (or added to one of the directories).
+ * <br>
+ * Since an archive is usually written in several steps, the listener is only notified
+ * once no further change was reported for {@link #QUIET_PERIOD} milliseconds. Changes are
+ * processed (one at a time) by a single daemon thread.
+ *
+ * @author agent
+ * @since 3.0.4
+ */
+final class FunctionArchiveWatcher implements Closeable {
+
+	static final long QUIET_PERIOD = 500;
+
+	private static Log logger = LogFactory.getLog(FunctionArchiveWatcher.class);
+
+	private final WatchService watchService;
+
+	private final Set<Path> archives = new HashSet<>();
+
+	private final Set<Path> archiveDirectories = new HashSet<>();
+
+	private final Consumer<File> listener;
+
+	private final Thread thread;
+
+	FunctionArchiveWatcher(Collection<File> archives, Collection<File> archiveDirectories, Consumer<File> listener)
+			throws IOException {
+		this.watchService = FileSystems.getDefault().newWatchService();
+		this.listener = listener;
+		Set<Path> directories = new HashSet<>();
+		for (File archive : archives) {
+			Path path = archive.toPath().toAbsolutePath().normalize();
+			this.archives.add(path);
+			directories.add(path.getParent());
+		}
+		for (File archiveDirectory : archiveDirectories) {
+			Path path = archiveDirectory.toPath().toAbsolutePath().normalize();
+			this.archiveDirectories.add(path);
+			directories.add(path);
+		}
+		for (Path directory : directories) {
+			directory.register(this.watchService, StandardWatchEventKinds.ENTRY_CREATE,
+					StandardWatchEventKinds.ENTRY_MODIFY);
+		}
+		this.thread = new Thread(this::watch, "function-archive-watcher");
+		this.thread.setDaemon(true);
+	}
+
+	void start() {
+		this.thread.start();
+	}
+
+	@Override
+	public void close() {
+		try {
+			this.watchService.close();
+		}
+		catch (IOException e) {
+			logger.error("Failed to close watch service", e);
+		}
+		this.thread.interrupt();
+	}
+
+	private void watch() {
+		try {
+			while (true) {
+				Set<Path> changed = new LinkedHashSet<>();
+				this.collect(this.watchService.take(), changed);
+				WatchKey key;
+				while ((key = this.watchService.poll(QUIET_PERIOD, TimeUnit.MILLISECONDS)) != null) {
+					this.collect(key, changed);
+				}
+				for (Path archive : changed) {
+					try {
+						this.listener.accept(archive.toFile());
+					}
+					catch (Exception e) {
+						logger.error("Failed to process change of archive: " + archive, e);
+					}
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		catch (ClosedWatchServiceException e) {
+			// closed
+		}
+	}
+
+	private void collect(WatchKey key, Set<Path> changed) {
+		Path directory = (Path) key.watchable();
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+				continue;
+			}
+			Path path = directory.resolve((Path) event.context());
+			if (this.archives.contains(path)
+					|| (this.archiveDirectories.contains(directory) && path.toString().endsWith(".jar"))) {
+				changed.add(path);
+			}
+		}
+		key.reset();
+	}
+
+}
@@ -16,23 +16,15 @@
 
 package org.springframework.cloud.function.deployer;
 
-import java.io.File;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
-
 import org.springframework.boot.ApplicationArguments;
 import org.springframework.boot.DefaultApplicationArguments;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.boot.env.EnvironmentPostProcessor;
-import org.springframework.boot.loader.archive.Archive;
-import org.springframework.boot.loader.archive.ExplodedArchive;
-import org.springframework.boot.loader.archive.JarFileArchive;
 import org.springframework.cloud.function.context.FunctionProperties;
 import org.springframework.cloud.function.context.FunctionRegistry;
 import org.springframework.context.SmartLifecycle;
@@ -60,71 +52,18 @@ import org.springframework.util.StringUtils;
 @EnableConfigurationProperties(FunctionDeployerProperties.class)
 public class FunctionDeployerConfiguration {
 
-	private static Log logger = LogFactory.getLog(FunctionDeployerConfiguration.class);
+	@Bean
+	FunctionDeploymentReport functionDeploymentReport() {
+		return new FunctionDeploymentReport();
+	}
 
 	@Bean
 	SmartLifecycle functionArchiveDeployer(FunctionDeployerProperties functionProperties,
-			FunctionRegistry functionRegistry, ApplicationArguments arguments) {
+			FunctionRegistry functionRegistry, ApplicationArguments arguments, FunctionDeploymentReport report) {
 
 		ApplicationArguments updatedArguments = this.updateArguments(arguments);
-
-		Archive archive = null;
-		try {
-			File file = new File(functionProperties.getLocation());
-			if (!file.exists()) {
-				throw new IllegalStateException("Failed to create archive: " + functionProperties.getLocation() + " does not exist");
-			}
-			else if (file.isDirectory()) {
-				archive = new ExplodedArchive(file);
-			}
-			else {
-				archive = new JarFileArchive(file);
-			}
-		}
-		catch (IOException e) {
-			throw new IllegalStateException("Failed to create archive: " + functionProperties.getLocation(), e);
-		}
-		FunctionArchiveDeployer deployer = new FunctionArchiveDeployer(archive);
-
-		return new SmartLifecycle() {
-
-			private boolean running;
-
-			@Override
-			public void stop() {
-				if (logger.isInfoEnabled()) {
-					logger.info("Undeploying archive: " + functionProperties.getLocation());
-				}
-				deployer.undeploy();
-				if (logger.isInfoEnabled()) {
-					logger.info("Successfully undeployed archive: " + functionProperties.getLocation());
-				}
-				this.running = false;
-			}
-
-			@Override
-			public void start() {
-				if (logger.isInfoEnabled()) {
-					logger.info("Deploying archive: " + functionProperties.getLocation());
-				}
-				deployer.deploy(functionRegistry, functionProperties, updatedArguments.getSourceArgs());
-				this.running = true;
-				if (logger.isInfoEnabled()) {
-					logger.info("Successfully deployed archive: " + functionProperties.getLocation());
-				}
-			}
-
-			@Override
-			public boolean isRunning() {
-				return this.running;
-			}
-
-			@Override
-			public int getPhase() {
-				return Integer.MAX_VALUE - 1000;
-			}
-		};
-
+		return new FunctionArchiveDeployments(functionProperties, functionRegistry,
+				updatedArguments.getSourceArgs(), report);
 	}
 
 	/*
@@ -16,6 +16,11 @@
 
 package org.springframework.cloud.function.deployer;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import javax.annotation.PostConstruct;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
@@ -35,9 +40,39 @@ public class FunctionDeployerProperties {
 
 	/**
 	 * Location of jar archive containing the supplier/function/consumer class or bean to run.
+	 * Several archives can be deployed at once by providing a comma-delimited list of
+	 * locations, each of which may also be a directory of jar archives.
 	 */
 	private String location;
 
+	/**
+	 * Maximum number of archives deployed in parallel when several archives are deployed.
+	 * Defaults to the number of available processors.
+	 */
+	private int deploymentConcurrency = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * File name patterns of the libraries (e.g., 'jackson-*') which are loaded once and
+	 * shared by all archives packaging an identical copy of them (same content), when
+	 * several archives are deployed. Shared libraries must only depend on other shared
+	 * libraries.
+	 */
+	private List<String> sharedLibraries = new ArrayList<>(
+			Arrays.asList("jackson-annotations-*", "jackson-core-*", "jackson-databind-*"));
+
+	/**
+	 * Whether to watch the deployed jar archives (and the directories of jar archives) and
+	 * redeploy an archive once it changes (or deploy it once it is added), swapping its
+	 * functions without downtime.
+	 */
+	private boolean hotDeploy;
+
+	/**
+	 * Maximum time to wait for the invocations of the functions of a replaced archive to
+	 * complete before the archive is undeployed.
+	 */
+	private Duration drainTimeout = Duration.ofSeconds(30);
+
 	/**
 	 * The name of the function class to be instantiated and loaded into FunctionCatalog. The name of the
 	 * function will be decapitalized simple name of this class.
@@ -52,6 +87,38 @@ public class FunctionDeployerProperties {
 		return this.functionClass;
 	}
 
+	public int getDeploymentConcurrency() {
+		return this.deploymentConcurrency;
+	}
+
+	public void setDeploymentConcurrency(int deploymentConcurrency) {
+		this.deploymentConcurrency = deploymentConcurrency;
+	}
+
+	public List<String> getSharedLibraries() {
+		return this.sharedLibraries;
+	}
+
+	public void setSharedLibraries(List<String> sharedLibraries) {
+		this.sharedLibraries = sharedLibraries;
+	}
+
+	public boolean isHotDeploy() {
+		return this.hotDeploy;
+	}
+
+	public void setHotDeploy(boolean hotDeploy) {
+		this.hotDeploy = hotDeploy;
+	}
+
+	public Duration getDrainTimeout() {
+		return this.drainTimeout;
+	}
+
+	public void setDrainTimeout(Duration drainTimeout) {
+		this.drainTimeout = drainTimeout;
+	}
+
 	public String getLocation() {
 		return this.location;
 	}
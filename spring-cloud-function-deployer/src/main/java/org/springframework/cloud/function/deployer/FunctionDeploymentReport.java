@@ -0,0 +1,95 @@
+/*
+ * Copyright 2020-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.function.deployer;
+
+import java.util.Map;
+
+import org.springframework.cloud.function.context.StartupTimingReport;
+
+/**
+ * Reports how long the deployment of each archive took and how much was saved by sharing
+ * libraries between archives.
+ * <br>
+ * The metaspace saved is an estimate: the number of classes which were loaded once
+ * rather than once per archive (as of the end of the deployment) multiplied by the
+ * average metaspace taken by the classes loaded during the deployment.
+ *
+ * @author agent
+ * @since 3.0.4
+ */
+public class FunctionDeploymentReport {
+
+	private final StartupTimingReport deploymentTimes = new StartupTimingReport();
+
+	private volatile long sharedClassCount;
+
+	private volatile long savedClassCount;
+
+	private volatile long savedMetaspace;
+
+	/**
+	 * Returns the time (in milliseconds) it took to deploy each archive.
+	 * @return deployment times keyed by the absolute path of the archive
+	 */
+	public Map<String, Long> getDeploymentTimes() {
+		return this.deploymentTimes.getPhases();
+	}
+
+	/**
+	 * Returns the number of classes loaded by class loaders shared by several archives.
+	 * @return the number of shared classes
+	 */
+	public long getSharedClassCount() {
+		return this.sharedClassCount;
+	}
+
+	/**
+	 * Returns the number of classes which were loaded once rather than once per archive.
+	 * @return the number of classes saved
+	 */
+	public long getSavedClassCount() {
+		return this.savedClassCount;
+	}
+
+	/**
+	 * Returns the (estimated) metaspace in bytes saved by sharing libraries.
+	 * @return the metaspace saved
+	 */
+	public long getSavedMetaspace() {
+		return this.savedMetaspace;
+	}
+
+	StartupTimingReport timings() {
+		return this.deploymentTimes;
+	}
+
+	void recordSharing(long sharedClassCount, long savedClassCount, long savedMetaspace) {
+		this.sharedClassCount = sharedClassCount;
+		this.savedClassCount = savedClassCount;
+		this.savedMetaspace = savedMetaspace;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("Deployment time (ms): ");
+		this.getDeploymentTimes().forEach((archive, millis) -> builder.append(archive).append('=').append(millis).append(", "));
+		return builder.append("shared classes=").append(this.sharedClassCount)
+				.append(", saved classes=").append(this.savedClassCount)
+				.append(", saved metaspace (KB, estimated)=").append(this.savedMetaspace / 1024).toString();
+	}
+
+}
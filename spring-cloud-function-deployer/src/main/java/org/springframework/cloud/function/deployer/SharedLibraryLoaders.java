@@ -0,0 +1,318 @@
+/*
+ * Copyright 2020-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.function.deployer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.boot.loader.LaunchedURLClassLoader;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.PatternMatchUtils;
+import org.springframework.util.StringUtils;
+
+/**
+ * Class loaders for libraries shared by several deployed archives, so the classes of a
+ * library packaged with every archive (e.g., Jackson) are loaded (and take up metaspace)
+ * once rather than once per archive.
+ * <br>
+ * Each library is loaded by its own class loader, identified by the hash of the content
+ * of the library rather than by its name, so only identical copies are shared and an
+ * archive shares every library it has in common with another archive, even if the rest
+ * of their libraries differ. A library loader resolves the classes it does not contain
+ * through the loaders of the other shared libraries of the archive it was created for,
+ * so it is only reused by archives which package identical copies of all of them
+ * (otherwise the archive loads the library itself). The library loaders of an archive
+ * are combined in a single class loader (the parent of the archive loader), and closed
+ * once all archives using them are undeployed.
+ *
+ * @author agent
+ * @since 3.0.4
+ */
+final class SharedLibraryLoaders {
+
+	private static Log logger = LogFactory.getLog(SharedLibraryLoaders.class);
+
+	private final String[] patterns;
+
+	private final Map<String, LibraryLoader> loaders = new HashMap<>();
+
+	SharedLibraryLoaders(List<String> patterns) {
+		this.patterns = StringUtils.toStringArray(patterns);
+	}
+
+	/**
+	 * Returns the libraries (jar URLs) which should be shared.
+	 * @param urls class path of an archive
+	 * @return the libraries which should be shared
+	 */
+	List<URL> filter(URL[] urls) {
+		List<URL> libraries = new ArrayList<>();
+		for (URL url : urls) {
+			String path = url.getPath();
+			path = path.endsWith("!/") ? path.substring(0, path.length() - 2) : path;
+			String name = StringUtils.getFilename(path);
+			if (name != null && name.endsWith(".jar") && PatternMatchUtils.simpleMatch(this.patterns, name)) {
+				libraries.add(url);
+			}
+		}
+		return libraries;
+	}
+
+	/**
+	 * Returns the class loader of the provided libraries of an archive, reusing the loaders
+	 * of the libraries shared with other archives and creating the rest. Must be
+	 * {@link #release(ArchiveLibraries) released} once the archive is undeployed.
+	 * @param libraries the libraries to share
+	 * @param parent the parent of the class loaders (if they have to be created)
+	 * @return the class loader of the libraries, which may leave out some of them (see
+	 * {@link ArchiveLibraries#getLibraries()})
+	 */
+	ArchiveLibraries acquire(List<URL> libraries, ClassLoader parent) {
+		Map<String, URL> hashes = new LinkedHashMap<>();
+		for (URL library : libraries) {
+			hashes.putIfAbsent(this.hash(library), library);
+		}
+		synchronized (this.loaders) {
+			// existing loaders are only reused if all of their peers are reused as well
+			Map<String, LibraryLoader> reused = new HashMap<>();
+			for (String hash : hashes.keySet()) {
+				LibraryLoader loader = this.loaders.get(hash);
+				if (loader != null) {
+					reused.put(hash, loader);
+				}
+			}
+			boolean changed = true;
+			while (changed) {
+				changed = reused.values().removeIf(loader -> loader.peers.stream()
+						.anyMatch(peer -> reused.get(peer.hash) != peer));
+			}
+			List<LibraryLoader> acquired = new ArrayList<>(reused.values());
+			List<LibraryLoader> created = new ArrayList<>();
+			List<URL> shared = new ArrayList<>();
+			for (Map.Entry<String, URL> entry : hashes.entrySet()) {
+				if (reused.containsKey(entry.getKey())) {
+					shared.add(entry.getValue());
+				}
+				else if (!this.loaders.containsKey(entry.getKey())) {
+					LibraryLoader loader = new LibraryLoader(entry.getKey(), entry.getValue(), parent);
+					this.loaders.put(entry.getKey(), loader);
+					created.add(loader);
+					shared.add(entry.getValue());
+					if (logger.isDebugEnabled()) {
+						logger.debug("Created shared class loader for " + entry.getValue());
+					}
+				}
+				else if (logger.isDebugEnabled()) {
+					logger.debug("Not sharing " + entry.getValue()
+							+ " since its shared copy depends on libraries which differ");
+				}
+			}
+			acquired.addAll(created);
+			for (LibraryLoader loader : created) {
+				loader.peers.addAll(acquired);
+				loader.peers.remove(loader);
+			}
+			for (LibraryLoader loader : acquired) {
+				loader.references++;
+			}
+			return new ArchiveLibraries(shared, acquired, parent);
+		}
+	}
+
+	/**
+	 * Releases the class loader acquired for an archive, closing the loaders of the
+	 * libraries which are not shared by any other archive.
+	 * @param libraries the class loader to release
+	 */
+	void release(ArchiveLibraries libraries) {
+		synchronized (this.loaders) {
+			for (LibraryLoader loader : libraries.loaders) {
+				if (--loader.references == 0) {
+					this.loaders.remove(loader.hash, loader);
+					try {
+						loader.close();
+					}
+					catch (IOException e) {
+						logger.error("Failed to close shared class loader", e);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of classes loaded by shared class loaders.
+	 * @return the number of shared classes
+	 */
+	long getClassCount() {
+		synchronized (this.loaders) {
+			return this.loaders.values().stream().mapToLong(loader -> loader.classCount.get()).sum();
+		}
+	}
+
+	/**
+	 * Returns the number of classes which would have been loaded (again) by the class
+	 * loaders of the archives, had the libraries not been shared.
+	 * @return the number of classes loaded once rather than once per archive
+	 */
+	long getSavedClassCount() {
+		synchronized (this.loaders) {
+			return this.loaders.values().stream()
+					.mapToLong(loader -> loader.classCount.get() * (loader.references - 1)).sum();
+		}
+	}
+
+	private String hash(URL library) {
+		try (InputStream stream = library.openStream()) {
+			return DigestUtils.md5DigestAsHex(stream);
+		}
+		catch (IOException e) {
+			throw new IllegalStateException("Failed to read library " + library, e);
+		}
+	}
+
+	/**
+	 * The class loader of the shared libraries of an archive, which delegates to the
+	 * loaders of the individual libraries. Does not define any classes itself.
+	 */
+	static final class ArchiveLibraries extends ClassLoader {
+
+		private final List<URL> libraries;
+
+		private final List<LibraryLoader> loaders;
+
+		private ArchiveLibraries(List<URL> libraries, List<LibraryLoader> loaders, ClassLoader parent) {
+			super(parent);
+			this.libraries = libraries;
+			this.loaders = loaders;
+		}
+
+		/**
+		 * Returns the libraries loaded by this class loader, which the archive must not load
+		 * itself.
+		 * @return the shared libraries
+		 */
+		List<URL> getLibraries() {
+			return this.libraries;
+		}
+
+		@Override
+		protected Class<?> findClass(String name) throws ClassNotFoundException {
+			for (LibraryLoader loader : this.loaders) {
+				Class<?> clazz = loader.findOwnClass(name);
+				if (clazz != null) {
+					return clazz;
+				}
+			}
+			throw new ClassNotFoundException(name);
+		}
+
+		@Override
+		protected URL findResource(String name) {
+			for (LibraryLoader loader : this.loaders) {
+				URL resource = loader.findResource(name);
+				if (resource != null) {
+					return resource;
+				}
+			}
+			return null;
+		}
+
+		@Override
+		protected Enumeration<URL> findResources(String name) throws IOException {
+			List<URL> resources = new ArrayList<>();
+			for (LibraryLoader loader : this.loaders) {
+				resources.addAll(Collections.list(loader.findResources(name)));
+			}
+			return Collections.enumeration(resources);
+		}
+
+	}
+
+	private static final class LibraryLoader extends LaunchedURLClassLoader {
+
+		private final String hash;
+
+		private final List<LibraryLoader> peers = new ArrayList<>();
+
+		private final AtomicLong classCount = new AtomicLong();
+
+		private int references;
+
+		LibraryLoader(String hash, URL library, ClassLoader parent) {
+			super(new URL[] { library }, parent);
+			this.hash = hash;
+		}
+
+		@Override
+		protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+			try {
+				return super.loadClass(name, resolve);
+			}
+			catch (ClassNotFoundException e) {
+				// dependencies on other shared libraries (never holding the lock of this loader)
+				for (LibraryLoader peer : this.peers) {
+					Class<?> clazz = peer.findOwnClass(name);
+					if (clazz != null) {
+						return clazz;
+					}
+				}
+				throw e;
+			}
+		}
+
+		@Override
+		protected Class<?> findClass(String name) throws ClassNotFoundException {
+			Class<?> clazz = super.findClass(name);
+			this.classCount.incrementAndGet();
+			return clazz;
+		}
+
+		/*
+		 * Returns the class if it is contained in the library, without delegating to the
+		 * parent or to the peers.
+		 */
+		Class<?> findOwnClass(String name) {
+			synchronized (getClassLoadingLock(name)) {
+				Class<?> clazz = findLoadedClass(name);
+				if (clazz == null) {
+					try {
+						clazz = findClass(name);
+					}
+					catch (ClassNotFoundException e) {
+						return null;
+					}
+				}
+				return clazz;
+			}
+		}
+
+	}
+
+}
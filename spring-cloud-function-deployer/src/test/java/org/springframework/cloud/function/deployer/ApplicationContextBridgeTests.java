@@ -0,0 +1,63 @@
+/*
+ * Copyright 2020-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.function.deployer;
+
+import java.io.File;
+import java.lang.reflect.Type;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+import org.springframework.boot.loader.archive.JarFileArchive;
+import org.springframework.boot.loader.jar.JarFile;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs {@link ApplicationContextBridge} against the context of a deployed archive.
+ *
+ * @author agent
+ */
+public class ApplicationContextBridgeTests {
+
+	@Test
+	public void bridgesToContextOfArchive() throws Exception {
+		JarFile.registerUrlProtocolHandler();
+		FunctionArchiveDeployer deployer = new FunctionArchiveDeployer(
+				new JarFileArchive(new File("target/it/bootapp/target/bootapp-1.0.0.RELEASE-exec.jar")));
+		deployer.deploy(new FunctionDeployerProperties(), new String[0], false);
+		ApplicationContextBridge bridge = deployer.getApplicationContext();
+		try {
+			assertThat(bridge.getBeansOfType(Function.class)).containsKeys("uppercase", "uppercasePerson");
+			Object uppercase = bridge.getBeansOfType(Function.class).get("uppercase");
+			// loaded by the archive loader rather than by the loader of the test
+			assertThat(uppercase.getClass().getClassLoader()).isNotSameAs(getClass().getClassLoader());
+
+			Type type = bridge.findType("uppercase");
+			assertThat(type.getTypeName())
+					.isEqualTo("java.util.function.Function<java.lang.String, java.lang.String>");
+			// the archive does not package spring-cloud-function, hence no index to validate
+			assertThat(bridge.findSource("uppercase")).isNull();
+			assertThat(bridge.isRunning()).isTrue();
+		}
+		finally {
+			deployer.undeploy();
+		}
+		assertThat(bridge.isRunning()).isFalse();
+	}
+
+}
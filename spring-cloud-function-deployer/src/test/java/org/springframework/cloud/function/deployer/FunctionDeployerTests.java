@@ -16,7 +16,12 @@
 
 package org.springframework.cloud.function.deployer;
 
+import java.io.File;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Function;
@@ -31,10 +36,13 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.function.context.FunctionCatalog;
 import org.springframework.context.ApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.FileSystemUtils;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 /**
  *
@@ -362,6 +370,93 @@ public class FunctionDeployerTests {
 		assertThat(result2.get(1)).isEqualTo("2");
 	}
 
+	/*
+	 * Both archives package identical copies of slf4j and logback (via spring-boot-starter), the
+	 * function of the second one is discovered from its manifest
+	 */
+	@Test
+	public void testMultipleArchivesWithSharedLibraries() {
+		String[] args = new String[] {
+				"--spring.cloud.function.location=target/it/bootapp/target/bootapp-1.0.0.RELEASE-exec.jar,"
+						+ "target/it/bootjarnostart/target/bootjarnostart-1.0.0.RELEASE-exec.jar",
+				"--spring.cloud.function.shared-libraries=slf4j-api-*,logback-*"
+		};
+		ApplicationContext context = SpringApplication.run(DeployerApplication.class, args);
+		FunctionCatalog catalog = context.getBean(FunctionCatalog.class);
+
+		Function<Message<byte[]>, Message<byte[]>> uppercase = catalog.lookup("uppercase", "application/json");
+		Message<byte[]> result = uppercase
+				.apply(MessageBuilder.withPayload("\"bob\"".getBytes(StandardCharsets.UTF_8)).build());
+		assertThat(new String(result.getPayload(), StandardCharsets.UTF_8)).isEqualTo("\"BOB\"");
+
+		Function<String, String> upperCaseFunction = catalog.lookup("upperCaseFunction");
+		assertThat(upperCaseFunction.apply("stacy")).isEqualTo("STACY");
+
+		FunctionDeploymentReport report = context.getBean(FunctionDeploymentReport.class);
+		assertThat(report.getDeploymentTimes()).containsKeys(
+				new File("target/it/bootapp/target/bootapp-1.0.0.RELEASE-exec.jar").getAbsolutePath(),
+				new File("target/it/bootjarnostart/target/bootjarnostart-1.0.0.RELEASE-exec.jar").getAbsolutePath());
+		assertThat(report.getSharedClassCount()).isPositive();
+		assertThat(report.getSavedClassCount()).isPositive();
+	}
+
+	@Test
+	public void testHotDeploy() throws Exception {
+		Path directory = Files.createTempDirectory("functions");
+		this.hotDeploy(directory, directory.resolve("function.jar"));
+	}
+
+	/*
+	 * The watcher reports absolute paths, so the previous version is only retired if the
+	 * location is resolved to the same one
+	 */
+	@Test
+	public void testHotDeployWithRelativeLocation() throws Exception {
+		Path directory = Files.createTempDirectory(Paths.get("target"), "functions");
+		Path relativeDirectory = Paths.get("").toAbsolutePath().relativize(directory.toAbsolutePath());
+		this.hotDeploy(directory, relativeDirectory.resolve("..").resolve(relativeDirectory.getFileName())
+				.resolve("function.jar"));
+	}
+
+	@Test
+	public void testRelativeLocationsAreNormalized() {
+		String location = "target/it/../it/bootjarnostart/target/bootjarnostart-1.0.0.RELEASE-exec.jar";
+		assertThat(FunctionArchiveDeployments.resolveLocations(location)).containsExactly(
+				new File("target/it/bootjarnostart/target/bootjarnostart-1.0.0.RELEASE-exec.jar").getAbsoluteFile());
+	}
+
+	private void hotDeploy(Path directory, Path archive) throws Exception {
+		Path source = Paths.get("target/it/bootjarnostart/target/bootjarnostart-1.0.0.RELEASE-exec.jar");
+		Files.copy(source, archive);
+		String[] args = new String[] {
+				"--spring.cloud.function.location=" + archive,
+				"--spring.cloud.function.hot-deploy=true",
+				"--spring.cloud.function.drain-timeout=1s"
+		};
+		ConfigurableApplicationContext context = SpringApplication.run(DeployerApplication.class, args);
+		FunctionCatalog catalog = context.getBean(FunctionCatalog.class);
+		Function<String, String> upperCaseFunction = catalog.lookup("upperCaseFunction");
+		try {
+			assertThat(upperCaseFunction.apply("stacy")).isEqualTo("STACY");
+
+			Files.copy(source, archive, StandardCopyOption.REPLACE_EXISTING);
+			Function<String, String> redeployed = upperCaseFunction;
+			for (int i = 0; i < 200 && redeployed == upperCaseFunction; i++) {
+				Thread.sleep(50);
+				redeployed = catalog.lookup("upperCaseFunction");
+			}
+			assertThat(redeployed).isNotSameAs(upperCaseFunction);
+			assertThat(redeployed.apply("stacy")).isEqualTo("STACY");
+			// references to the previous version forward to the new one
+			assertThat(upperCaseFunction.apply("bob")).isEqualTo("BOB");
+		}
+		finally {
+			context.close();
+			FileSystemUtils.deleteRecursively(directory);
+		}
+		assertThatThrownBy(() -> upperCaseFunction.apply("bob")).hasStackTraceContaining("no longer available");
+	}
+
 	@SpringBootApplication(proxyBeanMethods = false)
 	private static class DeployerApplication {
 	}
@@ -19,6 +19,10 @@ package org.springframework.cloud.function.web;
 import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -45,27 +49,47 @@ import org.springframework.cloud.function.context.config.RoutingFunction;
 import org.springframework.cloud.function.context.message.MessageUtils;
 import org.springframework.cloud.function.core.FluxConsumer;
 import org.springframework.cloud.function.core.FluxedConsumer;
+import org.springframework.cloud.function.json.GsonMapper;
+import org.springframework.cloud.function.json.JacksonMapper;
 import org.springframework.cloud.function.json.JsonMapper;
 import org.springframework.cloud.function.web.util.HeaderUtils;
 import org.springframework.core.MethodParameter;
 import org.springframework.core.ReactiveAdapter;
 import org.springframework.core.ReactiveAdapterRegistry;
 import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.Decoder;
 import org.springframework.core.codec.DecodingException;
+import org.springframework.core.codec.Encoder;
 import org.springframework.core.codec.Hints;
+import org.springframework.core.codec.StringDecoder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.ResponseEntity.BodyBuilder;
+import org.springframework.http.codec.DecoderHttpMessageReader;
+import org.springframework.http.codec.EncoderHttpMessageWriter;
 import org.springframework.http.codec.HttpMessageReader;
+import org.springframework.http.codec.HttpMessageWriter;
 import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.http.codec.json.AbstractJackson2Decoder;
+import org.springframework.http.codec.json.AbstractJackson2Encoder;
 import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.messaging.Message;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
 import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
 import org.springframework.util.MultiValueMap;
 import org.springframework.util.ReflectionUtils;
+import org.springframework.util.StringUtils;
 import org.springframework.web.server.ServerWebExchange;
 import org.springframework.web.server.ServerWebInputException;
 import org.springframework.web.server.UnsupportedMediaTypeStatusException;
@@ -76,8 +100,30 @@ import org.springframework.web.server.UnsupportedMediaTypeStatusException;
  */
 public class RequestProcessor {
 
+	/**
+	 * String equivalent of {@link #APPLICATION_NDJSON}.
+	 */
+	public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+	/**
+	 * New line delimited JSON media type.
+	 */
+	public static final MediaType APPLICATION_NDJSON = MediaType.valueOf(APPLICATION_NDJSON_VALUE);
+
 	private static Log logger = LogFactory.getLog(RequestProcessor.class);
 
+	private static final DataBufferFactory BUFFER_FACTORY = new DefaultDataBufferFactory();
+
+	private static final byte[] START_ARRAY = {'['};
+
+	private static final byte[] END_ARRAY = {']'};
+
+	private static final byte[] COMMA = {','};
+
+	private static final byte[] NEW_LINE = {'\n'};
+
+	private static final StringDecoder LINE_DECODER = StringDecoder.textPlainOnly();
+
 	private final FunctionInspector inspector;
 
 	private final FunctionCatalog functionCatalog;
@@ -88,6 +134,10 @@ public class RequestProcessor {
 
 	private final List<HttpMessageReader<?>> messageReaders;
 
+	private final Decoder<?> jsonDecoder;
+
+	private final Encoder<Object> jsonEncoder;
+
 	public RequestProcessor(FunctionInspector inspector,
 			FunctionCatalog functionCatalog,
 			ObjectProvider<JsonMapper> mapper, StringConverter converter,
@@ -98,6 +148,8 @@ public class RequestProcessor {
 		this.converter = converter;
 		ServerCodecConfigurer source = codecs.getIfAvailable();
 		this.messageReaders = source == null ? null : source.getReaders();
+		this.jsonDecoder = this.messageReaders == null ? null : jsonDecoder(this.messageReaders);
+		this.jsonEncoder = source == null ? null : jsonEncoder(source.getWriters());
 	}
 
 	public static FunctionWrapper wrapper(
@@ -131,6 +183,157 @@ public class RequestProcessor {
 				.flatMap(body -> response(wrapper, body, false));
 	}
 
+	/**
+	 * Same as {@link #post(FunctionWrapper, String, boolean)}, except that top-level JSON
+	 * array posted to a function which accepts {@link Flux} of items is decoded
+	 * incrementally (as it is being received) and each item is passed to the function
+	 * as soon as it is decoded, so memory is bounded by the size of an item rather than
+	 * the size of the request. Not applicable to streamed responses.
+	 * @param wrapper the function wrapper
+	 * @param exchange the current exchange
+	 * @param stream whether the response should be streamed
+	 * @return the response
+	 */
+	public Mono<ResponseEntity<?>> postBody(FunctionWrapper wrapper, ServerWebExchange exchange,
+			boolean stream) {
+		MediaType contentType = exchange.getRequest().getHeaders().getContentType();
+		Charset charset = contentType == null || contentType.getCharset() == null
+				? StandardCharsets.UTF_8 : contentType.getCharset();
+		Flux<DataBuffer> body = exchange.getRequest().getBody();
+		if (this.isBinaryInput(wrapper.handler())) {
+			return DataBufferUtils.join(body).map(buffer -> Optional.of(bytes(buffer)))
+					.defaultIfEmpty(Optional.empty())
+					.flatMap(content -> this.postBytes(wrapper, content.orElse(null), stream));
+		}
+		if (isJsonLines(contentType)) {
+			return this.postJsonLines(wrapper, body, stream);
+		}
+		// streamed (e.g., event stream) responses subscribe to the output twice (see stream(..)),
+		// while the body can only be switched on its first buffer once
+		if (stream || this.jsonDecoder == null || contentType == null
+				|| !MediaType.APPLICATION_JSON.isCompatibleWith(contentType)
+				|| !this.isItemStreamingSupported(wrapper.handler())
+				|| !Flux.class.equals(this.inspector.getInputWrapper(wrapper.handler()))) {
+			return this.post(wrapper, body, charset, stream);
+		}
+		ResolvableType itemType = ResolvableType.forType(getItemType(wrapper.handler()));
+		return body.switchOnFirst((first, buffers) -> {
+			if (first.hasValue() && isJsonArray(first.get())) {
+				Flux<?> items = this.jsonDecoder.decode(buffers, itemType, MediaType.APPLICATION_JSON,
+						Hints.from(Hints.LOG_PREFIX_HINT, exchange.getLogPrefix()));
+				return response(wrapper, items, false, stream);
+			}
+			return this.post(wrapper, buffers, charset, stream);
+		}).next();
+	}
+
+	/**
+	 * Posts new line delimited JSON (e.g., {@value #APPLICATION_NDJSON_VALUE}) to the
+	 * function. Each line is decoded as soon as it is received and, unless the function
+	 * requires the whole input (e.g., routing function or function of collection), passed
+	 * to the function right away, so memory is bounded by the size of a line rather than
+	 * the size of the request.
+	 * @param wrapper the function wrapper (content type of the request is taken from its headers)
+	 * @param body the body of the request
+	 * @param stream whether the response should be streamed
+	 * @return the response
+	 */
+	public Mono<ResponseEntity<?>> postJsonLines(FunctionWrapper wrapper, Publisher<DataBuffer> body,
+			boolean stream) {
+		Object function = wrapper.handler();
+		if (function == null) {
+			return response(wrapper, Flux.empty(), false, stream);
+		}
+		MediaType contentType = wrapper.headers().getContentType();
+		Charset charset = contentType == null || contentType.getCharset() == null
+				? StandardCharsets.UTF_8 : contentType.getCharset();
+		Type itemType = getItemType(function);
+		Flux<?> items = LINE_DECODER.decode(body, ResolvableType.forClass(String.class),
+				new MimeType(MimeTypeUtils.TEXT_PLAIN, charset), Collections.emptyMap())
+				.filter(StringUtils::hasText)
+				.map(line -> this.mapper.toObject(line, itemType));
+		if (this.isItemStreamingSupported(function)) {
+			return response(wrapper, items, false, stream);
+		}
+		return items.collectList().flatMap(list -> response(wrapper, list, stream));
+	}
+
+	/**
+	 * Returns the response with its body encoded as JSON {@link StreamedBody}, for callers
+	 * which can only write streamed body (e.g., servlet endpoint of new line delimited JSON).
+	 * @param response the response
+	 * @return the response with streamed body (or no body at all)
+	 */
+	public ResponseEntity<?> streamed(ResponseEntity<?> response) {
+		Object body = response.getBody();
+		if (body == null || body instanceof StreamedBody) {
+			return response;
+		}
+		HttpHeaders headers = new HttpHeaders();
+		headers.putAll(response.getHeaders());
+		if (headers.getContentType() == null) {
+			headers.setContentType(MediaType.APPLICATION_JSON);
+		}
+		return ResponseEntity.status(response.getStatusCode()).headers(headers)
+				.body(new StreamedBody(Flux.defer(() -> Flux.just(this.encodeValue(body)))));
+	}
+
+	private Mono<ResponseEntity<?>> post(FunctionWrapper wrapper, Flux<DataBuffer> body,
+			Charset charset, boolean stream) {
+		return DataBufferUtils.join(body).map(buffer -> {
+			String content = buffer.toString(charset);
+			DataBufferUtils.release(buffer);
+			return Optional.of(content);
+		})
+				.defaultIfEmpty(Optional.empty())
+				.flatMap(content -> this.post(wrapper, content.orElse(null), stream));
+	}
+
+	/**
+	 * Same as {@link #post(FunctionWrapper, String, boolean)}, except that the body is
+	 * passed to functions of binary input (byte[], {@link ByteBuffer} or {@link DataBuffer})
+	 * as is, rather than decoded to String (and converted back to bytes). For all other
+	 * functions (including those of a specific {@link DataBuffer} implementation, which
+	 * the body can not be wrapped in) the body is decoded with the charset of the request
+	 * content type (UTF-8 by default) and converted.
+	 * @param wrapper the function wrapper
+	 * @param body the body of the request
+	 * @param stream whether the response should be streamed
+	 * @return the response
+	 */
+	public Mono<ResponseEntity<?>> postBytes(FunctionWrapper wrapper, byte[] body,
+			boolean stream) {
+		MediaType contentType = wrapper.headers().getContentType();
+		return this.postBytes(wrapper, body, contentType == null ? null : contentType.getCharset(), stream);
+	}
+
+	/**
+	 * Same as {@link #postBytes(FunctionWrapper, byte[], boolean)}, except that the body
+	 * is decoded with the provided charset rather than the one of the content type in the
+	 * wrapper headers (e.g., when the request headers are not passed to the function).
+	 * @param wrapper the function wrapper
+	 * @param body the body of the request
+	 * @param charset the charset of the body (UTF-8 if null)
+	 * @param stream whether the response should be streamed
+	 * @return the response
+	 */
+	public Mono<ResponseEntity<?>> postBytes(FunctionWrapper wrapper, byte[] body, Charset charset,
+			boolean stream) {
+		if (body != null && this.isBinaryInput(wrapper.handler())) {
+			Class<?> inputType = this.inspector.getInputType(wrapper.handler());
+			Object input = body;
+			if (ByteBuffer.class.equals(inputType)) {
+				input = ByteBuffer.wrap(body);
+			}
+			else if (DataBuffer.class.isAssignableFrom(inputType)) {
+				input = BUFFER_FACTORY.wrap(body);
+			}
+			return response(wrapper, input, stream);
+		}
+		return this.post(wrapper, body == null ? null
+				: new String(body, charset == null ? StandardCharsets.UTF_8 : charset), stream);
+	}
+
 	public Mono<ResponseEntity<?>> post(FunctionWrapper wrapper, String body,
 			boolean stream) {
 		Object function = wrapper.handler();
@@ -166,6 +369,88 @@ public class RequestProcessor {
 		return stream(request, result);
 	}
 
+	/*
+	 * Items are only streamed to functions of individual items, since other functions
+	 * (as well as routing) require the whole input anyway. Consumers are excluded too,
+	 * since they are acknowledged before the input is consumed.
+	 */
+	private boolean isItemStreamingSupported(Object function) {
+		return function != null && !(function instanceof RoutingFunction)
+				&& !(function instanceof FluxedConsumer) && !(function instanceof FluxConsumer)
+				&& !(function instanceof FunctionInvocationWrapper && ((FunctionInvocationWrapper) function).isConsumer())
+				&& !Collection.class.isAssignableFrom(this.inspector.getInputType(function));
+	}
+
+	private boolean isBinaryInput(Object function) {
+		if (function == null || function instanceof RoutingFunction) {
+			return false;
+		}
+		Class<?> inputType = this.inspector.getInputType(function);
+		return byte[].class.equals(inputType) || ByteBuffer.class.equals(inputType)
+				|| (DataBuffer.class.isAssignableFrom(inputType) && inputType.isAssignableFrom(DefaultDataBuffer.class));
+	}
+
+	/*
+	 * The only copy of the body, made so that (pooled) buffer of the server can be
+	 * released right away rather than whenever the function is done with it.
+	 */
+	private static byte[] bytes(DataBuffer buffer) {
+		try {
+			byte[] bytes = new byte[buffer.readableByteCount()];
+			buffer.read(bytes);
+			return bytes;
+		}
+		finally {
+			DataBufferUtils.release(buffer);
+		}
+	}
+
+	private static boolean isJsonLines(MediaType contentType) {
+		return contentType != null && (APPLICATION_NDJSON.equalsTypeAndSubtype(contentType)
+				|| MediaType.APPLICATION_STREAM_JSON.equalsTypeAndSubtype(contentType));
+	}
+
+	private static boolean isJsonArray(DataBuffer buffer) {
+		for (int i = buffer.readPosition(); i < buffer.writePosition(); i++) {
+			byte b = buffer.getByte(i);
+			if (!Character.isWhitespace(b)) {
+				return b == '[';
+			}
+		}
+		return false;
+	}
+
+	/*
+	 * Jackson decoder tokenizes top-level JSON array into individual elements with
+	 * non-blocking parser.
+	 */
+	private static Decoder<?> jsonDecoder(List<HttpMessageReader<?>> readers) {
+		if (!ClassUtils.isPresent("com.fasterxml.jackson.databind.ObjectMapper", null)) {
+			return null;
+		}
+		for (HttpMessageReader<?> reader : readers) {
+			if (reader instanceof DecoderHttpMessageReader
+					&& ((DecoderHttpMessageReader<?>) reader).getDecoder() instanceof AbstractJackson2Decoder) {
+				return ((DecoderHttpMessageReader<?>) reader).getDecoder();
+			}
+		}
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Encoder<Object> jsonEncoder(List<HttpMessageWriter<?>> writers) {
+		if (!ClassUtils.isPresent("com.fasterxml.jackson.databind.ObjectMapper", null)) {
+			return null;
+		}
+		for (HttpMessageWriter<?> writer : writers) {
+			if (writer instanceof EncoderHttpMessageWriter
+					&& ((EncoderHttpMessageWriter<?>) writer).getEncoder() instanceof AbstractJackson2Encoder) {
+				return (Encoder<Object>) ((EncoderHttpMessageWriter<?>) writer).getEncoder();
+			}
+		}
+		return null;
+	}
+
 	private boolean shouldUseJsonConversion(String body, MediaType contentType) {
 		return (body.startsWith("[") || body.startsWith("{"))
 				&& (contentType == null || (contentType != null
@@ -196,17 +481,95 @@ public class RequestProcessor {
 		}
 
 		if (result instanceof Flux) {
+			MediaType streamingType = this.getStreamingOutputType(request, handler);
+			if (streamingType != null) {
+				builder.contentType(streamingType);
+				return Mono.just(builder.body(new StreamedBody(this.encode(Flux.from(result), streamingType))));
+			}
 			result = Flux.from(result).collectList();
 		}
 		return Mono.from(result).flatMap(body -> Mono.just(builder.body(body)));
 	}
 
-	@SuppressWarnings({ "rawtypes", "unchecked" })
+	/*
+	 * Multiple values are streamed as JSON array (or new line delimited JSON) if the
+	 * caller supports writing of streamed body, unless values are messages, since
+	 * message headers become response headers which can only be sent before the body.
+	 * Unless the client asks otherwise, new line delimited JSON is answered in kind.
+	 */
+	private MediaType getStreamingOutputType(FunctionWrapper wrapper, Object handler) {
+		if (!wrapper.streamingOutput() || !this.isJsonEncodingSupported()
+				|| this.inspector.isMessage(handler)) {
+			return null;
+		}
+		MediaType contentType = wrapper.headers().getContentType();
+		MediaType defaultType = !isJsonLines(contentType) ? MediaType.APPLICATION_JSON
+				: (APPLICATION_NDJSON.equalsTypeAndSubtype(contentType) ? APPLICATION_NDJSON
+						: MediaType.APPLICATION_STREAM_JSON);
+		List<MediaType> acceptableTypes = new ArrayList<>(wrapper.headers().getAccept());
+		if (acceptableTypes.isEmpty()) {
+			return defaultType;
+		}
+		MediaType.sortBySpecificityAndQuality(acceptableTypes);
+		for (MediaType acceptableType : acceptableTypes) {
+			if (APPLICATION_NDJSON.equalsTypeAndSubtype(acceptableType)) {
+				return APPLICATION_NDJSON;
+			}
+			else if (MediaType.APPLICATION_STREAM_JSON.equalsTypeAndSubtype(acceptableType)) {
+				return MediaType.APPLICATION_STREAM_JSON;
+			}
+			else if (acceptableType.includes(defaultType)) {
+				return defaultType;
+			}
+			else if (acceptableType.includes(MediaType.APPLICATION_JSON)) {
+				return MediaType.APPLICATION_JSON;
+			}
+		}
+		return null;
+	}
+
+	/*
+	 * Each value is encoded (and written) as soon as it is produced, so demand of the
+	 * connection propagates to the function. JSON array is encoded the same way as the
+	 * collected list of values would be. Nothing is emitted before the first value (or
+	 * completion), so the response is not committed if the function fails right away.
+	 */
+	private Flux<DataBuffer> encode(Flux<?> values, MediaType mediaType) {
+		if (!MediaType.APPLICATION_JSON.equals(mediaType)) {
+			return values.concatMap(value -> Flux.just(this.encodeValue(value), wrap(NEW_LINE)));
+		}
+		return values.index()
+				.concatMap(indexed -> Flux.just(wrap(indexed.getT1() == 0 ? START_ARRAY : COMMA),
+						this.encodeValue(indexed.getT2())))
+				.switchIfEmpty(Mono.fromSupplier(() -> wrap(START_ARRAY)))
+				.concatWith(Mono.fromSupplier(() -> wrap(END_ARRAY)));
+	}
+
+	private DataBuffer encodeValue(Object value) {
+		if (this.jsonEncoder == null) {
+			Assert.state(this.isJsonEncodingSupported(), "Streamed body requires a JSON encoder (or mapper)");
+			return wrap(this.mapper.toString(value).getBytes(StandardCharsets.UTF_8));
+		}
+		return this.jsonEncoder.encodeValue(value, BUFFER_FACTORY, ResolvableType.forInstance(value),
+				MediaType.APPLICATION_JSON, Collections.emptyMap());
+	}
+
+	/*
+	 * Without a JSON encoder only the JSON mappers which are known to encode every value
+	 * (including plain String) as JSON are used, since the contract of JsonMapper does not
+	 * require it.
+	 */
+	private boolean isJsonEncodingSupported() {
+		return this.jsonEncoder != null || this.mapper instanceof JacksonMapper || this.mapper instanceof GsonMapper;
+	}
+
+	private static DataBuffer wrap(byte[] bytes) {
+		return BUFFER_FACTORY.wrap(bytes);
+	}
+
 	private Mono<ResponseEntity<?>> response(FunctionWrapper wrapper, Object body,
 			boolean stream) {
 
-		Function function = wrapper.function();
-
 		Flux<?> flux;
 		if (body != null) {
 			if (Collection.class
@@ -231,6 +594,15 @@ public class RequestProcessor {
 							+ "`");
 		}
 
+		return response(wrapper, flux, body == null ? null : !(body instanceof Collection), stream);
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private Mono<ResponseEntity<?>> response(FunctionWrapper wrapper, Flux<?> flux, Boolean single,
+			boolean stream) {
+
+		Function function = wrapper.function();
+
 		if (this.inspector.isMessage(function)) {
 			flux = messages(wrapper, function, flux);
 		}
@@ -263,7 +635,7 @@ public class RequestProcessor {
 				}
 				else {
 					responseEntityMono = response(wrapper, getTargetIfRouting(wrapper, function), result,
-							body == null ? null : !(body instanceof Collection), false);
+							single, false);
 				}
 			}
 		}
@@ -275,7 +647,7 @@ public class RequestProcessor {
 			}
 			else {
 				responseEntityMono = response(wrapper, getTargetIfRouting(wrapper, function), result,
-						body == null ? null : !(body instanceof Collection), false);
+						single, false);
 			}
 		}
 		return responseEntityMono;
@@ -474,6 +846,8 @@ public class RequestProcessor {
 
 		private Publisher<String> argument;
 
+		private boolean streamingOutput;
+
 		@SuppressWarnings("unchecked")
 		public FunctionWrapper(
 				Function<? extends Publisher<?>, ? extends Publisher<?>> function,
@@ -528,6 +902,39 @@ public class RequestProcessor {
 			return this.argument;
 		}
 
+		/**
+		 * Whether multiple output values may be returned as {@link StreamedBody} (which the
+		 * caller is then responsible to write) rather than collected into a list.
+		 * @param streamingOutput true if the caller supports {@link StreamedBody}
+		 * @return this wrapper
+		 */
+		public FunctionWrapper streamingOutput(boolean streamingOutput) {
+			this.streamingOutput = streamingOutput;
+			return this;
+		}
+
+		public boolean streamingOutput() {
+			return this.streamingOutput;
+		}
+
+	}
+
+	/**
+	 * Response body which is already encoded and is written as it is being produced.
+	 * Content type of the response identifies the encoding.
+	 */
+	public static final class StreamedBody {
+
+		private final Flux<DataBuffer> content;
+
+		StreamedBody(Flux<DataBuffer> content) {
+			this.content = content;
+		}
+
+		public Flux<DataBuffer> getContent() {
+			return this.content;
+		}
+
 	}
 
 }
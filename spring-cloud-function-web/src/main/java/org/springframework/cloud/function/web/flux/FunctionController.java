@@ -21,15 +21,19 @@ import java.util.function.Function;
 import java.util.function.Supplier;
 
 import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import org.springframework.cloud.function.web.RequestProcessor;
 import org.springframework.cloud.function.web.RequestProcessor.FunctionWrapper;
+import org.springframework.cloud.function.web.RequestProcessor.StreamedBody;
 import org.springframework.cloud.function.web.constants.WebRequestConstants;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.codec.multipart.FormFieldPart;
 import org.springframework.http.codec.multipart.Part;
+import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.stereotype.Component;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
@@ -57,7 +61,8 @@ public class FunctionController {
 	public Mono<ResponseEntity<?>> form(ServerWebExchange request) {
 		FunctionWrapper wrapper = wrapper(request);
 		return request.getFormData().doOnSuccess(params -> wrapper.params(params))
-				.then(Mono.defer(() -> this.processor.post(wrapper, null, false)));
+				.then(Mono.defer(() -> this.processor.post(wrapper, null, false)))
+				.flatMap(response -> write(request, response));
 	}
 
 	@PostMapping(path = "/**", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
@@ -66,7 +71,8 @@ public class FunctionController {
 		FunctionWrapper wrapper = wrapper(request);
 		return request.getMultipartData()
 				.doOnSuccess(params -> wrapper.params(multi(params)))
-				.then(Mono.defer(() -> this.processor.post(wrapper, null, false)));
+				.then(Mono.defer(() -> this.processor.post(wrapper, null, false)))
+				.flatMap(response -> write(request, response));
 	}
 
 	private MultiValueMap<String, String> multi(MultiValueMap<String, Part> body) {
@@ -86,30 +92,51 @@ public class FunctionController {
 	@ResponseBody
 	public Mono<ResponseEntity<?>> post(ServerWebExchange request) {
 		FunctionWrapper wrapper = wrapper(request);
-		return this.processor.post(wrapper, request);
+		return this.processor.post(wrapper, request)
+				.flatMap(response -> write(request, response));
 	}
 
 	@PostMapping(path = "/**")
 	@ResponseBody
 	public Mono<ResponseEntity<?>> post(ServerWebExchange request,
-			@RequestBody(required = false) String body) {
+			@RequestBody(required = false) byte[] body) {
 		FunctionWrapper wrapper = wrapper(request);
-		return this.processor.post(wrapper, body, false);
+		return this.processor.postBytes(wrapper, body, false)
+				.flatMap(response -> write(request, response));
 	}
 
 	@PostMapping(path = "/**", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
 	@ResponseBody
 	public Mono<ResponseEntity<?>> postStream(ServerWebExchange request,
-			@RequestBody(required = false) String body) {
+			@RequestBody(required = false) byte[] body) {
 		FunctionWrapper wrapper = wrapper(request);
-		return this.processor.post(wrapper, body, true);
+		return this.processor.postBytes(wrapper, body, true);
+	}
+
+	@PostMapping(path = "/**", consumes = { MediaType.APPLICATION_JSON_VALUE,
+			RequestProcessor.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_STREAM_JSON_VALUE })
+	@ResponseBody
+	public Mono<ResponseEntity<?>> postJson(ServerWebExchange request) {
+		FunctionWrapper wrapper = wrapper(request);
+		return this.processor.postBody(wrapper, request, false)
+				.flatMap(response -> write(request, response));
+	}
+
+	@PostMapping(path = "/**", consumes = { MediaType.APPLICATION_JSON_VALUE,
+			RequestProcessor.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_STREAM_JSON_VALUE },
+			produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+	@ResponseBody
+	public Mono<ResponseEntity<?>> postJsonStream(ServerWebExchange request) {
+		FunctionWrapper wrapper = wrapper(request);
+		return this.processor.postBody(wrapper, request, true);
 	}
 
 	@GetMapping(path = "/**")
 	@ResponseBody
 	public Mono<ResponseEntity<?>> get(ServerWebExchange request) {
 		FunctionWrapper wrapper = wrapper(request);
-		return this.processor.get(wrapper);
+		return this.processor.get(wrapper)
+				.flatMap(response -> write(request, response));
 	}
 
 	@GetMapping(path = "/**", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
@@ -119,6 +146,27 @@ public class FunctionController {
 		return this.processor.stream(wrapper);
 	}
 
+	/*
+	 * Streamed body is already encoded, hence it is written as is. Status and headers are
+	 * only applied once the first buffer is produced, so a function failing before that
+	 * is answered with the error status (the response is not committed yet).
+	 */
+	private Mono<ResponseEntity<?>> write(ServerWebExchange exchange, ResponseEntity<?> response) {
+		if (response.getBody() instanceof StreamedBody) {
+			ServerHttpResponse httpResponse = exchange.getResponse();
+			Flux<DataBuffer> content = ((StreamedBody) response.getBody()).getContent()
+					.switchOnFirst((first, buffers) -> {
+						if (!first.isOnError()) {
+							httpResponse.setStatusCode(response.getStatusCode());
+							httpResponse.getHeaders().putAll(response.getHeaders());
+						}
+						return buffers;
+					});
+			return httpResponse.writeWith(content).then(Mono.empty());
+		}
+		return Mono.just(response);
+	}
+
 	private FunctionWrapper wrapper(ServerWebExchange request) {
 		@SuppressWarnings("unchecked")
 		Function<Publisher<?>, Publisher<?>> function = (Function<Publisher<?>, Publisher<?>>) request
@@ -130,6 +178,7 @@ public class FunctionController {
 		Supplier<Publisher<?>> supplier = (Supplier<Publisher<?>>) request
 				.getAttribute(WebRequestConstants.SUPPLIER);
 		FunctionWrapper wrapper = RequestProcessor.wrapper(function, consumer, supplier);
+		wrapper.streamingOutput(true);
 		wrapper.headers(request.getRequest().getHeaders());
 		wrapper.params(request.getRequest().getQueryParams());
 		String argument = (String) request.getAttribute(WebRequestConstants.ARGUMENT);
@@ -25,7 +25,7 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.cloud.function.context.FunctionCatalog;
 import org.springframework.cloud.function.web.constants.WebRequestConstants;
-import org.springframework.cloud.function.web.util.FunctionWebUtils;
+import org.springframework.cloud.function.web.util.FunctionRouteIndex;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.util.StringUtils;
 import org.springframework.web.method.HandlerMethod;
@@ -41,7 +41,7 @@ import org.springframework.web.server.ServerWebExchange;
 public class FunctionHandlerMapping extends RequestMappingHandlerMapping
 		implements InitializingBean {
 
-	private final FunctionCatalog functions;
+	private final FunctionRouteIndex routes;
 
 	private final FunctionController controller;
 
@@ -50,8 +50,8 @@ public class FunctionHandlerMapping extends RequestMappingHandlerMapping
 
 	@Autowired
 	public FunctionHandlerMapping(FunctionCatalog catalog,
-			FunctionController controller) {
-		this.functions = catalog;
+			FunctionController controller, FunctionRouteIndex routes) {
+		this.routes = routes;
 		this.logger.info("FunctionCatalog: " + catalog);
 		setOrder(super.getOrder() - 5);
 		this.controller = controller;
@@ -79,8 +79,8 @@ public class FunctionHandlerMapping extends RequestMappingHandlerMapping
 		if (path.startsWith(this.prefix)) {
 			path = path.substring(this.prefix.length());
 		}
-		Object function = FunctionWebUtils
-				.findFunction(request.getRequest().getMethod(), this.functions, request.getAttributes(), path);
+		Object function = this.routes
+				.findFunction(request.getRequest().getMethod(), request.getAttributes(), path);
 
 		if (function != null) {
 			if (this.logger.isDebugEnabled()) {
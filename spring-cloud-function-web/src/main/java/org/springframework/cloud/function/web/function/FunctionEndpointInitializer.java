@@ -17,6 +17,7 @@
 package org.springframework.cloud.function.web.function;
 
 import java.lang.management.ManagementFactory;
+import java.nio.charset.Charset;
 import java.time.Duration;
 import java.util.Set;
 import java.util.function.Function;
@@ -42,8 +43,9 @@ import org.springframework.cloud.function.json.JsonMapper;
 import org.springframework.cloud.function.web.BasicStringConverter;
 import org.springframework.cloud.function.web.RequestProcessor;
 import org.springframework.cloud.function.web.RequestProcessor.FunctionWrapper;
+import org.springframework.cloud.function.web.RequestProcessor.StreamedBody;
 import org.springframework.cloud.function.web.StringConverter;
-import org.springframework.cloud.function.web.util.FunctionWebUtils;
+import org.springframework.cloud.function.web.util.FunctionRouteIndex;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextInitializer;
 import org.springframework.context.ApplicationEvent;
@@ -51,12 +53,15 @@ import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.context.event.SmartApplicationListener;
 import org.springframework.context.support.GenericApplicationContext;
 import org.springframework.core.env.Environment;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.codec.ServerCodecConfigurer;
 import org.springframework.http.server.reactive.HttpHandler;
 import org.springframework.http.server.reactive.ReactorHttpHandlerAdapter;
 import org.springframework.util.Assert;
 import org.springframework.util.ClassUtils;
+import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.server.HandlerStrategies;
 import org.springframework.web.reactive.function.server.RouterFunction;
 import org.springframework.web.reactive.function.server.RouterFunctions;
@@ -104,10 +109,12 @@ class FunctionEndpointInitializer implements ApplicationContextInitializer<Gener
 						context.getBean(FunctionCatalog.class),
 						context.getBeanProvider(JsonMapper.class), context.getBean(StringConverter.class),
 						context.getBeanProvider(ServerCodecConfigurer.class)));
+		context.registerBean(FunctionRouteIndex.class,
+				() -> new FunctionRouteIndex(context.getBean(FunctionCatalog.class)));
 		context.registerBean(FunctionEndpointFactory.class,
 				() -> new FunctionEndpointFactory(context.getBean(FunctionCatalog.class),
 						context.getBean(FunctionInspector.class), context.getBean(RequestProcessor.class),
-						context.getEnvironment()));
+						context.getBean(FunctionRouteIndex.class), context.getEnvironment()));
 		context.registerBean(RouterFunction.class,
 				() -> context.getBean(FunctionEndpointFactory.class).functionEndpoints());
 	}
@@ -197,8 +204,10 @@ class FunctionEndpointFactory {
 
 	private final RequestProcessor processor;
 
+	private final FunctionRouteIndex routes;
+
 	FunctionEndpointFactory(FunctionCatalog functionCatalog, FunctionInspector inspector, RequestProcessor processor,
-			Environment environment) {
+			FunctionRouteIndex routes, Environment environment) {
 		String handler = environment.resolvePlaceholders("${function.handler}");
 		if (handler.startsWith("$")) {
 			handler = null;
@@ -206,6 +215,7 @@ class FunctionEndpointFactory {
 		this.processor = processor;
 		this.inspector = inspector;
 		this.functionCatalog = functionCatalog;
+		this.routes = routes;
 		this.handler = handler;
 	}
 
@@ -219,7 +229,7 @@ class FunctionEndpointFactory {
 			function = this.functionCatalog.lookup(Function.class, handler);
 		}
 		else {
-			function = (Function<Flux<?>, Flux<?>>) FunctionWebUtils.findFunction(request.method(), functionCatalog,
+			function = (Function<Flux<?>, Flux<?>>) this.routes.findFunction(request.method(),
 					request.attributes(), request.path());
 		}
 		return function;
@@ -231,13 +241,32 @@ class FunctionEndpointFactory {
 			Function<Flux<?>, Flux<?>> function = extract(request);
 			Class<T> outputType = (Class<T>) this.inspector.getOutputType(function);
 			FunctionWrapper wrapper = RequestProcessor.wrapper(function, null, null);
-			Mono<ResponseEntity<?>> stream = request.bodyToMono(String.class)
-					.flatMap(content -> this.processor.post(wrapper, content, false));
+			Mono<ResponseEntity<?>> stream;
+			if (isJsonLines(request)) {
+				wrapper.headers(request.headers().asHttpHeaders()).streamingOutput(true);
+				stream = this.processor.postJsonLines(wrapper, request.bodyToFlux(DataBuffer.class), false);
+			}
+			else {
+				// request headers are not passed to the function, only the charset is used
+				Charset charset = request.headers().contentType().map(MediaType::getCharset).orElse(null);
+				stream = request.bodyToMono(byte[].class)
+						.flatMap(content -> this.processor.postBytes(wrapper, content, charset, false));
+			}
 			return stream.flatMap(entity -> {
+				if (entity.getBody() instanceof StreamedBody) {
+					return status(entity.getStatusCode()).headers(headers -> headers.addAll(entity.getHeaders()))
+							.body(BodyInserters.fromDataBuffers(((StreamedBody) entity.getBody()).getContent()));
+				}
 				return status(entity.getStatusCode()).headers(headers -> headers.addAll(entity.getHeaders()))
 						.body(Mono.just((T) entity.getBody()), outputType);
 			});
 		});
 	}
 
+	private boolean isJsonLines(ServerRequest request) {
+		MediaType contentType = request.headers().contentType().orElse(null);
+		return contentType != null && (RequestProcessor.APPLICATION_NDJSON.equalsTypeAndSubtype(contentType)
+				|| MediaType.APPLICATION_STREAM_JSON.equalsTypeAndSubtype(contentType));
+	}
+
 }
@@ -22,12 +22,20 @@ import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
+import javax.servlet.http.HttpServletRequest;
+
 import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import org.springframework.cloud.function.web.RequestProcessor;
 import org.springframework.cloud.function.web.RequestProcessor.FunctionWrapper;
+import org.springframework.cloud.function.web.RequestProcessor.StreamedBody;
 import org.springframework.cloud.function.web.constants.WebRequestConstants;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
@@ -36,6 +44,7 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 /**
  * @author Dave Syer
@@ -44,6 +53,10 @@ import org.springframework.web.context.request.WebRequest;
 @Component
 public class FunctionController {
 
+	private static final DataBufferFactory BUFFER_FACTORY = new DefaultDataBufferFactory();
+
+	private static final int BUFFER_SIZE = 4096;
+
 	private RequestProcessor processor;
 
 	public FunctionController(RequestProcessor processor) {
@@ -61,17 +74,34 @@ public class FunctionController {
 	@PostMapping(path = "/**")
 	@ResponseBody
 	public Mono<ResponseEntity<?>> post(WebRequest request,
-			@RequestBody(required = false) String body) {
+			@RequestBody(required = false) byte[] body) {
+		FunctionWrapper wrapper = wrapper(request);
+		return this.processor.postBytes(wrapper, body, false);
+	}
+
+	/*
+	 * Request body is read (and response body is written) as the function consumes
+	 * (and produces) individual lines, on the thread of the streaming response body.
+	 */
+	@PostMapping(path = "/**", consumes = { RequestProcessor.APPLICATION_NDJSON_VALUE,
+			MediaType.APPLICATION_STREAM_JSON_VALUE })
+	@ResponseBody
+	public Mono<ResponseEntity<StreamingResponseBody>> postJsonLines(WebRequest request,
+			HttpServletRequest servletRequest) {
 		FunctionWrapper wrapper = wrapper(request);
-		return this.processor.post(wrapper, body, false);
+		wrapper.streamingOutput(true);
+		Flux<DataBuffer> body = DataBufferUtils.readInputStream(servletRequest::getInputStream,
+				BUFFER_FACTORY, BUFFER_SIZE);
+		return this.processor.postJsonLines(wrapper, body, false)
+				.map(response -> write(this.processor.streamed(response)));
 	}
 
 	@PostMapping(path = "/**", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
 	@ResponseBody
 	public Mono<ResponseEntity<Publisher<?>>> postStream(WebRequest request,
-			@RequestBody(required = false) String body) {
+			@RequestBody(required = false) byte[] body) {
 		FunctionWrapper wrapper = wrapper(request);
-		return this.processor.post(wrapper, body, true)
+		return this.processor.postBytes(wrapper, body, true)
 				.map(response -> ResponseEntity.ok().headers(response.getHeaders())
 						.body((Publisher<?>) response.getBody()));
 	}
@@ -91,6 +121,28 @@ public class FunctionController {
 				.headers(response.getHeaders()).body((Publisher<?>) response.getBody()));
 	}
 
+	private ResponseEntity<StreamingResponseBody> write(ResponseEntity<?> response) {
+		ResponseEntity.BodyBuilder builder = ResponseEntity.status(response.getStatusCode())
+				.headers(response.getHeaders());
+		if (response.getBody() == null) {
+			return builder.build();
+		}
+		Flux<DataBuffer> content = ((StreamedBody) response.getBody()).getContent();
+		return builder.body(output -> {
+			for (DataBuffer buffer : content.toIterable(1)) {
+				try {
+					byte[] bytes = new byte[buffer.readableByteCount()];
+					buffer.read(bytes);
+					output.write(bytes);
+					output.flush();
+				}
+				finally {
+					DataBufferUtils.release(buffer);
+				}
+			}
+		});
+	}
+
 	private FunctionWrapper wrapper(WebRequest request) {
 		@SuppressWarnings("unchecked")
 		Function<Publisher<?>, Publisher<?>> function = (Function<Publisher<?>, Publisher<?>>) request
@@ -26,7 +26,7 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.cloud.function.context.FunctionCatalog;
 import org.springframework.cloud.function.web.constants.WebRequestConstants;
-import org.springframework.cloud.function.web.util.FunctionWebUtils;
+import org.springframework.cloud.function.web.util.FunctionRouteIndex;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
 import org.springframework.util.StringUtils;
@@ -43,7 +43,7 @@ import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandl
 public class FunctionHandlerMapping extends RequestMappingHandlerMapping
 		implements InitializingBean {
 
-	private final FunctionCatalog functions;
+	private final FunctionRouteIndex routes;
 
 	private final FunctionController controller;
 
@@ -52,8 +52,8 @@ public class FunctionHandlerMapping extends RequestMappingHandlerMapping
 
 	@Autowired
 	public FunctionHandlerMapping(FunctionCatalog catalog,
-			FunctionController controller) {
-		this.functions = catalog;
+			FunctionController controller, FunctionRouteIndex routes) {
+		this.routes = routes;
 		this.logger.info("FunctionCatalog: " + catalog);
 		setOrder(super.getOrder() - 5);
 		this.controller = controller;
@@ -91,8 +91,8 @@ public class FunctionHandlerMapping extends RequestMappingHandlerMapping
 			path = path.substring(this.prefix.length());
 		}
 
-		Object function = FunctionWebUtils.findFunction(HttpMethod.resolve(request.getMethod()),
-				this.functions, new HttpRequestAttributeDelegate(request), path);
+		Object function = this.routes.findFunction(HttpMethod.resolve(request.getMethod()),
+				new HttpRequestAttributeDelegate(request), path);
 		if (function != null) {
 			if (this.logger.isDebugEnabled()) {
 				this.logger.debug("Found function for GET: " + path);
@@ -31,6 +31,7 @@ import org.springframework.cloud.function.context.catalog.FunctionInspector;
 import org.springframework.cloud.function.web.BasicStringConverter;
 import org.springframework.cloud.function.web.RequestProcessor;
 import org.springframework.cloud.function.web.StringConverter;
+import org.springframework.cloud.function.web.util.FunctionRouteIndex;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
@@ -49,8 +50,15 @@ import org.springframework.web.method.support.AsyncHandlerMethodReturnValueHandl
 public class ReactorAutoConfiguration {
 
 	@Bean
-	public FunctionHandlerMapping functionHandlerMapping(FunctionCatalog catalog, FunctionController controller) {
-		return new FunctionHandlerMapping(catalog, controller);
+	public FunctionHandlerMapping functionHandlerMapping(FunctionCatalog catalog, FunctionController controller,
+			FunctionRouteIndex functionRouteIndex) {
+		return new FunctionHandlerMapping(catalog, controller, functionRouteIndex);
+	}
+
+	@Bean
+	@ConditionalOnMissingBean
+	public FunctionRouteIndex functionRouteIndex(FunctionCatalog catalog) {
+		return new FunctionRouteIndex(catalog);
 	}
 
 	@Bean
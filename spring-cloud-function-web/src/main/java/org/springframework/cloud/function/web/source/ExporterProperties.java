@@ -16,10 +16,12 @@
 
 package org.springframework.cloud.function.web.source;
 
+import java.time.Duration;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
 
 /**
  * @author Dave Syer
@@ -104,6 +106,58 @@ public class ExporterProperties {
 		 */
 		private boolean includeHeaders = true;
 
+		/**
+		 * How items are obtained from the source: by polling it (an item per response) or
+		 * by streaming server-sent events or new line delimited JSON over a single
+		 * connection (an item per event or line).
+		 */
+		private SourceMode mode = SourceMode.POLL;
+
+		/**
+		 * Time to wait before polling the source again after a response with content.
+		 * The source is polled again straight away by default.
+		 */
+		private Duration pollInterval = Duration.ZERO;
+
+		/**
+		 * Time to wait before polling the source again after the first failed or empty
+		 * response (error status, no content or not modified, or in stream mode a
+		 * connection which ended without any item). Doubled (see backoffMultiplier)
+		 * with every consecutive failed or empty response.
+		 */
+		private Duration minBackoff = Duration.ofSeconds(1);
+
+		/**
+		 * Maximum time to wait before polling the source again after failed or empty
+		 * responses.
+		 */
+		private Duration maxBackoff = Duration.ofSeconds(30);
+
+		/**
+		 * Factor by which the backoff grows with every consecutive failed or empty
+		 * response.
+		 */
+		private double backoffMultiplier = 2;
+
+		/**
+		 * Fraction (0 to 1) by which the backoff is randomly shortened, so sources
+		 * shared by several suppliers are not polled in lockstep.
+		 */
+		private double backoffJitter = 0.5;
+
+		/**
+		 * Flag to indicate that requests should be conditional (If-None-Match and
+		 * If-Modified-Since) when the source sends ETag or Last-Modified headers, so
+		 * unchanged resources are not transferred (and emitted) again.
+		 */
+		private boolean conditional = true;
+
+		/**
+		 * Maximum number of requests per second sent to the source. Unlimited if not
+		 * positive.
+		 */
+		private double maxRequestRate;
+
 		public String getUrl() {
 			return this.url;
 		}
@@ -128,13 +182,77 @@ public class ExporterProperties {
 			return this.includeHeaders;
 		}
 
+		public SourceMode getMode() {
+			return this.mode;
+		}
+
+		public void setMode(SourceMode mode) {
+			this.mode = mode;
+		}
+
+		public Duration getPollInterval() {
+			return this.pollInterval;
+		}
+
+		public void setPollInterval(Duration pollInterval) {
+			this.pollInterval = pollInterval;
+		}
+
+		public Duration getMinBackoff() {
+			return this.minBackoff;
+		}
+
+		public void setMinBackoff(Duration minBackoff) {
+			this.minBackoff = minBackoff;
+		}
+
+		public Duration getMaxBackoff() {
+			return this.maxBackoff;
+		}
+
+		public void setMaxBackoff(Duration maxBackoff) {
+			this.maxBackoff = maxBackoff;
+		}
+
+		public double getBackoffMultiplier() {
+			return this.backoffMultiplier;
+		}
+
+		public void setBackoffMultiplier(double backoffMultiplier) {
+			this.backoffMultiplier = backoffMultiplier;
+		}
+
+		public double getBackoffJitter() {
+			return this.backoffJitter;
+		}
+
+		public void setBackoffJitter(double backoffJitter) {
+			this.backoffJitter = backoffJitter;
+		}
+
+		public boolean isConditional() {
+			return this.conditional;
+		}
+
+		public void setConditional(boolean conditional) {
+			this.conditional = conditional;
+		}
+
+		public double getMaxRequestRate() {
+			return this.maxRequestRate;
+		}
+
+		public void setMaxRequestRate(double maxRequestRate) {
+			this.maxRequestRate = maxRequestRate;
+		}
+
 	}
 
 	public static class Sink {
 
 		/**
-		 * URL template for outgoing HTTP requests. Each item from the supplier is POSTed
-		 * to this target.
+		 * URL template for outgoing HTTP requests. Each item (or batch of items) from the
+		 * supplier is POSTed to this target.
 		 */
 		private String url;
 
@@ -148,6 +266,35 @@ public class ExporterProperties {
 		 */
 		private String name;
 
+		/**
+		 * Maximum number of items POSTed in a single request. Items are sent one by one
+		 * (as they are) by default. Larger values send items for the same destination
+		 * together in the body of a single request (see batchFormat).
+		 */
+		private int batchSize = 1;
+
+		/**
+		 * Maximum size of the body of a single batch request. Batches are split to stay
+		 * within this limit, unless they consist of a single item. Unlimited by default.
+		 */
+		private DataSize batchMaxSize;
+
+		/**
+		 * Maximum time to wait for a batch to fill up before it is sent anyway.
+		 */
+		private Duration batchLinger = Duration.ofMillis(100);
+
+		/**
+		 * Format of the body of batch requests.
+		 */
+		private BatchFormat batchFormat = BatchFormat.JSON;
+
+		/**
+		 * Maximum number of requests which are in flight (awaiting a response) at any
+		 * time. Items are not requested from the supplier while the limit is reached.
+		 */
+		private int maxInFlight = 256;
+
 		public String getName() {
 			return this.name;
 		}
@@ -168,6 +315,83 @@ public class ExporterProperties {
 			return this.headers;
 		}
 
+		public int getBatchSize() {
+			return this.batchSize;
+		}
+
+		public void setBatchSize(int batchSize) {
+			this.batchSize = batchSize;
+		}
+
+		public DataSize getBatchMaxSize() {
+			return this.batchMaxSize;
+		}
+
+		public void setBatchMaxSize(DataSize batchMaxSize) {
+			this.batchMaxSize = batchMaxSize;
+		}
+
+		public Duration getBatchLinger() {
+			return this.batchLinger;
+		}
+
+		public void setBatchLinger(Duration batchLinger) {
+			this.batchLinger = batchLinger;
+		}
+
+		public BatchFormat getBatchFormat() {
+			return this.batchFormat;
+		}
+
+		public void setBatchFormat(BatchFormat batchFormat) {
+			this.batchFormat = batchFormat;
+		}
+
+		public int getMaxInFlight() {
+			return this.maxInFlight;
+		}
+
+		public void setMaxInFlight(int maxInFlight) {
+			this.maxInFlight = maxInFlight;
+		}
+
+	}
+
+	/**
+	 * How items are obtained from a source.
+	 */
+	public enum SourceMode {
+
+		/**
+		 * Repeated requests, each response is an item.
+		 */
+		POLL,
+
+		/**
+		 * A long lived request, each server-sent event ('text/event-stream') or line of
+		 * JSON ('application/x-ndjson' or 'application/stream+json') is an item. The
+		 * request is repeated when the response completes or fails, resuming from the
+		 * last event received (Last-Event-ID).
+		 */
+		STREAM
+
+	}
+
+	/**
+	 * Format of the body of batch requests.
+	 */
+	public enum BatchFormat {
+
+		/**
+		 * A JSON array of items ('application/json').
+		 */
+		JSON,
+
+		/**
+		 * One JSON item per line ('application/x-ndjson').
+		 */
+		NDJSON
+
 	}
 
 }
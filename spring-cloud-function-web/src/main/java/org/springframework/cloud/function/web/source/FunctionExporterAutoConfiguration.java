@@ -20,6 +20,7 @@ import java.util.function.Supplier;
 
 import reactor.core.publisher.Flux;
 
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.AnyNestedCondition;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
@@ -30,6 +31,7 @@ import org.springframework.boot.context.properties.EnableConfigurationProperties
 import org.springframework.cloud.function.context.FunctionCatalog;
 import org.springframework.cloud.function.context.FunctionRegistration;
 import org.springframework.cloud.function.context.FunctionType;
+import org.springframework.cloud.function.json.JsonMapper;
 import org.springframework.cloud.function.web.source.FunctionExporterAutoConfiguration.SourceActiveCondition;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Conditional;
@@ -57,14 +59,15 @@ public class FunctionExporterAutoConfiguration {
 	@Bean
 	@ConditionalOnProperty(prefix = "spring.cloud.function.web.export.sink", name = "url")
 	public SupplierExporter sourceForwarder(RequestBuilder requestBuilder, DestinationResolver destinationResolver,
-			FunctionCatalog catalog, WebClient.Builder builder) {
-		return new SupplierExporter(requestBuilder, destinationResolver, catalog, builder.build(), this.props);
+			FunctionCatalog catalog, WebClient.Builder builder, ObjectProvider<JsonMapper> mapper) {
+		return new SupplierExporter(requestBuilder, destinationResolver, catalog, builder.build(), this.props,
+				mapper.getIfAvailable());
 	}
 
 	@Bean
 	@ConditionalOnProperty(prefix = "spring.cloud.function.web.export.source", name = "url")
-	public FunctionRegistration<Supplier<Flux<?>>> origin(WebClient.Builder builder) {
-		HttpSupplier supplier = new HttpSupplier(builder.build(), this.props);
+	public FunctionRegistration<Supplier<Flux<?>>> origin(WebClient.Builder builder, ObjectProvider<JsonMapper> mapper) {
+		HttpSupplier supplier = new HttpSupplier(builder.build(), this.props, mapper.getIfAvailable());
 		FunctionRegistration<Supplier<Flux<?>>> registration = new FunctionRegistration<>(supplier);
 		FunctionType type = FunctionType.supplier(this.props.getSource().getType()).wrap(Flux.class);
 		if (this.props.getSource().isIncludeHeaders()) {
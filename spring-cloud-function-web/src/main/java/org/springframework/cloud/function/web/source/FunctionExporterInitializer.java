@@ -21,6 +21,7 @@ import org.springframework.boot.web.reactive.context.ReactiveWebApplicationConte
 import org.springframework.cloud.function.context.FunctionCatalog;
 import org.springframework.cloud.function.context.FunctionRegistration;
 import org.springframework.cloud.function.context.config.ContextFunctionCatalogInitializer;
+import org.springframework.cloud.function.json.JsonMapper;
 import org.springframework.context.ApplicationContextInitializer;
 import org.springframework.context.support.GenericApplicationContext;
 import org.springframework.util.ClassUtils;
@@ -85,13 +86,15 @@ class FunctionExporterInitializer implements ApplicationContextInitializer<Gener
 		}
 		if (context.getEnvironment().getProperty("spring.cloud.function.web.export.source.url") != null) {
 			context.registerBean("origin", FunctionRegistration.class, () -> context
-					.getBean(FunctionExporterAutoConfiguration.class).origin(context.getBean(WebClient.Builder.class)));
+					.getBean(FunctionExporterAutoConfiguration.class).origin(context.getBean(WebClient.Builder.class),
+							context.getBeanProvider(JsonMapper.class)));
 		}
 		if (context.getEnvironment().getProperty("spring.cloud.function.web.export.sink.url") != null) {
 			context.registerBean(SupplierExporter.class,
 					() -> context.getBean(FunctionExporterAutoConfiguration.class).sourceForwarder(
 							context.getBean(RequestBuilder.class), context.getBean(DestinationResolver.class),
-							context.getBean(FunctionCatalog.class), context.getBean(WebClient.Builder.class)));
+							context.getBean(FunctionCatalog.class), context.getBean(WebClient.Builder.class),
+							context.getBeanProvider(JsonMapper.class)));
 		}
 	}
 
@@ -17,6 +17,7 @@
 package org.springframework.cloud.function.web.source;
 
 import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.function.Supplier;
 
 import org.apache.commons.logging.Log;
@@ -24,16 +25,34 @@ import org.apache.commons.logging.LogFactory;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import org.springframework.cloud.function.json.JsonMapper;
+import org.springframework.cloud.function.web.RequestProcessor;
+import org.springframework.cloud.function.web.source.ExporterProperties.SourceMode;
 import org.springframework.cloud.function.web.util.HeaderUtils;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
 import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.reactive.function.client.WebClient;
 
 /**
  * A {@link Supplier} that pulls data from an HTTP endpoint. Repeatedly polls the endpoint
- * until a non-2xx response is received, at which point it will repeatedly produced a
- * Mono at 1 sec intervals until the next 2xx response.
+ * and emits the body of every 2xx response.
+ * <br>
+ * Polling adapts to the source: failed (non-2xx or I/O error) and empty (no content or
+ * not modified) responses are followed by an exponentially growing (jittered) delay,
+ * reset by the next response with content. Requests are conditional once the source
+ * sends ETag or Last-Modified headers, and their rate can be limited.
+ * <br>
+ * In {@link SourceMode#STREAM stream mode} the endpoint is requested once and every
+ * server-sent event or line of JSON of the response is emitted as it is received. The
+ * request is repeated (with the same backoff) when the response ends, with the id of the
+ * last event received as Last-Event-ID, so the source can resume where it left off.
  *
  * @author Dave Syer
  * @author Oleg Zhurakousky
@@ -42,17 +61,35 @@ public class HttpSupplier implements Supplier<Flux<?>> {
 
 	private static Log logger = LogFactory.getLog(HttpSupplier.class);
 
+	private static final ParameterizedTypeReference<ServerSentEvent<String>> EVENT_TYPE =
+			new ParameterizedTypeReference<ServerSentEvent<String>>() { };
+
+	private static final String LAST_EVENT_ID = "Last-Event-ID";
+
 	private WebClient client;
 
 	private ExporterProperties props;
 
+	private JsonMapper mapper;
+
 	/**
 	 * @param client the WebClient to use. The baseUrl should be set.
 	 * @param props the ExporterProperties to use to parameterize the requests.
 	 */
 	public HttpSupplier(WebClient client, ExporterProperties props) {
+		this(client, props, null);
+	}
+
+	/**
+	 * @param client the WebClient to use. The baseUrl should be set.
+	 * @param props the ExporterProperties to use to parameterize the requests.
+	 * @param mapper the JsonMapper to convert streamed items to the source type (if it
+	 * is not a String).
+	 */
+	public HttpSupplier(WebClient client, ExporterProperties props, JsonMapper mapper) {
 		this.client = client;
 		this.props = props;
+		this.mapper = mapper;
 	}
 
 	@Override
@@ -61,22 +98,94 @@ public class HttpSupplier implements Supplier<Flux<?>> {
 	}
 
 	private Flux<?> get(WebClient client) {
-		Flux<?> result = client.get().uri(this.props.getSource().getUrl()).exchange()
-				.flatMap(this::transform).repeat();
+		Flux<?> result = Flux.defer(() -> {
+			PollingState state = new PollingState();
+			if (this.props.getSource().getMode() == SourceMode.STREAM) {
+				return Flux.defer(() -> stream(client, state)).repeat();
+			}
+			return Mono.defer(() -> poll(client, state)).repeat();
+		});
 		if (this.props.isDebug()) {
 			result = result.log();
 		}
 		return result.onErrorResume(TerminateException.class, error -> Mono.empty());
 	}
 
-	private Mono<?> transform(ClientResponse response) {
+	private Mono<Object> poll(WebClient client, PollingState state) {
+		Mono<Object> result = client.get().uri(this.props.getSource().getUrl())
+				.headers(state::addConditions).exchange()
+				.doOnSubscribe(subscription -> state.requested())
+				.flatMap(response -> transform(response, state))
+				.onErrorResume(error -> !(error instanceof TerminateException), error -> {
+					if (this.props.isDebug()) {
+						logger.info("Delaying supplier based on error=" + error);
+					}
+					return Mono.empty();
+				})
+				.doOnSuccess(state::received);
+		Duration delay = state.nextDelay();
+		return delay.isZero() ? result : Mono.delay(delay).then(result);
+	}
+
+	private Flux<Object> stream(WebClient client, PollingState state) {
+		Flux<Object> result = client.get().uri(this.props.getSource().getUrl())
+				.accept(MediaType.TEXT_EVENT_STREAM, RequestProcessor.APPLICATION_NDJSON,
+						MediaType.APPLICATION_STREAM_JSON)
+				.headers(state::addLastEventId).exchange()
+				.doOnSubscribe(subscription -> state.requested())
+				.flatMapMany(response -> items(response, state))
+				.onErrorResume(error -> !(error instanceof TerminateException), error -> {
+					if (this.props.isDebug()) {
+						logger.info("Reconnecting supplier based on error=" + error);
+					}
+					return Mono.empty();
+				})
+				.doOnNext(state::received)
+				.doOnComplete(state::disconnected);
+		Duration delay = state.nextDelay();
+		return delay.isZero() ? result : Mono.delay(delay).thenMany(result);
+	}
+
+	private Flux<Object> items(ClientResponse response, PollingState state) {
+		if (!response.statusCode().is2xxSuccessful()) {
+			if (this.props.isDebug()) {
+				logger.info("Reconnecting supplier based on status=" + response.statusCode());
+			}
+			return response.bodyToMono(Void.class).thenMany(Flux.empty());
+		}
+		MediaType contentType = response.headers().contentType().orElse(null);
+		if (contentType != null && MediaType.TEXT_EVENT_STREAM.isCompatibleWith(contentType)) {
+			return response.bodyToFlux(EVENT_TYPE).doOnNext(state::addEvent)
+					.filter(event -> event.data() != null)
+					.map(event -> message(response, convert(event.data())));
+		}
+		// JSON lines
+		return response.bodyToFlux(String.class).filter(StringUtils::hasText)
+				.map(line -> message(response, convert(line)));
+	}
+
+	private Object convert(String value) {
+		Class<?> type = this.props.getSource().getType();
+		if (type.isAssignableFrom(String.class)) {
+			return value;
+		}
+		Assert.state(this.mapper != null, "Streamed items can only be converted to " + type + " with a JsonMapper");
+		return this.mapper.toObject(value, type);
+	}
+
+	/*
+	 * The body of responses which are not emitted is released, so the connection
+	 * can be reused.
+	 */
+	private Mono<Object> transform(ClientResponse response, PollingState state) {
 		HttpStatus status = response.statusCode();
 		if (!status.is2xxSuccessful()) {
 			if (this.props.isDebug()) {
 				logger.info("Delaying supplier based on status=" + response.statusCode());
 			}
-			return Mono.delay(Duration.ofSeconds(1));
+			return response.bodyToMono(Void.class).then(Mono.empty());
 		}
+		state.addValidators(response.headers().asHttpHeaders());
 		return response.bodyToMono(this.props.getSource().getType())
 				.map(value -> message(response, value));
 	}
@@ -91,6 +200,103 @@ public class HttpSupplier implements Supplier<Flux<?>> {
 				.build();
 	}
 
+	/*
+	 * State of a single subscription to the supplier, hence only ever accessed by one
+	 * poll at a time.
+	 */
+	private final class PollingState {
+
+		private String etag;
+
+		private long lastModified = -1;
+
+		private int emptyPolls;
+
+		private long requests;
+
+		private long lastRequestTime;
+
+		private String lastEventId;
+
+		private Duration retry;
+
+		private boolean streamed;
+
+		void addConditions(HttpHeaders headers) {
+			if (HttpSupplier.this.props.getSource().isConditional()) {
+				if (this.etag != null) {
+					headers.setIfNoneMatch(this.etag);
+				}
+				if (this.lastModified >= 0) {
+					headers.setIfModifiedSince(this.lastModified);
+				}
+			}
+		}
+
+		void addValidators(HttpHeaders headers) {
+			if (headers.getETag() != null) {
+				this.etag = headers.getETag();
+			}
+			if (headers.getLastModified() >= 0) {
+				this.lastModified = headers.getLastModified();
+			}
+		}
+
+		void addLastEventId(HttpHeaders headers) {
+			if (this.lastEventId != null) {
+				headers.set(LAST_EVENT_ID, this.lastEventId);
+			}
+		}
+
+		void addEvent(ServerSentEvent<String> event) {
+			if (event.id() != null) {
+				this.lastEventId = event.id();
+			}
+			if (event.retry() != null) {
+				this.retry = event.retry();
+			}
+		}
+
+		void requested() {
+			this.requests++;
+			this.lastRequestTime = System.nanoTime();
+			this.streamed = false;
+		}
+
+		void received(Object value) {
+			this.emptyPolls = value == null ? this.emptyPolls + 1 : 0;
+			this.streamed = value != null;
+		}
+
+		void disconnected() {
+			if (!this.streamed) {
+				this.emptyPolls++;
+			}
+		}
+
+		Duration nextDelay() {
+			ExporterProperties.Source source = HttpSupplier.this.props.getSource();
+			long delay = this.emptyPolls == 0 ? source.getPollInterval().toNanos() : backoff(source);
+			if (this.retry != null) {
+				// reconnection time requested by the source of server-sent events
+				delay = Math.max(delay, this.retry.toNanos());
+			}
+			if (source.getMaxRequestRate() > 0 && this.requests > 0) {
+				long interval = (long) (Duration.ofSeconds(1).toNanos() / source.getMaxRequestRate());
+				delay = Math.max(delay, this.lastRequestTime + interval - System.nanoTime());
+			}
+			return Duration.ofNanos(Math.max(delay, 0));
+		}
+
+		private long backoff(ExporterProperties.Source source) {
+			double backoff = source.getMinBackoff().toNanos()
+					* Math.pow(source.getBackoffMultiplier(), this.emptyPolls - 1);
+			long delay = (long) Math.min(backoff, source.getMaxBackoff().toNanos());
+			return delay - (long) (delay * source.getBackoffJitter() * ThreadLocalRandom.current().nextDouble());
+		}
+
+	}
+
 	@SuppressWarnings("serial")
 	private static class TerminateException extends RuntimeException {
 
@@ -16,10 +16,16 @@
 
 package org.springframework.cloud.function.web.source;
 
+import java.io.ByteArrayOutputStream;
 import java.net.ConnectException;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Supplier;
 
 import org.apache.commons.logging.Log;
@@ -28,17 +34,32 @@ import org.reactivestreams.Publisher;
 import reactor.core.Disposable;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
 
 import org.springframework.cloud.function.context.FunctionCatalog;
+import org.springframework.cloud.function.json.JsonMapper;
+import org.springframework.cloud.function.web.RequestProcessor;
+import org.springframework.cloud.function.web.source.ExporterProperties.BatchFormat;
 import org.springframework.context.SmartLifecycle;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.messaging.Message;
+import org.springframework.util.Assert;
 import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.reactive.function.client.WebClient;
 
 /**
  * Forwards items obtained from a {@link Supplier} or set of suppliers to an external HTTP
  * endpoint.
+ * <br>
+ * Items are either POSTed one by one, or (if the batch size is greater than one) in
+ * batches of items for the same destination, encoded as a JSON array or as new line
+ * delimited JSON. Either way the number of requests in flight is bounded and responses
+ * are always consumed, so the connections are returned to the pool and reused. When
+ * batching, the number of destinations batched at the same time is bounded by the same
+ * limit, and the batching for a destination ends once no item was sent to it for the
+ * batch linger time (it starts over with the next item).
  *
  * @author Dave Syer
  * @author Oleg Zhurakousky
@@ -68,16 +89,47 @@ public class SupplierExporter implements SmartLifecycle {
 
 	private volatile Disposable subscription;
 
+	private final JsonMapper mapper;
+
+	private final int batchSize;
+
+	private final long batchMaxSize;
+
+	private final Duration batchLinger;
+
+	private final BatchFormat batchFormat;
+
+	private final int maxInFlight;
+
+	private final AtomicLong requestCount = new AtomicLong();
+
+	private final AtomicLong itemCount = new AtomicLong();
+
+	private final AtomicLong maxBatchSize = new AtomicLong();
+
+	private final AtomicLong totalLatency = new AtomicLong();
+
+	private final AtomicLong maxLatency = new AtomicLong();
+
 	SupplierExporter(RequestBuilder requestBuilder,
 			DestinationResolver destinationResolver, FunctionCatalog catalog,
-			WebClient client, ExporterProperties props) {
+			WebClient client, ExporterProperties props, JsonMapper mapper) {
 		this.requestBuilder = requestBuilder;
 		this.destinationResolver = destinationResolver;
 		this.catalog = catalog;
 		this.client = client;
+		this.mapper = mapper;
 		this.debug = props.isDebug();
 		this.autoStartup = props.isAutoStartup();
 		this.supplier = props.getSink().getName();
+		this.batchSize = props.getSink().getBatchSize();
+		this.batchMaxSize = props.getSink().getBatchMaxSize() == null ? Long.MAX_VALUE
+				: props.getSink().getBatchMaxSize().toBytes();
+		this.batchLinger = props.getSink().getBatchLinger();
+		this.batchFormat = props.getSink().getBatchFormat();
+		this.maxInFlight = props.getSink().getMaxInFlight();
+		Assert.isTrue(this.maxInFlight > 0, "'maxInFlight' must be greater than 0");
+		Assert.state(this.batchSize <= 1 || mapper != null, "Batching of exported items requires a JsonMapper");
 	}
 
 	@Override
@@ -129,6 +181,47 @@ public class SupplierExporter implements SmartLifecycle {
 		return this.ok;
 	}
 
+	/**
+	 * Returns the number of requests which completed (with any status) so far.
+	 * @return the number of requests
+	 */
+	public long getRequestCount() {
+		return this.requestCount.get();
+	}
+
+	/**
+	 * Returns the number of items exported by the requests which completed so far.
+	 * @return the number of items
+	 */
+	public long getItemCount() {
+		return this.itemCount.get();
+	}
+
+	/**
+	 * Returns the largest number of items exported by a single request so far.
+	 * @return the maximum batch size
+	 */
+	public long getMaxBatchSize() {
+		return this.maxBatchSize.get();
+	}
+
+	/**
+	 * Returns the average time between sending a request and receiving its response.
+	 * @return the average latency
+	 */
+	public Duration getAverageLatency() {
+		long requests = this.requestCount.get();
+		return Duration.ofNanos(requests == 0 ? 0 : this.totalLatency.get() / requests);
+	}
+
+	/**
+	 * Returns the longest time between sending a request and receiving its response.
+	 * @return the maximum latency
+	 */
+	public Duration getMaxLatency() {
+		return Duration.ofNanos(this.maxLatency.get());
+	}
+
 	@Override
 	public void stop() {
 		logger.info("Stopping");
@@ -158,14 +251,22 @@ public class SupplierExporter implements SmartLifecycle {
 	}
 
 	private Flux<ClientResponse> forward(Supplier<Publisher<Object>> supplier, String name) {
-		return Flux.from(supplier.get()).flatMap(value -> {
-			String destination = this.destinationResolver.destination(supplier, name,
-					value);
-			if (this.debug) {
-				logger.info("Posting to: " + destination);
-			}
-			return post(uri(destination), destination, value);
-		});
+		Flux<Object> values = Flux.from(supplier.get());
+		if (this.batchSize <= 1) {
+			return values.flatMap(value -> {
+				String destination = this.destinationResolver.destination(supplier, name,
+						value);
+				if (this.debug) {
+					logger.info("Posting to: " + destination);
+				}
+				return post(uri(destination), destination, value);
+			}, this.maxInFlight);
+		}
+		// idle groups complete, so destinations waiting for a free slot are not stuck
+		return values.groupBy(value -> this.destinationResolver.destination(supplier, name, value))
+				.flatMap(group -> batch(group.timeout(this.batchLinger, Mono.empty()))
+						.map(batch -> Tuples.of(group.key(), batch)), this.maxInFlight)
+				.flatMap(batch -> post(batch.getT1(), batch.getT2()), this.maxInFlight);
 	}
 
 	private Mono<ClientResponse> post(URI uri, String destination, Object value) {
@@ -174,15 +275,115 @@ public class SupplierExporter implements SmartLifecycle {
 			Message<?> message = (Message<?>) value;
 			body = message.getPayload();
 		}
-		Mono<ClientResponse> result = this.client.post().uri(uri)
-				.headers(headers -> headers(headers, destination, value)).syncBody(body)
-				.exchange();
+		return exchange(this.client.post().uri(uri)
+				.headers(headers -> headers(headers, destination, value)).syncBody(body), 1);
+	}
+
+	private Mono<ClientResponse> post(String destination, List<Tuple2<Object, byte[]>> batch) {
+		if (this.debug) {
+			logger.info("Posting " + batch.size() + " items to: " + destination);
+		}
+		// headers of the batch request are those of its first item
+		Object first = batch.get(0).getT1();
+		MediaType contentType = this.batchFormat == BatchFormat.NDJSON ? RequestProcessor.APPLICATION_NDJSON
+				: MediaType.APPLICATION_JSON;
+		return exchange(this.client.post().uri(uri(destination))
+				.headers(headers -> headers(headers, destination, first)).contentType(contentType)
+				.syncBody(body(batch)), batch.size());
+	}
+
+	/*
+	 * The response body is released (rather than left to the garbage collector), so the
+	 * connection goes back to the pool as soon as the response is received.
+	 */
+	private Mono<ClientResponse> exchange(WebClient.RequestHeadersSpec<?> request, int items) {
+		Mono<ClientResponse> result = Mono.defer(() -> {
+			long start = System.nanoTime();
+			return request.exchange()
+					.flatMap(response -> response.bodyToMono(Void.class).thenReturn(response))
+					.doOnNext(response -> record(items, System.nanoTime() - start));
+		});
 		if (this.debug) {
 			result = result.log();
 		}
 		return result;
 	}
 
+	private void record(int items, long latency) {
+		this.requestCount.incrementAndGet();
+		this.itemCount.addAndGet(items);
+		this.maxBatchSize.accumulateAndGet(items, Math::max);
+		this.totalLatency.addAndGet(latency);
+		this.maxLatency.accumulateAndGet(latency, Math::max);
+	}
+
+	/*
+	 * Items are encoded up front, so batches can be split by the size of their body.
+	 */
+	private Flux<List<Tuple2<Object, byte[]>>> batch(Flux<Object> values) {
+		return values.map(value -> Tuples.of(value, encode(value)))
+				.bufferTimeout(this.batchSize, this.batchLinger)
+				.concatMapIterable(this::split);
+	}
+
+	/*
+	 * Items of a batch are elements of a JSON array (or JSON lines), hence byte[] payloads
+	 * are sent as they are (i.e., assumed to be JSON already), anything else (including
+	 * String) is converted to JSON.
+	 */
+	private byte[] encode(Object value) {
+		Object payload = value instanceof Message ? ((Message<?>) value).getPayload() : value;
+		if (payload instanceof byte[]) {
+			return (byte[]) payload;
+		}
+		return this.mapper.toString(payload).getBytes(StandardCharsets.UTF_8);
+	}
+
+	private List<List<Tuple2<Object, byte[]>>> split(List<Tuple2<Object, byte[]>> items) {
+		if (this.batchMaxSize == Long.MAX_VALUE) {
+			return Collections.singletonList(items);
+		}
+		// every item takes a delimiter (comma or new line) and a JSON array takes one more byte
+		long overhead = this.batchFormat == BatchFormat.JSON ? 1 : 0;
+		List<List<Tuple2<Object, byte[]>>> batches = new ArrayList<>();
+		List<Tuple2<Object, byte[]>> batch = new ArrayList<>();
+		long size = overhead;
+		for (Tuple2<Object, byte[]> item : items) {
+			long itemSize = item.getT2().length + 1;
+			if (!batch.isEmpty() && size + itemSize > this.batchMaxSize) {
+				batches.add(batch);
+				batch = new ArrayList<>();
+				size = overhead;
+			}
+			batch.add(item);
+			size += itemSize;
+		}
+		batches.add(batch);
+		return batches;
+	}
+
+	private byte[] body(List<Tuple2<Object, byte[]>> batch) {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		boolean json = this.batchFormat == BatchFormat.JSON;
+		if (json) {
+			body.write('[');
+		}
+		for (int i = 0; i < batch.size(); i++) {
+			if (json && i > 0) {
+				body.write(',');
+			}
+			byte[] item = batch.get(i).getT2();
+			body.write(item, 0, item.length);
+			if (!json) {
+				body.write('\n');
+			}
+		}
+		if (json) {
+			body.write(']');
+		}
+		return body.toByteArray();
+	}
+
 	private void headers(HttpHeaders headers, String destination, Object value) {
 		headers.putAll(this.requestBuilder.headers(destination, value));
 	}
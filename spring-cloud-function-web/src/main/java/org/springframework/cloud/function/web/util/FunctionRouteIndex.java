@@ -0,0 +1,256 @@
+/*
+ * Copyright 2020-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.function.web.util;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.springframework.cloud.function.context.FunctionCatalog;
+import org.springframework.cloud.function.context.catalog.FunctionCatalogEvent;
+import org.springframework.cloud.function.context.catalog.FunctionRegistrationEvent;
+import org.springframework.cloud.function.context.catalog.FunctionUnregistrationEvent;
+import org.springframework.cloud.function.web.constants.WebRequestConstants;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import org.springframework.context.ApplicationListener;
+import org.springframework.http.HttpMethod;
+
+/**
+ * Index of HTTP request paths to functions, so function lookup (and composition) is
+ * only performed once for a given route rather than for every path segment of every
+ * request. Shared by all function endpoints (MVC, WebFlux and functional).
+ * <br>
+ * Functions are indexed in a prefix tree of path segments, so paths which carry an
+ * argument after the function name (e.g., '/uppercase/hello') are resolved by walking
+ * the tree without looking up (or caching) each distinct path. Suppliers (GET requests
+ * only) are indexed in the same tree, and are only looked up if the path is the default
+ * (empty) definition or a definition starting with the name of a registered function
+ * (or bean), hence arbitrary paths never result in a supplier lookup. Paths which do not resolve to
+ * any function are cached per path (bounded). The index is discarded when functions are
+ * registered or unregistered.
+ *
+ * @author agent
+ * @since 3.0.4
+ */
+public class FunctionRouteIndex implements ApplicationListener<FunctionCatalogEvent>, ApplicationContextAware {
+
+	private static final int MISSING_CACHE_LIMIT = 1024;
+
+	private static final int TREE_SIZE_LIMIT = 1024;
+
+	private static final Object NO_ROUTE = new Object();
+
+	private final FunctionCatalog functionCatalog;
+
+	private volatile Index index = new Index();
+
+	private ApplicationContext applicationContext;
+
+	public FunctionRouteIndex(FunctionCatalog functionCatalog) {
+		this.functionCatalog = functionCatalog;
+	}
+
+	@Override
+	public void setApplicationContext(ApplicationContext applicationContext) {
+		this.applicationContext = applicationContext;
+	}
+
+	/**
+	 * Same as {@link FunctionWebUtils#findFunction(HttpMethod, FunctionCatalog, Map, String)},
+	 * but served from this index once the route has been resolved.
+	 * @param method HTTP method of the request
+	 * @param attributes request attributes to which function, supplier and argument are added
+	 * @param path request path (without any prefix)
+	 * @return the function or supplier or null if the path does not route to any
+	 */
+	public Object findFunction(HttpMethod method, Map<String, Object> attributes, String path) {
+		if (!method.equals(HttpMethod.GET) && !method.equals(HttpMethod.POST)) {
+			throw new IllegalStateException("HTTP method '" + method + "' is not supported;");
+		}
+		Index index = this.index;
+		path = path.startsWith("/") ? path.substring(1) : path;
+		if (method.equals(HttpMethod.GET)) {
+			Object supplier = index.findSupplier(path);
+			if (supplier == null && this.isDefinition(index, path)) {
+				supplier = this.functionCatalog.lookup(Supplier.class, path);
+				if (supplier != null) {
+					index.addSupplier(path, supplier);
+				}
+			}
+			if (supplier != null) {
+				attributes.put(WebRequestConstants.SUPPLIER, supplier);
+				return supplier;
+			}
+		}
+
+		Object function = index.find(path, attributes);
+		if (function == null && !index.missing.containsKey(path)) {
+			Map<String, Object> resolved = new HashMap<>();
+			function = FunctionWebUtils.findFunction(HttpMethod.POST, this.functionCatalog, resolved, path);
+			if (function != null) {
+				String argument = (String) resolved.get(WebRequestConstants.ARGUMENT);
+				index.add(argument == null ? path : path.substring(0, path.length() - argument.length() - 1), function);
+				// one by one, since request attribute delegates only override put(..)
+				resolved.forEach(attributes::put);
+			}
+			else {
+				index.cacheMissing(path);
+			}
+		}
+		return function;
+	}
+
+	/*
+	 * Whether the path may be a function definition, i.e., the default (empty) one or one
+	 * which starts with the name of a registered function or bean (e.g., Kotlin lambdas are
+	 * only registered as beans).
+	 */
+	private boolean isDefinition(Index index, String path) {
+		if (path.isEmpty()) {
+			return true;
+		}
+		int end = path.length();
+		for (char delimiter : new char[] {'|', ','}) {
+			int position = path.indexOf(delimiter);
+			end = position < 0 ? end : Math.min(end, position);
+		}
+		String name = path.substring(0, end);
+		return index.names(this.functionCatalog).contains(name)
+				|| (this.applicationContext != null && this.applicationContext.containsBean(name));
+	}
+
+	@Override
+	public void onApplicationEvent(FunctionCatalogEvent event) {
+		if (event instanceof FunctionRegistrationEvent || event instanceof FunctionUnregistrationEvent) {
+			this.index = new Index();
+		}
+	}
+
+	/*
+	 * Replaced (rather than cleared) when the catalog changes, hence in-flight requests
+	 * which still hold on to the previous index only populate the discarded one.
+	 */
+	private static final class Index {
+
+		private final Node root = new Node();
+
+		private final AtomicInteger size = new AtomicInteger();
+
+		private final Map<String, Object> missing = new ConcurrentHashMap<>();
+
+		private volatile Set<String> names;
+
+		/*
+		 * Returns the function of the shortest indexed prefix of the path. Since routes
+		 * are resolved shortest prefix first, none of the shorter prefixes of an indexed
+		 * route is a function, so the result is the same as that of the full lookup.
+		 */
+		Object find(String path, Map<String, Object> attributes) {
+			Node node = this.root;
+			int start = 0;
+			while (start <= path.length()) {
+				int end = path.indexOf('/', start);
+				end = end < 0 ? path.length() : end;
+				node = node.children.get(path.substring(start, end));
+				if (node == null) {
+					return null;
+				}
+				if (node.function != null) {
+					attributes.put(WebRequestConstants.FUNCTION, node.function);
+					if (end < path.length()) {
+						attributes.put(WebRequestConstants.ARGUMENT, path.substring(end + 1));
+					}
+					return node.function;
+				}
+				start = end + 1;
+			}
+			return null;
+		}
+
+		Object findSupplier(String path) {
+			Node node = this.root;
+			for (String segment : path.split("/")) {
+				node = node.children.get(segment);
+				if (node == null) {
+					return null;
+				}
+			}
+			return node.supplier;
+		}
+
+		Set<String> names(FunctionCatalog functionCatalog) {
+			Set<String> names = this.names;
+			if (names == null) {
+				names = new HashSet<>(functionCatalog.getNames(null));
+				this.names = names;
+			}
+			return names;
+		}
+
+		void add(String name, Object function) {
+			Node node = this.node(name);
+			if (node != null) {
+				node.function = function;
+			}
+		}
+
+		void addSupplier(String name, Object supplier) {
+			Node node = this.node(name);
+			if (node != null) {
+				node.supplier = supplier;
+			}
+		}
+
+		void cacheMissing(String path) {
+			if (this.missing.size() < MISSING_CACHE_LIMIT) {
+				this.missing.put(path, NO_ROUTE);
+			}
+		}
+
+		private Node node(String name) {
+			Node node = this.root;
+			for (String segment : name.split("/")) {
+				Node child = node.children.get(segment);
+				if (child == null) {
+					if (this.size.incrementAndGet() > TREE_SIZE_LIMIT) {
+						return null;
+					}
+					child = node.children.computeIfAbsent(segment, key -> new Node());
+				}
+				node = child;
+			}
+			return node;
+		}
+
+	}
+
+	private static final class Node {
+
+		private final Map<String, Node> children = new ConcurrentHashMap<>();
+
+		private volatile Object function;
+
+		private volatile Object supplier;
+
+	}
+
+}
@@ -45,6 +45,7 @@ import org.springframework.boot.web.server.LocalServerPort;
 import org.springframework.cloud.function.web.RestApplication;
 import org.springframework.cloud.function.web.flux.HttpPostIntegrationTests.ApplicationConfiguration;
 import org.springframework.context.annotation.Bean;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.RequestEntity;
@@ -306,6 +307,61 @@ public class HttpPostIntegrationTests {
 						.isEqualTo("[{\"value\":\"FOO\"},{\"value\":\"BAR\"}]");
 	}
 
+	@Test
+	public void largeJsonArrayIsStreamedToFunction() throws Exception {
+		StringBuilder body = new StringBuilder(" [");
+		StringBuilder expected = new StringBuilder("[");
+		for (int i = 0; i < 10000; i++) {
+			body.append(i == 0 ? "" : ",\n").append(i);
+			expected.append(i == 0 ? "" : ",").append(i * 2);
+		}
+		assertThat(this.rest.exchange(RequestEntity.post(new URI("/doubler"))
+				.contentType(MediaType.APPLICATION_JSON).body(body.append("]").toString()), String.class)
+				.getBody()).isEqualTo(expected.append("]").toString());
+	}
+
+	@Test
+	public void failingStreamedFunctionReturnsErrorStatus() throws Exception {
+		ResponseEntity<String> result = this.rest.exchange(RequestEntity.post(new URI("/failing"))
+				.contentType(MediaType.APPLICATION_JSON).body("[\"foo\",\"bar\"]"), String.class);
+		assertThat(result.getStatusCode().is5xxServerError()).isTrue();
+	}
+
+	@Test
+	public void binaryPayloadIsPassedAsIs() throws Exception {
+		byte[] payload = new byte[] { (byte) 0xff, 0, (byte) 0xc3, 0x28 };
+		ResponseEntity<byte[]> result = this.rest.exchange(RequestEntity.post(new URI("/reverseBytes"))
+				.contentType(MediaType.IMAGE_PNG).body(payload), byte[].class);
+		assertThat(result.getBody()).isEqualTo(new byte[] { 0x28, (byte) 0xc3, 0, (byte) 0xff });
+	}
+
+	@Test
+	public void binaryPayloadIsWrappedInDataBuffer() throws Exception {
+		byte[] payload = new byte[] { (byte) 0xff, 0, (byte) 0xc3, 0x28 };
+		ResponseEntity<String> result = this.rest.exchange(RequestEntity.post(new URI("/bufferSize"))
+				.contentType(MediaType.IMAGE_PNG).body(payload), String.class);
+		assertThat(result.getBody()).isEqualTo("4");
+	}
+
+	@Test
+	public void uppercaseNdjson() throws Exception {
+		ResponseEntity<String> result = this.rest.exchange(RequestEntity.post(new URI("/uppercase"))
+				.accept(MediaType.valueOf("application/x-ndjson")).contentType(MediaType.APPLICATION_JSON)
+				.body("[\"foo\",\"bar\"]"), String.class);
+		assertThat(result.getHeaders().getContentType().toString()).isEqualTo("application/x-ndjson");
+		assertThat(result.getBody()).isEqualTo("\"(FOO)\"\n\"(BAR)\"\n");
+	}
+
+	@Test
+	public void uppercaseNdjsonInput() throws Exception {
+		ResponseEntity<String> result = this.rest.exchange(RequestEntity.post(new URI("/uppercase"))
+				.accept(MediaType.valueOf("application/x-ndjson"))
+				.contentType(MediaType.valueOf("application/x-ndjson"))
+				.body("\"foo\"\n\"bar\"\n"), String.class);
+		assertThat(result.getHeaders().getContentType().toString()).isEqualTo("application/x-ndjson");
+		assertThat(result.getBody()).isEqualTo("\"(FOO)\"\n\"(BAR)\"\n");
+	}
+
 	@Test
 	public void uppercaseSSE() throws Exception {
 		assertThat(this.rest.exchange(RequestEntity.post(new URI("/uppercase"))
@@ -314,6 +370,14 @@ public class HttpPostIntegrationTests {
 						.isEqualTo(sse("(FOO)", "(BAR)"));
 	}
 
+	@Test
+	public void upFoosSSE() throws Exception {
+		assertThat(this.rest.exchange(RequestEntity.post(new URI("/upFoos"))
+				.accept(EVENT_STREAM).contentType(MediaType.APPLICATION_JSON)
+				.body("[{\"value\":\"foo\"},{\"value\":\"bar\"}]"), String.class).getBody())
+						.isEqualTo(sse("{\"value\":\"FOO\"}", "{\"value\":\"BAR\"}"));
+	}
+
 	@Test
 	public void sum() throws Exception {
 
@@ -372,6 +436,29 @@ public class HttpPostIntegrationTests {
 					.map(value -> "(" + value.trim().toUpperCase() + ")");
 		}
 
+		@Bean
+		public Function<Flux<String>, Flux<String>> failing() {
+			return flux -> flux.map(value -> {
+				throw new IllegalStateException("Failed to process " + value);
+			});
+		}
+
+		@Bean
+		public Function<byte[], byte[]> reverseBytes() {
+			return value -> {
+				byte[] result = new byte[value.length];
+				for (int i = 0; i < value.length; i++) {
+					result[i] = value[value.length - 1 - i];
+				}
+				return result;
+			};
+		}
+
+		@Bean
+		public Function<DataBuffer, Integer> bufferSize() {
+			return DataBuffer::readableByteCount;
+		}
+
 		@Bean
 		public Function<String, String> bareUppercase() {
 			return value -> "(" + value.trim().toUpperCase() + ")";
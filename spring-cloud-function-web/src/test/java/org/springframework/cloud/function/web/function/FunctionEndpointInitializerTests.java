@@ -31,6 +31,8 @@ import org.springframework.cloud.function.context.FunctionalSpringApplication;
 import org.springframework.context.ApplicationContextInitializer;
 import org.springframework.context.support.GenericApplicationContext;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.RequestEntity;
 import org.springframework.http.ResponseEntity;
 import org.springframework.util.SocketUtils;
 
@@ -90,6 +92,19 @@ public class FunctionEndpointInitializerTests {
 		assertThat(response.getBody()).isEqualTo("desserts");
 	}
 
+	@Test
+	public void testNdjsonFunctionMapping() throws Exception {
+		FunctionalSpringApplication.run(ApplicationConfiguration.class);
+		TestRestTemplate testRestTemplate = new TestRestTemplate();
+		String port = System.getProperty("server.port");
+		Thread.sleep(200);
+		ResponseEntity<String> response = testRestTemplate.exchange(RequestEntity
+				.post(new URI("http://localhost:" + port + "/uppercase"))
+				.accept(MediaType.valueOf("application/x-ndjson"))
+				.contentType(MediaType.valueOf("application/x-ndjson"))
+				.body("\"stressed\"\n\"desserts\"\n"), String.class);
+		assertThat(response.getBody()).isEqualTo("\"STRESSED\"\n\"DESSERTS\"\n");
+	}
 
 	@SpringBootConfiguration
 	protected static class ApplicationConfiguration
@@ -141,6 +141,24 @@ public class HttpPostIntegrationTests {
 		assertThat(result.getBody()).isEqualTo("[\"(FOO)\",\"(BAR)\"]");
 	}
 
+	@Test
+	public void binaryPayloadIsPassedAsIs() throws Exception {
+		byte[] payload = new byte[] { (byte) 0xff, 0, (byte) 0xc3, 0x28 };
+		ResponseEntity<byte[]> result = this.rest.exchange(RequestEntity.post(new URI("/reverseBytes"))
+				.contentType(MediaType.IMAGE_PNG).body(payload), byte[].class);
+		assertThat(result.getBody()).isEqualTo(new byte[] { 0x28, (byte) 0xc3, 0, (byte) 0xff });
+	}
+
+	@Test
+	public void uppercaseNdjson() throws Exception {
+		ResponseEntity<String> result = this.rest.exchange(RequestEntity.post(new URI("/uppercase"))
+				.accept(MediaType.valueOf("application/x-ndjson"))
+				.contentType(MediaType.valueOf("application/x-ndjson"))
+				.body("\"foo\"\n\"bar\"\n"), String.class);
+		assertThat(result.getHeaders().getContentType().toString()).isEqualTo("application/x-ndjson");
+		assertThat(result.getBody()).isEqualTo("\"(FOO)\"\n\"(BAR)\"\n");
+	}
+
 	@Test
 	public void messages() throws Exception {
 		ResponseEntity<String> result = this.rest.exchange(RequestEntity
@@ -357,6 +375,17 @@ public class HttpPostIntegrationTests {
 					.map(value -> "(" + value.trim().toUpperCase() + ")");
 		}
 
+		@Bean
+		public Function<byte[], byte[]> reverseBytes() {
+			return value -> {
+				byte[] result = new byte[value.length];
+				for (int i = 0; i < value.length; i++) {
+					result[i] = value[value.length - 1 - i];
+				}
+				return result;
+			};
+		}
+
 		@Bean
 		public Function<String, String> bareUppercase() {
 			return value -> "(" + value.trim().toUpperCase() + ")";
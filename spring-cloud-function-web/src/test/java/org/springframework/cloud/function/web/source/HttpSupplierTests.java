@@ -0,0 +1,189 @@
+/*
+ * Copyright 2020-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.function.web.source;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import reactor.core.Disposable;
+
+import org.springframework.cloud.function.json.JacksonMapper;
+import org.springframework.cloud.function.web.source.ExporterProperties.SourceMode;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs {@link HttpSupplier} against a stub HTTP server.
+ *
+ * @author agent
+ *
+ */
+public class HttpSupplierTests {
+
+	private final List<HttpExchange> requests = new CopyOnWriteArrayList<>();
+
+	private final List<Long> requestTimes = new CopyOnWriteArrayList<>();
+
+	private final ExecutorService serverExecutor = Executors.newCachedThreadPool();
+
+	private final ExporterProperties props = new ExporterProperties();
+
+	private HttpServer server;
+
+	private volatile Function<HttpExchange, Object[]> responder;
+
+	@Before
+	public void before() throws Exception {
+		this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		this.server.createContext("/", this::handle);
+		this.server.setExecutor(this.serverExecutor);
+		this.server.start();
+		this.props.setDebug(false);
+		this.props.getSource().setUrl("http://localhost:" + this.server.getAddress().getPort() + "/items");
+		this.props.getSource().setIncludeHeaders(false);
+		this.props.getSource().setMinBackoff(Duration.ofMillis(50));
+		this.props.getSource().setBackoffJitter(0);
+	}
+
+	@After
+	public void after() {
+		this.serverExecutor.shutdownNow();
+		this.server.stop(0);
+	}
+
+	@Test
+	public void unchangedResourceIsNotEmittedAgain() {
+		this.responder = exchange -> {
+			String etag = exchange.getRequestHeaders().getFirst("If-None-Match");
+			if (this.requests.size() < 3) {
+				return "\"v1\"".equals(etag) ? new Object[] { 304 } : new Object[] { 200, "\"v1\"", "hello" };
+			}
+			return new Object[] { 200, "\"v2\"", "bye" };
+		};
+		List<Object> values = supplier().get().cast(Object.class).take(2).collectList().block(Duration.ofSeconds(10));
+		assertThat(values).containsExactly("hello", "bye");
+		assertThat(this.requests).hasSize(4);
+		assertThat(this.requests.get(0).getRequestHeaders().getFirst("If-None-Match")).isNull();
+		assertThat(this.requests.get(3).getRequestHeaders().getFirst("If-None-Match")).isEqualTo("\"v1\"");
+	}
+
+	@Test
+	public void failingSourceIsPolledWithBackoff() throws Exception {
+		this.responder = exchange -> new Object[] { 500 };
+		Disposable subscription = supplier().get().subscribe();
+		try {
+			long start = System.currentTimeMillis();
+			while (this.requestTimes.size() < 4 && System.currentTimeMillis() - start < 10000) {
+				Thread.sleep(10);
+			}
+		}
+		finally {
+			subscription.dispose();
+		}
+		assertThat(this.requestTimes.size()).isGreaterThanOrEqualTo(4);
+		// 50, 100 and 200 ms
+		assertThat(this.requestTimes.get(1) - this.requestTimes.get(0)).isGreaterThanOrEqualTo(45);
+		assertThat(this.requestTimes.get(2) - this.requestTimes.get(1)).isGreaterThanOrEqualTo(95);
+		assertThat(this.requestTimes.get(3) - this.requestTimes.get(2)).isGreaterThanOrEqualTo(195);
+	}
+
+	@Test
+	public void requestRateIsLimited() {
+		this.props.getSource().setMaxRequestRate(20);
+		this.responder = exchange -> new Object[] { 200, null, "hello" };
+		long start = System.currentTimeMillis();
+		List<Object> values = supplier().get().cast(Object.class).take(5).collectList().block(Duration.ofSeconds(10));
+		assertThat(values).hasSize(5);
+		// 4 intervals of 50 ms
+		assertThat(System.currentTimeMillis() - start).isGreaterThanOrEqualTo(195);
+	}
+
+	@Test
+	public void eventStreamIsResumedFromLastEvent() {
+		this.props.getSource().setMode(SourceMode.STREAM);
+		this.responder = exchange -> {
+			String lastEventId = exchange.getRequestHeaders().getFirst("Last-Event-ID");
+			String events = lastEventId == null ? "id:1\ndata:hello\n\nid:2\ndata:world\n\n"
+					: "id:3\ndata:after " + lastEventId + "\n\n";
+			return new Object[] { 200, null, events, "text/event-stream" };
+		};
+		List<Object> values = supplier().get().cast(Object.class).take(3).collectList().block(Duration.ofSeconds(10));
+		assertThat(values).containsExactly("hello", "world", "after 2");
+		assertThat(this.requests).hasSize(2);
+	}
+
+	@Test
+	public void jsonLinesAreStreamedAsItems() {
+		this.props.getSource().setMode(SourceMode.STREAM);
+		this.props.getSource().setType(Map.class);
+		this.responder = exchange -> new Object[] { 200, null, "{\"name\":\"foo\"}\n\n{\"name\":\"bar\"}\n",
+				"application/x-ndjson" };
+		List<Object> values = supplier().get().cast(Object.class).take(3).collectList().block(Duration.ofSeconds(10));
+		assertThat(values).hasSize(3);
+		assertThat(((Map<?, ?>) values.get(0)).get("name")).isEqualTo("foo");
+		assertThat(((Map<?, ?>) values.get(1)).get("name")).isEqualTo("bar");
+		// the stream is requested again once the previous response completes
+		assertThat(this.requests).hasSize(2);
+	}
+
+	private HttpSupplier supplier() {
+		return new HttpSupplier(WebClient.create(), this.props, new JacksonMapper(new ObjectMapper()));
+	}
+
+	private void handle(HttpExchange exchange) {
+		try {
+			this.requestTimes.add(System.currentTimeMillis());
+			Object[] response = this.responder.apply(exchange);
+			this.requests.add(exchange);
+			if (response.length == 1) {
+				exchange.sendResponseHeaders((Integer) response[0], -1);
+				return;
+			}
+			if (response[1] != null) {
+				exchange.getResponseHeaders().add("ETag", (String) response[1]);
+			}
+			byte[] body = ((String) response[2]).getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().add("Content-Type", response.length > 3 ? (String) response[3] : "text/plain");
+			exchange.sendResponseHeaders((Integer) response[0], body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		}
+		catch (Exception e) {
+			// the server is shutting down
+		}
+		finally {
+			exchange.close();
+		}
+	}
+
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2020-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.function.web.source;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import reactor.core.publisher.Flux;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.StreamUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs {@link SupplierExporter} against a stub HTTP server.
+ *
+ * @author agent
+ *
+ */
+public class SupplierExporterTests {
+
+	private final List<String> requests = new CopyOnWriteArrayList<>();
+
+	private final ExecutorService serverExecutor = Executors.newCachedThreadPool();
+
+	private HttpServer server;
+
+	private ConfigurableApplicationContext context;
+
+	@Before
+	public void before() throws Exception {
+		this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		this.server.createContext("/", this::handle);
+		this.server.setExecutor(this.serverExecutor);
+		this.server.start();
+	}
+
+	@After
+	public void after() {
+		if (this.context != null) {
+			this.context.close();
+		}
+		this.serverExecutor.shutdownNow();
+		this.server.stop(0);
+	}
+
+	@Test
+	public void itemsArePostedOneByOneByDefault() throws Exception {
+		SupplierExporter exporter = this.export();
+		assertThat(this.requests).hasSize(10);
+		assertThat(exporter.getRequestCount()).isEqualTo(10);
+		assertThat(exporter.getMaxBatchSize()).isEqualTo(1);
+	}
+
+	@Test
+	public void itemsArePostedAsJsonArrays() throws Exception {
+		SupplierExporter exporter = this.export("--spring.cloud.function.web.export.sink.batch-size=4");
+		assertThat(this.sortedRequests()).containsExactly(
+				"application/json:[\"a\",\"b\",\"c\",\"d\"]",
+				"application/json:[\"e\",\"f\",\"g\",\"h\"]",
+				"application/json:[\"i\",\"j\"]");
+		assertThat(exporter.getRequestCount()).isEqualTo(3);
+		assertThat(exporter.getItemCount()).isEqualTo(10);
+		assertThat(exporter.getMaxBatchSize()).isEqualTo(4);
+		assertThat(exporter.getMaxLatency()).isGreaterThanOrEqualTo(exporter.getAverageLatency());
+	}
+
+	@Test
+	public void itemsArePostedAsJsonLinesWithinMaxSize() throws Exception {
+		SupplierExporter exporter = this.export("--spring.cloud.function.web.export.sink.batch-size=4",
+				"--spring.cloud.function.web.export.sink.batch-max-size=10B",
+				"--spring.cloud.function.web.export.sink.batch-format=ndjson");
+		assertThat(this.sortedRequests()).containsExactly(
+				"application/x-ndjson:\"a\"\n\"b\"\n",
+				"application/x-ndjson:\"c\"\n\"d\"\n",
+				"application/x-ndjson:\"e\"\n\"f\"\n",
+				"application/x-ndjson:\"g\"\n\"h\"\n",
+				"application/x-ndjson:\"i\"\n\"j\"\n");
+		assertThat(exporter.getItemCount()).isEqualTo(10);
+	}
+
+	@Test
+	public void destinationsBeyondMaxInFlightAreBatched() throws Exception {
+		SupplierExporter exporter = this.export(DestinationPerItemConfiguration.class,
+				"--spring.cloud.function.web.export.sink.batch-size=4",
+				"--spring.cloud.function.web.export.sink.max-in-flight=2");
+		assertThat(this.requests).hasSize(10);
+		assertThat(exporter.getItemCount()).isEqualTo(10);
+		assertThat(exporter.getMaxBatchSize()).isEqualTo(1);
+	}
+
+	private List<String> sortedRequests() {
+		return this.requests.stream().sorted().collect(Collectors.toList());
+	}
+
+	private SupplierExporter export(String... args) throws Exception {
+		return this.export(ExporterConfiguration.class, args);
+	}
+
+	private SupplierExporter export(Class<?> configuration, String... args) throws Exception {
+		String[] properties = new String[args.length + 3];
+		properties[0] = "--spring.cloud.function.web.export.sink.url=http://localhost:"
+				+ this.server.getAddress().getPort() + "/items";
+		properties[1] = "--spring.cloud.function.web.export.sink.name=words";
+		properties[2] = "--spring.cloud.function.web.export.debug=false";
+		System.arraycopy(args, 0, properties, 3, args.length);
+		this.context = new SpringApplicationBuilder(configuration)
+				.web(WebApplicationType.NONE).run(properties);
+		SupplierExporter exporter = this.context.getBean(SupplierExporter.class);
+		int count = 0;
+		while (exporter.isRunning() && count++ < 200) {
+			Thread.sleep(50);
+		}
+		assertThat(exporter.isRunning()).isFalse();
+		assertThat(exporter.isOk()).isTrue();
+		return exporter;
+	}
+
+	private void handle(HttpExchange exchange) {
+		try {
+			String body = StreamUtils.copyToString(exchange.getRequestBody(), StandardCharsets.UTF_8);
+			this.requests.add(exchange.getRequestHeaders().getFirst("Content-Type") + ":" + body);
+			exchange.sendResponseHeaders(202, -1);
+		}
+		catch (Exception e) {
+			// the server is shutting down
+		}
+		finally {
+			exchange.close();
+		}
+	}
+
+	@EnableAutoConfiguration
+	@Configuration
+	protected static class ExporterConfiguration {
+
+		@Bean
+		public Supplier<Flux<String>> words() {
+			return () -> Flux.just("a", "b", "c", "d", "e", "f", "g", "h", "i", "j");
+		}
+
+	}
+
+	@Configuration
+	protected static class DestinationPerItemConfiguration extends ExporterConfiguration {
+
+		@Bean
+		public DestinationResolver destinationResolver() {
+			return (supplier, name, value) -> name + "-" + value;
+		}
+
+	}
+
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2020-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.function.web.util;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+import org.springframework.cloud.function.context.FunctionCatalog;
+import org.springframework.cloud.function.context.catalog.FunctionRegistrationEvent;
+import org.springframework.cloud.function.web.constants.WebRequestConstants;
+import org.springframework.http.HttpMethod;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ *
+ * @author agent
+ *
+ */
+public class FunctionRouteIndexTests {
+
+	private final Map<String, Object> functions = new HashMap<>();
+
+	private final AtomicInteger lookups = new AtomicInteger();
+
+	private final AtomicInteger supplierLookups = new AtomicInteger();
+
+	private final FunctionRouteIndex index = new FunctionRouteIndex(new FunctionCatalog() {
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public <T> T lookup(Class<?> type, String functionDefinition) {
+			lookups.incrementAndGet();
+			if (type == Supplier.class) {
+				supplierLookups.incrementAndGet();
+			}
+			Object function = functions.get(functionDefinition);
+			return type.isInstance(function) ? (T) function : null;
+		}
+
+		@Override
+		public Set<String> getNames(Class<?> type) {
+			return functions.keySet();
+		}
+	});
+
+	@Test
+	public void functionWithArgumentIsResolvedOnce() {
+		Function<String, String> uppercase = v -> v.toUpperCase();
+		this.functions.put("foo/uppercase", uppercase);
+
+		Map<String, Object> attributes = new HashMap<>();
+		assertThat(this.index.findFunction(HttpMethod.POST, attributes, "/foo/uppercase/hello")).isSameAs(uppercase);
+		assertThat(attributes.get(WebRequestConstants.FUNCTION)).isSameAs(uppercase);
+		assertThat(attributes.get(WebRequestConstants.ARGUMENT)).isEqualTo("hello");
+		int lookups = this.lookups.get();
+
+		attributes.clear();
+		assertThat(this.index.findFunction(HttpMethod.POST, attributes, "/foo/uppercase/bye/now")).isSameAs(uppercase);
+		assertThat(attributes.get(WebRequestConstants.ARGUMENT)).isEqualTo("bye/now");
+		attributes.clear();
+		assertThat(this.index.findFunction(HttpMethod.POST, attributes, "/foo/uppercase")).isSameAs(uppercase);
+		assertThat(attributes).doesNotContainKey(WebRequestConstants.ARGUMENT);
+		assertThat(this.lookups.get()).isEqualTo(lookups);
+	}
+
+	@Test
+	public void unknownPathIsNegativelyCached() {
+		assertThat(this.index.findFunction(HttpMethod.POST, new HashMap<>(), "/missing/path")).isNull();
+		int lookups = this.lookups.get();
+		assertThat(this.index.findFunction(HttpMethod.POST, new HashMap<>(), "/missing/path")).isNull();
+		assertThat(this.lookups.get()).isEqualTo(lookups);
+	}
+
+	@Test
+	public void supplierIsResolvedForGetOnly() {
+		Supplier<String> hello = () -> "hello";
+		this.functions.put("hello", hello);
+		Map<String, Object> attributes = new HashMap<>();
+		assertThat(this.index.findFunction(HttpMethod.GET, attributes, "/hello")).isSameAs(hello);
+		assertThat(attributes.get(WebRequestConstants.SUPPLIER)).isSameAs(hello);
+		assertThat(this.index.findFunction(HttpMethod.POST, new HashMap<>(), "/hello")).isNull();
+	}
+
+	@Test
+	public void supplierIsNotLookedUpForArbitraryPaths() {
+		Supplier<String> hello = () -> "hello";
+		this.functions.put("hello", hello);
+		assertThat(this.index.findFunction(HttpMethod.GET, new HashMap<>(), "/hello")).isSameAs(hello);
+		assertThat(this.index.findFunction(HttpMethod.GET, new HashMap<>(), "/hello")).isSameAs(hello);
+		assertThat(this.supplierLookups.get()).isEqualTo(1);
+
+		for (int i = 0; i < 2048; i++) {
+			assertThat(this.index.findFunction(HttpMethod.GET, new HashMap<>(), "/missing/" + i)).isNull();
+		}
+		assertThat(this.supplierLookups.get()).isEqualTo(1);
+		assertThat(this.index.findFunction(HttpMethod.GET, new HashMap<>(), "/hello")).isSameAs(hello);
+		assertThat(this.supplierLookups.get()).isEqualTo(1);
+	}
+
+	@Test
+	public void indexIsDiscardedOnRegistration() {
+		assertThat(this.index.findFunction(HttpMethod.POST, new HashMap<>(), "/reverse")).isNull();
+		Function<String, String> reverse = v -> new StringBuilder(v).reverse().toString();
+		this.functions.put("reverse", reverse);
+		this.index.onApplicationEvent(new FunctionRegistrationEvent(this, Function.class, Collections.singleton("reverse")));
+		assertThat(this.index.findFunction(HttpMethod.POST, new HashMap<>(), "/reverse")).isSameAs(reverse);
+	}
+
+}